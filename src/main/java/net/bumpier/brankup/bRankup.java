@@ -10,15 +10,19 @@ import net.bumpier.brankup.data.IDatabaseService;
 import net.bumpier.brankup.data.PlayerManagerService;
 import net.bumpier.brankup.data.source.SQLiteService;
 import net.bumpier.brankup.data.source.MySQLService;
+import net.bumpier.brankup.data.source.LogStorageService;
 import net.bumpier.brankup.economy.EdPrisonEconomyService;
 import net.bumpier.brankup.economy.IEconomyService;
 import net.bumpier.brankup.papi.bRankupExpansion;
 import net.bumpier.brankup.progression.ProgressionChainManager;
 import net.bumpier.brankup.progression.ProgressionCostService;
+import net.bumpier.brankup.progression.ProgressionCostTable;
 import net.bumpier.brankup.progression.ProgressionRewardService;
+import net.bumpier.brankup.progression.ProgressionRuntime;
 import net.bumpier.brankup.progression.ProgressionType;
 import net.bumpier.brankup.task.AutoProgressionTask;
 import net.bumpier.brankup.util.AdventureMessageService;
+import net.bumpier.brankup.util.IoExecutor;
 import net.bumpier.brankup.util.PerformanceMonitor;
 import net.kyori.adventure.platform.bukkit.BukkitAudiences;
 import org.bukkit.Bukkit;
@@ -34,9 +38,14 @@ import org.bukkit.plugin.java.JavaPlugin;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,10 +58,14 @@ public final class bRankup extends JavaPlugin {
     private BukkitAudiences adventure;
     private AdventureMessageService messageService;
     private PerformanceMonitor performanceMonitor;
+    // Blocking I/O runs on virtual threads when enabled; read once, since executors are not rebuilt on reload
+    private boolean virtualThreads;
+    private IoExecutor economyExecutor;
 
-    private final Map<String, IEconomyService> economyServices = new HashMap<>();
-    private final Map<String, ProgressionCostService> costServices = new HashMap<>();
-    private final Map<String, ProgressionRewardService> rewardServices = new HashMap<>();
+    // Replaced wholesale on reload, never mutated after publication
+    private volatile Map<String, IEconomyService> economyServices = Map.of();
+    private volatile ProgressionRuntime runtime = ProgressionRuntime.EMPTY;
+    private final AtomicLong runtimeVersions = new AtomicLong();
 
     @Override
     public void onEnable() {
@@ -70,15 +83,17 @@ public final class bRankup extends JavaPlugin {
         configManager.loadConfigs();
         this.messageService = new AdventureMessageService(this.adventure, configManager);
         this.performanceMonitor = new PerformanceMonitor(this);
+        setupIoExecutors();
 
         setupEconomyServices();
         setupDatabase();
 
         this.progressionChainManager = new ProgressionChainManager(this);
-        progressionChainManager.loadProgressionTypes();
-
-        setupProgressionServices();
+        publishRuntime(buildProgressionRuntime(progressionChainManager.loadProgressionTypes(runtimeVersions.incrementAndGet()),
+                ProgressionRuntime.EMPTY, getMaxTableEntries(), isFixedPointArithmetic()));
         this.playerManagerService = new PlayerManagerService(this, databaseService);
+        // Players already online (e.g. after /reload) never fire a join event
+        playerManagerService.loadOnlinePlayers();
 
         registerCommands();
 
@@ -139,28 +154,67 @@ public final class bRankup extends JavaPlugin {
         }
     }
 
-    public void performReload() {
+    /**
+     * Reload all configurations and services. The progression runtime is rebuilt off-thread and swapped in
+     * when complete; until then every reader keeps using the previous snapshot.
+     * @return A future completed once the new runtime is published.
+     */
+    public CompletableFuture<Void> performReload() {
         getLogger().info("Performing a deep reload of configurations and services...");
         configManager.loadConfigs();
-        progressionChainManager.loadProgressionTypes();
-        economyServices.clear();
         setupEconomyServices();
-        setupProgressionServices();
-        if (playerManagerService != null) {
-            playerManagerService.clearCache();
+        return reloadProgressionRuntime().thenAccept(newRuntime -> {
+            getLogger().info("Reload complete (runtime version " + newRuntime.getVersion() + ").");
+        });
+    }
+
+    /**
+     * Re-read the progression types and publish a new runtime snapshot.
+     * The types are read on the calling thread because the config cache is not thread-safe; the services and
+     * cost tables are built asynchronously. Cost services whose settings did not change are carried over
+     * together with their tables and caches.
+     * @return A future completed with the published snapshot.
+     */
+    public CompletableFuture<ProgressionRuntime> reloadProgressionRuntime() {
+        ProgressionRuntime previous = runtime;
+        ProgressionRuntime types = progressionChainManager.loadProgressionTypes(runtimeVersions.incrementAndGet());
+        int maxTableEntries = getMaxTableEntries();
+        boolean fixedPointArithmetic = isFixedPointArithmetic();
+        return CompletableFuture.supplyAsync(() -> buildProgressionRuntime(types, previous, maxTableEntries, fixedPointArithmetic),
+                        task -> getServer().getScheduler().runTaskAsynchronously(this, task))
+                .thenApply(this::publishRuntime)
+                .thenApply(published -> {
+                    // Cached player data is kept and adapted to the new types, instead of reloaded
+                    if (playerManagerService != null) {
+                        playerManagerService.adaptToRuntime(previous, published);
+                    }
+                    return published;
+                });
+    }
+
+    private synchronized ProgressionRuntime publishRuntime(ProgressionRuntime newRuntime) {
+        // Overlapping reloads may finish out of order; never replace a newer snapshot with an older one
+        if (newRuntime.getVersion() > runtime.getVersion()) {
+            this.runtime = newRuntime;
         }
-        getLogger().info("Reload complete.");
+        return runtime;
     }
 
     @Override
     public void onDisable() {
         getLogger().info("bRankup is disabling...");
         if (playerManagerService != null) {
-            playerManagerService.saveAll();
+            playerManagerService.shutdown();
         }
         if (databaseService != null) {
             databaseService.shutdown();
         }
+        if (economyExecutor != null) {
+            economyExecutor.shutdown(5, TimeUnit.SECONDS, getLogger());
+        }
+        if (performanceMonitor != null) {
+            performanceMonitor.shutdown();
+        }
         if(this.adventure != null) {
             this.adventure.close();
             this.adventure = null;
@@ -168,13 +222,40 @@ public final class bRankup extends JavaPlugin {
         getLogger().info("bRankup has been disabled.");
     }
 
-    private void setupProgressionServices() {
-        costServices.clear();
-        rewardServices.clear();
-        for (ProgressionType type : progressionChainManager.getAllProgressionTypes()) {
+    private ProgressionRuntime buildProgressionRuntime(ProgressionRuntime types, ProgressionRuntime previous,
+                                                       int maxTableEntries, boolean fixedPointArithmetic) {
+        Map<String, ProgressionCostService> costServices = new HashMap<>();
+        Map<String, ProgressionRewardService> rewardServices = new HashMap<>();
+        Map<String, String> costSettingsKeys = new HashMap<>();
+        int carriedOver = 0;
+        for (ProgressionType type : types.getAllProgressionTypes()) {
             ConfigurationSection currencyConfig = type.getConfig().getConfigurationSection("currency-settings");
             if (currencyConfig != null) {
-                costServices.put(type.getId(), new ProgressionCostService(currencyConfig));
+                // The previous service knows which types it depends on; unchanged settings keep that list the same
+                ProgressionCostService costService = previous.getCostService(type.getId());
+                String settingsKey = costService != null
+                        ? getCostSettingsKey(currencyConfig, type, costService, types, maxTableEntries, fixedPointArithmetic) : null;
+                boolean carried = settingsKey != null && settingsKey.equals(previous.getCostSettingsKey(type.getId()));
+                if (!carried) {
+                    try {
+                        costService = new ProgressionCostService(currencyConfig, getLogger(), performanceMonitor, fixedPointArithmetic);
+                        costService.validateFormula(type.getLimit());
+                    } catch (IllegalArgumentException e) {
+                        getLogger().severe("Invalid cost formula for progression type " + type.getId() + ": " + e.getMessage());
+                        continue;
+                    }
+                    settingsKey = getCostSettingsKey(currencyConfig, type, costService, types, maxTableEntries, fixedPointArithmetic);
+                }
+                if (!validateFormulaReferences(types, type, costService)) {
+                    continue;
+                }
+                if (carried) {
+                    carriedOver++;
+                } else {
+                    buildCostTable(types, type, costService, maxTableEntries);
+                }
+                costServices.put(type.getId(), costService);
+                costSettingsKeys.put(type.getId(), settingsKey);
             }
 
             ConfigurationSection rewardsConfig = type.getConfig().getConfigurationSection("rewards");
@@ -182,6 +263,79 @@ public final class bRankup extends JavaPlugin {
                 rewardServices.put(type.getId(), new ProgressionRewardService(this, rewardsConfig));
             }
         }
+        if (carriedOver > 0) {
+            getLogger().info("Kept " + carriedOver + " unchanged cost service(s) with their tables and caches.");
+        }
+        return types.withServices(costServices, rewardServices, costSettingsKeys);
+    }
+
+    /**
+     * Fingerprint everything a cost service and its table are built from, so unchanged services can be reused.
+     */
+    private String getCostSettingsKey(ConfigurationSection currencyConfig, ProgressionType type, ProgressionCostService costService,
+                                      ProgressionRuntime types, int maxTableEntries, boolean fixedPointArithmetic) {
+        StringBuilder key = new StringBuilder();
+        currencyConfig.getValues(true).forEach((path, value) -> {
+            if (!(value instanceof ConfigurationSection)) {
+                key.append(path).append('=').append(value).append(';');
+            }
+        });
+        // Table coverage depends on the limits of this type and of the types its cost reads
+        key.append(type.getId()).append(".limit=").append(type.getLimit()).append(';');
+        Set<String> dependencies = new LinkedHashSet<>(costService.getScalingTypes());
+        dependencies.addAll(costService.getFormulaReferences());
+        for (String dependency : dependencies) {
+            ProgressionType dependencyType = types.getProgressionType(dependency);
+            key.append(dependency).append(".limit=").append(dependencyType != null ? dependencyType.getLimit() : -1).append(';');
+        }
+        key.append("max-table-entries=").append(maxTableEntries).append(";fixed-point=").append(fixedPointArithmetic);
+        return key.toString();
+    }
+
+    private int getMaxTableEntries() {
+        return configManager.getMainConfig().getInt("performance.cost-calculation.max-table-entries", 250000);
+    }
+
+    private boolean isFixedPointArithmetic() {
+        return "FIXED_POINT".equalsIgnoreCase(
+                configManager.getMainConfig().getString("performance.cost-calculation.numeric-mode", "BIGDECIMAL"));
+    }
+
+    private boolean validateFormulaReferences(ProgressionRuntime types, ProgressionType type, ProgressionCostService costService) {
+        for (String reference : costService.getFormulaReferences()) {
+            if (types.getProgressionType(reference) == null) {
+                getLogger().severe("Cost formula for progression type " + type.getId() + " references unknown variable or progression type: " + reference);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void buildCostTable(ProgressionRuntime types, ProgressionType type, ProgressionCostService costService, int maxTableEntries) {
+        long scalingLimit = 0;
+        List<String> scalingTypes = costService.getScalingTypes();
+        if (scalingTypes.size() == 1) {
+            ProgressionType scalingType = types.getProgressionType(scalingTypes.get(0));
+            scalingLimit = scalingType != null ? scalingType.getLimit() : 0;
+        }
+        costService.buildCostTable(type.getLimit(), scalingLimit, maxTableEntries);
+
+        ProgressionCostTable table = costService.getCostTable();
+        if (table != null && table.getCoveredLevels(0) < type.getLimit()) {
+            getLogger().info("Cost table for " + type.getId() + " covers " + table.getCoveredLevels(0) + " of " + type.getLimit()
+                    + " levels; higher levels are calculated on demand.");
+        }
+    }
+
+    private void setupIoExecutors() {
+        this.virtualThreads = configManager.getMainConfig().getBoolean("performance.io.virtual-threads", false);
+        this.economyExecutor = new IoExecutor("bRankup-Economy-Thread",
+                configManager.getMainConfig().getInt("performance.io.economy-concurrency", 16), virtualThreads);
+        performanceMonitor.registerExecutor(economyExecutor);
+        if (virtualThreads) {
+            performanceMonitor.monitorPinnedThreads();
+            getLogger().info("Running database and economy calls on virtual threads.");
+        }
     }
 
     private void setupEconomyServices() {
@@ -190,20 +344,23 @@ public final class bRankup extends JavaPlugin {
         ConfigurationSection currencySection = configManager.getMainConfig().getConfigurationSection("currencies");
         if (currencySection == null) {
             logger.warning("No 'currencies' section found in config.yml. No economy services will be registered.");
+            this.economyServices = Map.of();
             return;
         }
+        Map<String, IEconomyService> services = new HashMap<>();
         for (String currencyKey : currencySection.getKeys(false)) {
-            registerEconomyService(currencyKey);
+            registerEconomyService(services, currencyKey);
         }
+        this.economyServices = services;
     }
 
-    private void registerEconomyService(String currencyId) {
-        if (economyServices.containsKey(currencyId)) return;
+    private void registerEconomyService(Map<String, IEconomyService> services, String currencyId) {
+        if (services.containsKey(currencyId)) return;
         if (!CurrencyUtils.isCurrency(currencyId)) {
             getLogger().severe("The currency '" + currencyId + "' specified in config.yml does not exist in EdPrison!");
             return;
         }
-        economyServices.put(currencyId, new EdPrisonEconomyService(currencyId));
+        services.put(currencyId, new EdPrisonEconomyService(currencyId, economyExecutor));
         getLogger().info("Successfully registered economy service for currency: " + currencyId);
     }
 
@@ -222,6 +379,9 @@ public final class bRankup extends JavaPlugin {
                 getLogger().log(Level.SEVERE, "MySQL driver not found. Defaulting to SQLite.", e);
                 this.databaseService = new SQLiteService(this);
             }
+        } else if (dbType.equals("LOG")) {
+            this.databaseService = new LogStorageService(this);
+            getLogger().info("Using log-structured file storage");
         } else {
             getLogger().log(Level.WARNING, "Unknown database type: " + dbType + ". Defaulting to SQLite.");
             this.databaseService = new SQLiteService(this);
@@ -235,8 +395,10 @@ public final class bRankup extends JavaPlugin {
     public IDatabaseService getDatabaseService() { return databaseService; }
     public AdventureMessageService getMessageService() { return messageService; }
     public PerformanceMonitor getPerformanceMonitor() { return performanceMonitor; }
+    public boolean isVirtualThreads() { return virtualThreads; }
     public IEconomyService getEconomyService(String currencyId) { return economyServices.get(currencyId); }
     public ProgressionChainManager getProgressionChainManager() { return progressionChainManager; }
-    public Map<String, ProgressionCostService> getCostServices() { return costServices; }
-    public Map<String, ProgressionRewardService> getRewardServices() { return rewardServices; }
+    public ProgressionRuntime getRuntime() { return runtime; }
+    public Map<String, ProgressionCostService> getCostServices() { return runtime.getCostServices(); }
+    public Map<String, ProgressionRewardService> getRewardServices() { return runtime.getRewardServices(); }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package net.bumpier.brankup.command;
 
 import net.bumpier.brankup.bRankup;
+import net.bumpier.brankup.data.PlayerDataCache;
+import net.bumpier.brankup.util.IoExecutor;
 import net.bumpier.brankup.util.PerformanceMonitor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -43,6 +45,16 @@ public class PerformanceCommand implements CommandExecutor {
                     sender.sendMessage("§6=== Cache Performance ===");
                     sender.sendMessage(String.format("Cache hit ratio: §e%.1f%%", 
                         performanceMonitor.getCacheHitRatio() * 100));
+                    sender.sendMessage(String.format("Cost cache hit ratio: §e%.1f%% §7(%d evictions)", 
+                        performanceMonitor.getCostCacheHitRatio() * 100, performanceMonitor.getCostCacheEvictions()));
+                    PlayerDataCache.Stats playerCache = plugin.getPlayerManagerService().getCacheStats();
+                    sender.sendMessage(String.format("Player cache: §e%d §7entries (%d pinned), §e%d §7evictions, §e%d §7expirations",
+                        playerCache.size(), playerCache.pinned(), playerCache.evictions(), playerCache.expirations()));
+                    sender.sendMessage(String.format("Player data load time: §e%.2f ms §7avg over %d loads",
+                        playerCache.averageLoadMillis(), playerCache.loads()));
+                    PlayerDataCache.Stats offlineCache = plugin.getPlayerManagerService().getOfflineCacheStats();
+                    sender.sendMessage(String.format("Offline projections: §e%d §7entries, §e%d §7evictions, §e%.1f%% §7hit ratio",
+                        offlineCache.size(), offlineCache.evictions(), offlineCache.getHitRatio() * 100));
                     return true;
                     
                 case "timing":
@@ -56,8 +68,26 @@ public class PerformanceCommand implements CommandExecutor {
                         performanceMonitor.getAverageOperationDuration("database-operation")));
                     sender.sendMessage(String.format("Reward dispatching: §e%.3f ms", 
                         performanceMonitor.getAverageOperationDuration("reward-dispatching")));
+                    sender.sendMessage(String.format("Player data load: §e%.3f ms", 
+                        performanceMonitor.getAverageOperationDuration("player-data-load")));
                     return true;
                     
+                case "threads":
+                    // Show I/O executor load
+                    sender.sendMessage("§6=== I/O Executors ===");
+                    for (IoExecutor.Stats stats : performanceMonitor.getExecutorStats()) {
+                        String limit = stats.concurrency() == Integer.MAX_VALUE ? "unbounded" : String.valueOf(stats.concurrency());
+                        sender.sendMessage(String.format("%s §7(%s, limit %s): §e%d §7active, §e%d §7queued (peak %d), %d completed",
+                            stats.name(), stats.virtualThreads() ? "virtual" : "platform", limit,
+                            stats.active(), stats.queued(), stats.peakQueued(), stats.completed()));
+                    }
+                    long pinnedEvents = performanceMonitor.getPinnedThreadEvents();
+                    if (pinnedEvents >= 0) {
+                        sender.sendMessage(String.format("Pinned virtual threads: §e%d §7(%.2f ms avg)",
+                            pinnedEvents, performanceMonitor.getAveragePinnedMillis()));
+                    }
+                    return true;
+
                 case "help":
                     showHelp(sender);
                     return true;
@@ -78,6 +108,7 @@ public class PerformanceCommand implements CommandExecutor {
         sender.sendMessage("§e/performance reset §7- Reset all performance metrics");
         sender.sendMessage("§e/performance cache §7- Show cache performance statistics");
         sender.sendMessage("§e/performance timing §7- Show operation timing statistics");
+        sender.sendMessage("§e/performance threads §7- Show I/O executor queues and pinned threads");
         sender.sendMessage("§e/performance help §7- Show this help message");
     }
 } 
\ No newline at end of file
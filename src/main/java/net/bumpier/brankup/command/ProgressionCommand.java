@@ -182,13 +182,13 @@ public class ProgressionCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        boolean success = plugin.getProgressionChainManager().reloadProgressionType(typeId);
-        
-        if (success) {
-            sender.sendMessage("§aSuccessfully reloaded progression type: " + type.getDisplayName());
-        } else {
-            sender.sendMessage("§cFailed to reload progression type: " + type.getDisplayName());
-        }
+        plugin.getProgressionChainManager().reloadProgressionType(typeId).whenComplete((success, ex) -> {
+            if (ex == null && success) {
+                sender.sendMessage("§aSuccessfully reloaded progression type: " + type.getDisplayName());
+            } else {
+                sender.sendMessage("§cFailed to reload progression type: " + type.getDisplayName());
+            }
+        });
     }
     
     private void showProgressionStats(CommandSender sender) {
@@ -199,6 +199,7 @@ public class ProgressionCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage("§7Enabled Types: §e" + stats.get("enabled-types"));
         sender.sendMessage("§7Base Type: §e" + stats.get("base-type"));
         sender.sendMessage("§7Highest Type: §e" + stats.get("highest-type"));
+        sender.sendMessage("§7Runtime Version: §e" + stats.get("runtime-version"));
         
         @SuppressWarnings("unchecked")
         List<String> order = (List<String>) stats.get("progression-order");
@@ -1,6 +1,7 @@
 package net.bumpier.brankup.command;
 
 import net.bumpier.brankup.bRankup;
+import net.bumpier.brankup.data.IDatabaseService;
 import net.bumpier.brankup.data.PlayerRankData;
 import net.bumpier.brankup.progression.ProgressionType;
 import net.bumpier.brankup.util.AdventureMessageService;
@@ -13,6 +14,8 @@ import org.bukkit.command.TabCompleter;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -52,9 +55,15 @@ public class bRankupAdminCommand implements CommandExecutor, TabCompleter {
     }
 
     private void handleReload(CommandSender sender) {
-        plugin.performReload();
-        messageService.sendMessage(sender, "admin-reload-success");
-        plugin.getLogger().info("Configuration files have been reloaded by " + sender.getName() + ".");
+        plugin.performReload().whenComplete((result, ex) -> {
+            if (ex != null) {
+                plugin.getLogger().log(Level.SEVERE, "Reload requested by " + sender.getName() + " failed; keeping the previous configuration.", ex);
+                messageService.sendMessage(sender, "error-generic");
+                return;
+            }
+            messageService.sendMessage(sender, "admin-reload-success");
+            plugin.getLogger().info("Configuration files have been reloaded by " + sender.getName() + ".");
+        });
     }
 
     private void handleProgressionSubcommand(CommandSender sender, String[] args) {
@@ -85,23 +94,78 @@ public class bRankupAdminCommand implements CommandExecutor, TabCompleter {
         }
         UUID targetUUID = targetPlayer.getUniqueId();
 
-        // CORRECTED: Use the getOrLoadData method, which exists and is async.
-        plugin.getPlayerManagerService().getOrLoadData(targetUUID).thenAccept(data -> {
+        // Live data is changed in memory and persisted by the write-behind flusher.
+        // Offline players whose data is not live are changed with a single atomic update, without loading them into the cache.
+        if (!targetPlayer.isOnline()) {
+            processOfflineLevelChange(sender, targetPlayer, progressionType, action, amount);
+            return;
+        }
+
+        // Queued with the player's own progressions, so a concurrent rankup cannot overwrite the change
+        plugin.getPlayerManagerService().mutate(targetUUID, data -> {
             if (data != null) {
                 processLevelChange(sender, targetPlayer, data, progressionType, action, amount);
-                if (!targetPlayer.isOnline()) {
-                    plugin.getDatabaseService().savePlayerData(data);
-                }
             }
+            return CompletableFuture.completedFuture(null);
         }).exceptionally(ex -> {
-            plugin.getLogger().log(Level.SEVERE, "Failed to modify offline player data for " + playerName, ex);
+            plugin.getLogger().log(Level.SEVERE, "Failed to modify player data for " + playerName, ex);
             return null;
         });
     }
 
+    private void processOfflineLevelChange(CommandSender sender, OfflinePlayer target, ProgressionType type, String action, long amount) {
+        IDatabaseService databaseService = plugin.getDatabaseService();
+        UUID uuid = target.getUniqueId();
+        long maxLevel = type.getLimit();
+
+        Supplier<CompletableFuture<Void>> change;
+        switch (action) {
+            case "set" -> {
+                if (amount > maxLevel) {
+                    messageService.sendMessage(sender, "error-level-above-max", "max_level", String.valueOf(maxLevel));
+                    return;
+                }
+                change = () -> databaseService.setProgressionLevel(uuid, type.getId(), amount).thenRun(() ->
+                        messageService.sendMessage(sender, "admin-generic-set", "player", target.getName(), "type", type.getDisplayName(), "amount", String.valueOf(amount)));
+            }
+            case "add" -> change = () -> databaseService.adjustProgressionLevel(uuid, type.getId(), amount, 0, maxLevel).thenAccept(newLevel -> {
+                if (newLevel == null) {
+                    messageService.sendMessage(sender, "error-level-above-max", "max_level", String.valueOf(maxLevel));
+                } else {
+                    messageService.sendMessage(sender, "admin-generic-add", "player", target.getName(), "type", type.getDisplayName(), "amount", String.valueOf(amount));
+                }
+            });
+            case "remove" -> change = () -> databaseService.adjustProgressionLevel(uuid, type.getId(), -amount, 0, Long.MAX_VALUE).thenAccept(newLevel -> {
+                if (newLevel == null) {
+                    messageService.sendMessage(sender, "error-level-below-zero");
+                } else {
+                    messageService.sendMessage(sender, "admin-generic-remove", "player", target.getName(), "type", type.getDisplayName(), "amount", String.valueOf(amount));
+                }
+            });
+            default -> {
+                messageService.sendMessage(sender, "admin-command-usage");
+                return;
+            }
+        }
+
+        // Queued with the player's mutations; if a load started in the meantime, the change goes to the loaded data
+        plugin.getPlayerManagerService().mutateOffline(uuid, change, data -> {
+            if (data != null) {
+                processLevelChange(sender, target, data, type, action, amount);
+            }
+            return CompletableFuture.<Void>completedFuture(null);
+        }).whenComplete((ignored, ex) -> {
+            plugin.getPlayerManagerService().invalidateOfflineData(uuid);
+            if (ex != null) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to modify offline player data for " + target.getName(), ex);
+                messageService.sendMessage(sender, "error-generic");
+            }
+        });
+    }
+
     private void processLevelChange(CommandSender sender, OfflinePlayer target, PlayerRankData data, ProgressionType type, String action, long amount) {
         long maxLevel = type.getLimit();
-        long currentLevel = data.getProgressionLevel(type.getId());
+        long currentLevel = data.getProgressionLevel(type.getIndex());
         long newLevel = currentLevel;
 
         switch (action) {
@@ -143,7 +207,7 @@ public class bRankupAdminCommand implements CommandExecutor, TabCompleter {
                 return;
             }
         }
-        data.setProgressionLevel(type.getId(), newLevel);
+        data.setProgressionLevel(type.getIndex(), newLevel);
     }
 
     @Override
@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -45,17 +46,18 @@ public class GenericProgressionCommand implements CommandExecutor, TabCompleter
 
         if (debugEnabled) plugin.getLogger().info("[DEBUG] Command /" + label + " " + String.join(" ", args) + " initiated by " + player.getName());
 
-        plugin.getPlayerManagerService().getOrLoadData(player.getUniqueId()).thenAccept(data -> {
+        // Runs in the player's mutation queue, so it never overlaps auto-progression or another command
+        plugin.getPlayerManagerService().mutate(player.getUniqueId(), data -> {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] Player data successfully loaded for " + player.getName() + ".");
             String subCommand = (args.length > 0) ? args[0].toLowerCase() : "single";
             if (debugEnabled) plugin.getLogger().info("[DEBUG] Determined subcommand: " + subCommand);
 
-            switch (subCommand) {
+            return switch (subCommand) {
                 case "max" -> handleMaxProgression(player, data);
                 case "auto" -> handleAutoToggle(player, data);
                 case "single" -> handleSingleProgression(player, data);
                 default -> handleSingleProgression(player, data);
-            }
+            };
         }).exceptionally(ex -> {
             plugin.getLogger().log(Level.SEVERE, "[DEBUG] Command execution failed for " + player.getName() + " due to a data loading error.", ex);
             messageService.sendMessage(player, "error-generic");
@@ -65,77 +67,88 @@ public class GenericProgressionCommand implements CommandExecutor, TabCompleter
         return true;
     }
 
-    private void handleSingleProgression(Player player, PlayerRankData data) {
+    // Completes once the progression, including the withdrawal and resets, is done
+    private CompletableFuture<Void> handleSingleProgression(Player player, PlayerRankData data) {
         if (debugEnabled) plugin.getLogger().info("[DEBUG] Entering handleSingleProgression for " + player.getName());
 
         if (!player.hasPermission("brankup." + progressionType.getId() + ".base")) {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] FAILED: Player " + player.getName() + " lacks permission: " + "brankup." + progressionType.getId() + ".base");
             messageService.sendMessage(player, "error-no-permission");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         IEconomyService economyService = plugin.getEconomyService(progressionType.getCurrencyType());
         if (economyService == null) {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] FAILED: Economy service not found for currency type: " + progressionType.getCurrencyType());
             messageService.sendMessage(player, "error-economy-not-found", "currency", progressionType.getCurrencyType());
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        if (!plugin.getProgressionChainManager().canProgress(progressionType.getId(), data.getAllProgressionLevels())) {
+        if (!plugin.getProgressionChainManager().canProgress(progressionType.getId(), data)) {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] FAILED: Player " + player.getName() + " does not meet progression chain requirements.");
             ProgressionType requiredType = plugin.getProgressionChainManager().getProgressionType(progressionType.getFollows());
             if (requiredType != null) {
                 messageService.sendMessage(player, "progression-fail-requirements", "required_type", requiredType.getDisplayName());
             }
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        long currentLevel = data.getProgressionLevel(progressionType.getId());
+        long currentLevel = data.getProgressionLevel(progressionType.getIndex());
         if (currentLevel >= progressionType.getLimit()) {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] FAILED: Player " + player.getName() + " is at the max level (" + currentLevel + "/" + progressionType.getLimit() + ").");
             messageService.sendMessage(player, "progression-fail-max-level", "type", progressionType.getDisplayName());
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         if (debugEnabled) plugin.getLogger().info("[DEBUG] All pre-checks passed for " + player.getName() + ". Current level: " + currentLevel);
 
         ProgressionCostService costService = plugin.getCostServices().get(progressionType.getId());
-        BigDecimal cost = costService.getCost(currentLevel, data);
-        if (debugEnabled) plugin.getLogger().info("[DEBUG] Calculated cost for next level: " + cost.toPlainString());
+        if (costService == null) {
+            if (debugEnabled) plugin.getLogger().info("[DEBUG] FAILED: No cost service loaded for type: " + progressionType.getId());
+            messageService.sendMessage(player, "error-generic");
+            return CompletableFuture.completedFuture(null);
+        }
+        // In fixed-point mode the cost stays a primitive long; the BigDecimal is only built as a fallback
+        long costValue = costService.getCostValue(currentLevel, data);
+        BigDecimal cost = costValue == ProgressionCostService.NOT_REPRESENTABLE ? costService.getCost(currentLevel, data) : null;
+        if (debugEnabled) plugin.getLogger().info("[DEBUG] Calculated cost for next level: " + formatCost(costValue, cost));
 
-        economyService.has(player, cost).thenAcceptAsync(hasFunds -> {
+        CompletableFuture<Boolean> hasFundsFuture = cost == null ? economyService.has(player, costValue) : economyService.has(player, cost);
+        return hasFundsFuture.thenComposeAsync(hasFunds -> {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] Player " + player.getName() + " has sufficient funds: " + hasFunds);
             if (!hasFunds) {
-                String formattedCost = NumberFormat.getNumberInstance(Locale.US).format(cost.toBigInteger());
+                String formattedCost = formatCost(costValue, cost);
                 messageService.sendMessage(player, "progression-fail-money", "cost", formattedCost + " " + economyService.getCurrencyId());
-                return;
+                return CompletableFuture.<Void>completedFuture(null);
             }
 
-            economyService.withdraw(player, cost).thenAcceptAsync(wasSuccessful -> {
+            CompletableFuture<Boolean> withdrawFuture = cost == null ? economyService.withdraw(player, costValue) : economyService.withdraw(player, cost);
+            return withdrawFuture.thenComposeAsync(wasSuccessful -> {
                 if (debugEnabled) plugin.getLogger().info("[DEBUG] Fund withdrawal for " + player.getName() + " was successful: " + wasSuccessful);
                 if (!wasSuccessful) {
                     messageService.sendMessage(player, "error-economy-withdraw-fail");
-                    return;
+                    return CompletableFuture.<Void>completedFuture(null);
                 }
 
-                data.incrementProgressionLevel(progressionType.getId());
-                handleResets(player, data);
-
-                if (debugEnabled) plugin.getLogger().info("[DEBUG] Scheduling success message and rewards for " + player.getName());
+                // The withdrawal, level change and resets all finish before the player's next mutation starts
+                data.incrementProgressionLevel(progressionType.getIndex());
+                long newLevel = data.getProgressionLevel(progressionType.getIndex());
+                return handleResets(player, data).thenRun(() -> {
+                    if (debugEnabled) plugin.getLogger().info("[DEBUG] Scheduling success message and rewards for " + player.getName());
 
-                plugin.getServer().getScheduler().runTask(plugin, () -> {
-                    ProgressionRewardService rewardService = plugin.getRewardServices().get(progressionType.getId());
-                    if (rewardService != null) {
-                        rewardService.dispatchRewards(player, data.getProgressionLevel(progressionType.getId()));
-                    }
+                    plugin.getServer().getScheduler().runTask(plugin, () -> {
+                        ProgressionRewardService rewardService = plugin.getRewardServices().get(progressionType.getId());
+                        if (rewardService != null) {
+                            rewardService.dispatchRewards(player, newLevel);
+                        }
 
-                    String newLevel = String.valueOf(data.getProgressionLevel(progressionType.getId()));
-                    messageService.sendMessage(player, "progression-success", "type", progressionType.getDisplayName(), "new_level", newLevel);
+                        messageService.sendMessage(player, "progression-success", "type", progressionType.getDisplayName(), "new_level", String.valueOf(newLevel));
 
-                    ConfigurationSection titleConfig = progressionType.getConfig().getConfigurationSection("display-settings." + progressionType.getId() + "-title");
-                    // Use new placeholder format <new_[RANKLADDER]>
-                    messageService.sendTitle(player, titleConfig, "new_" + progressionType.getId(), newLevel);
-                    if (debugEnabled) plugin.getLogger().info("[DEBUG] SUCCESS: Progression complete for " + player.getName());
+                        ConfigurationSection titleConfig = progressionType.getConfig().getConfigurationSection("display-settings." + progressionType.getId() + "-title");
+                        // Use new placeholder format <new_[RANKLADDER]>
+                        messageService.sendTitle(player, titleConfig, "new_" + progressionType.getId(), String.valueOf(newLevel));
+                        if (debugEnabled) plugin.getLogger().info("[DEBUG] SUCCESS: Progression complete for " + player.getName());
+                    });
                 });
             }).exceptionally(ex -> {
                 plugin.getLogger().log(Level.SEVERE, "[DEBUG] Error withdrawing funds for " + player.getName(), ex);
@@ -149,98 +162,109 @@ public class GenericProgressionCommand implements CommandExecutor, TabCompleter
         });
     }
 
-    private void handleMaxProgression(Player player, PlayerRankData data) {
+    // Completes once the progression, including the withdrawal and resets, is done
+    private CompletableFuture<Void> handleMaxProgression(Player player, PlayerRankData data) {
         if (debugEnabled) plugin.getLogger().info("[DEBUG] Entering handleMaxProgression for " + player.getName());
 
         if (!player.hasPermission(progressionType.getMaxProgressionPermission())) {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] FAILED: Player " + player.getName() + " lacks permission: " + progressionType.getMaxProgressionPermission());
             messageService.sendMessage(player, "error-no-permission");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         IEconomyService economyService = plugin.getEconomyService(progressionType.getCurrencyType());
         if (economyService == null) {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] FAILED: Economy service not found for currency type: " + progressionType.getCurrencyType());
             messageService.sendMessage(player, "error-economy-not-found", "currency", progressionType.getCurrencyType());
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        if (!plugin.getProgressionChainManager().canProgress(progressionType.getId(), data.getAllProgressionLevels())) {
+        if (!plugin.getProgressionChainManager().canProgress(progressionType.getId(), data)) {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] FAILED: Player " + player.getName() + " does not meet progression chain requirements for max.");
             ProgressionType requiredType = plugin.getProgressionChainManager().getProgressionType(progressionType.getFollows());
             if (requiredType != null) {
                 messageService.sendMessage(player, "progression-fail-requirements", "required_type", requiredType.getDisplayName());
             }
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        long startingLevel = data.getProgressionLevel(progressionType.getId());
+        long startingLevel = data.getProgressionLevel(progressionType.getIndex());
         if (startingLevel >= progressionType.getLimit()) {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] FAILED: Player " + player.getName() + " is at the max level (" + startingLevel + "/" + progressionType.getLimit() + ").");
             messageService.sendMessage(player, "progression-fail-max-level", "type", progressionType.getDisplayName());
-            return;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ProgressionCostService costService = plugin.getCostServices().get(progressionType.getId());
+        if (costService == null) {
+            if (debugEnabled) plugin.getLogger().info("[DEBUG] FAILED: No cost service loaded for type: " + progressionType.getId());
+            messageService.sendMessage(player, "error-generic");
+            return CompletableFuture.completedFuture(null);
         }
 
         if (debugEnabled) plugin.getLogger().info("[DEBUG] All pre-checks passed for max progression. Current level: " + startingLevel);
 
-        economyService.getBalance(player).thenAcceptAsync(playerBalance -> {
+        return economyService.getBalance(player).thenComposeAsync(playerBalance -> {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] Fetched balance for max calc: " + playerBalance.toPlainString());
 
-            ProgressionCostService costService = plugin.getCostServices().get(progressionType.getId());
             ProgressionRewardService rewardService = plugin.getRewardServices().get(progressionType.getId());
 
-            long levelsToPurchase = 0;
-            BigDecimal totalCost = BigDecimal.ZERO;
-            long currentSimulatedLevel = startingLevel;
-            List<String> allRewardCommands = new ArrayList<>();
+            // In fixed-point mode the search and the total stay primitive longs; the BigDecimal path is only a fallback
+            ProgressionCostService.PurchaseValue purchaseValue = costService.calculateMaxPurchase(startingLevel, progressionType.getLimit(),
+                    ProgressionCostService.toBudget(playerBalance), data);
+            long levelsToPurchase;
+            long totalCostValue;
+            BigDecimal totalCost;
+            if (purchaseValue.isRepresentable()) {
+                levelsToPurchase = purchaseValue.levels();
+                totalCostValue = purchaseValue.totalCost();
+                totalCost = null;
+            } else {
+                ProgressionCostService.PurchaseResult purchase = costService.calculateMaxPurchase(startingLevel, progressionType.getLimit(), playerBalance, data);
+                levelsToPurchase = purchase.levels();
+                totalCostValue = ProgressionCostService.NOT_REPRESENTABLE;
+                totalCost = purchase.totalCost();
+            }
 
-            while (currentSimulatedLevel < progressionType.getLimit()) {
-                BigDecimal costForNext = costService.getCost(currentSimulatedLevel, data);
-                if (playerBalance.compareTo(totalCost.add(costForNext)) >= 0) {
-                    totalCost = totalCost.add(costForNext);
-                    levelsToPurchase++;
-                    currentSimulatedLevel++;
-                    if (rewardService != null) {
-                        allRewardCommands.addAll(rewardService.collectRewards(player, currentSimulatedLevel));
-                    }
-                } else {
-                    break;
+            List<String> allRewardCommands = new ArrayList<>();
+            if (rewardService != null) {
+                for (long level = startingLevel + 1; level <= startingLevel + levelsToPurchase; level++) {
+                    allRewardCommands.addAll(rewardService.collectRewards(player, level));
                 }
             }
 
-            if (debugEnabled) plugin.getLogger().info("[DEBUG] Max calc finished. Levels to purchase: " + levelsToPurchase + ". Total cost: " + totalCost.toPlainString());
+            if (debugEnabled) plugin.getLogger().info("[DEBUG] Max calc finished. Levels to purchase: " + levelsToPurchase + ". Total cost: " + formatCost(totalCostValue, totalCost));
 
             if (levelsToPurchase == 0) {
                 messageService.sendMessage(player, "max-progression-fail-cant-afford-next");
-                return;
+                return CompletableFuture.<Void>completedFuture(null);
             }
 
             final long finalLevelsPurchased = levelsToPurchase;
             final long finalNewLevel = startingLevel + finalLevelsPurchased;
-            final BigDecimal finalTotalCost = totalCost;
-
-            economyService.withdraw(player, finalTotalCost).thenAcceptAsync(wasSuccessful -> {
+            CompletableFuture<Boolean> withdrawFuture = totalCost == null ? economyService.withdraw(player, totalCostValue) : economyService.withdraw(player, totalCost);
+            return withdrawFuture.thenComposeAsync(wasSuccessful -> {
                 if (debugEnabled) plugin.getLogger().info("[DEBUG] Fund withdrawal for max progression successful: " + wasSuccessful);
-                if (wasSuccessful) {
-                    data.setProgressionLevel(progressionType.getId(), finalNewLevel);
-                    handleResets(player, data);
-
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (!allRewardCommands.isEmpty()) {
-                            new RewardDispatcher(allRewardCommands).runTaskTimer(plugin, 0L, 2L);
-                        }
-                        String formattedCost = NumberFormat.getNumberInstance(Locale.US).format(finalTotalCost.toBigInteger());
-                        messageService.sendMessage(player, "max-progression-success",
-                                "type", progressionType.getDisplayName(),
-                                "levels_purchased", String.valueOf(finalLevelsPurchased),
-                                "new_level", String.valueOf(finalNewLevel),
-                                "total_cost", formattedCost
-                        );
-                        if (debugEnabled) plugin.getLogger().info("[DEBUG] SUCCESS: Max progression complete for " + player.getName());
-                    });
-                } else {
+                if (!wasSuccessful) {
                     messageService.sendMessage(player, "error-economy-withdraw-fail");
+                    return CompletableFuture.<Void>completedFuture(null);
                 }
+
+                // The withdrawal, level change and resets all finish before the player's next mutation starts
+                data.setProgressionLevel(progressionType.getIndex(), finalNewLevel);
+                return handleResets(player, data).thenRun(() -> plugin.getServer().getScheduler().runTask(plugin, () -> {
+                    if (!allRewardCommands.isEmpty()) {
+                        new RewardDispatcher(allRewardCommands).runTaskTimer(plugin, 0L, 2L);
+                    }
+                    String formattedCost = formatCost(totalCostValue, totalCost);
+                    messageService.sendMessage(player, "max-progression-success",
+                            "type", progressionType.getDisplayName(),
+                            "levels_purchased", String.valueOf(finalLevelsPurchased),
+                            "new_level", String.valueOf(finalNewLevel),
+                            "total_cost", formattedCost
+                    );
+                    if (debugEnabled) plugin.getLogger().info("[DEBUG] SUCCESS: Max progression complete for " + player.getName());
+                }));
             });
         }).exceptionally(ex -> {
             plugin.getLogger().log(Level.SEVERE, "[DEBUG] Error during max progression for " + player.getName(), ex);
@@ -249,24 +273,31 @@ public class GenericProgressionCommand implements CommandExecutor, TabCompleter
         });
     }
 
-    private void handleAutoToggle(Player player, PlayerRankData data) {
+    private CompletableFuture<Void> handleAutoToggle(Player player, PlayerRankData data) {
         if (debugEnabled) plugin.getLogger().info("[DEBUG] Entering handleAutoToggle for " + player.getName());
 
         if (!player.hasPermission(progressionType.getAutoProgressionPermission())) {
             if (debugEnabled) plugin.getLogger().info("[DEBUG] FAILED: Player " + player.getName() + " lacks permission: " + progressionType.getAutoProgressionPermission());
             messageService.sendMessage(player, "error-no-permission");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        boolean newState = !data.isAutoProgressionEnabled(progressionType.getId());
-        data.setAutoProgressionEnabled(progressionType.getId(), newState);
+        boolean newState = !data.isAutoProgressionEnabled(progressionType.getIndex());
+        data.setAutoProgressionEnabled(progressionType.getIndex(), newState);
 
         String displayName = progressionType.getDisplayName();
         messageService.sendMessage(player, newState ? "auto-progression-enabled" : "auto-progression-disabled", "type", displayName);
         if (debugEnabled) plugin.getLogger().info("[DEBUG] Toggled auto-" + progressionType.getId() + " for " + player.getName() + " to: " + newState);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private String formatCost(long costValue, BigDecimal cost) {
+        NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+        return cost == null ? format.format(costValue) : format.format(cost.toBigInteger());
     }
 
-    private void handleResets(Player player, PlayerRankData data) {
+    // Completes once every currency reset has been applied
+    private CompletableFuture<Void> handleResets(Player player, PlayerRankData data) {
         if (progressionType.shouldResetPrevious()) {
             String previousTypeId = progressionType.getFollows();
             if (previousTypeId != null) {
@@ -274,15 +305,17 @@ public class GenericProgressionCommand implements CommandExecutor, TabCompleter
                 data.setProgressionLevel(previousTypeId, 0);
             }
         }
+        List<CompletableFuture<Void>> currencyResets = new ArrayList<>();
         for (Map.Entry<String, Boolean> entry : progressionType.getResetCurrencies().entrySet()) {
             if (entry.getValue()) {
                 IEconomyService currencyToReset = plugin.getEconomyService(entry.getKey());
                 if (currencyToReset != null) {
                     if (debugEnabled) plugin.getLogger().info("[DEBUG] Resetting currency '" + entry.getKey() + "' for " + player.getName());
-                    currencyToReset.set(player, BigDecimal.ZERO);
+                    currencyResets.add(currencyToReset.set(player, BigDecimal.ZERO));
                 }
             }
         }
+        return CompletableFuture.allOf(currencyResets.toArray(new CompletableFuture[0]));
     }
 
     @Override
@@ -1,8 +1,11 @@
 package net.bumpier.brankup.data;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
 
 /**
  * Interface defining the contract for all database operations.
@@ -25,13 +28,52 @@ public interface IDatabaseService {
     CompletableFuture<PlayerRankData> loadPlayerData(UUID uuid);
 
     /**
-     * Asynchronously saves a player's data to the database.
-     * This performs an "upsert" (insert or update).
+     * Asynchronously loads the data of many players with a few chunked queries instead of a set of queries per player.
+     * Every requested player is present in the result; players without any rows get empty data, as with
+     * {@link #loadPlayerData(UUID)}.
      *
-     * @param data The PlayerRankData object to save.
-     * @return A CompletableFuture that will complete when the operation is finished.
+     * @param uuids The UUIDs of the players to load.
+     * @return A CompletableFuture that completes with the data keyed by UUID, or completes exceptionally
+     *         if any query failed.
      */
-    CompletableFuture<Void> savePlayerData(PlayerRankData data);
+    CompletableFuture<Map<UUID, PlayerRankData>> loadPlayerDataBatch(Collection<UUID> uuids);
+
+    /**
+     * Asynchronously writes the changed rows of many players with chunked multi-row upserts, a few hundred players
+     * per transaction. Backends with a connection pool write the chunks in parallel on separate connections.
+     * The save is not a single transaction: if the future completes exceptionally, some chunks may already be
+     * committed, and the caller should retry all rows.
+     *
+     * @param changes The changed rows, one entry per player.
+     * @param progress Called with the number of players written so far, after each committed chunk.
+     * @return A CompletableFuture that completes once every chunk is committed, or completes exceptionally
+     *         after the other chunks finished if any chunk failed.
+     */
+    CompletableFuture<Void> savePlayerChangesBulk(Collection<PlayerDataChanges> changes, IntConsumer progress);
+
+    /**
+     * Asynchronously sets one progression level of a player directly in the database, without loading the player.
+     *
+     * @param uuid The player's UUID.
+     * @param progressionId The progression ID.
+     * @param level The new level.
+     * @return A CompletableFuture that completes when the row is written.
+     */
+    CompletableFuture<Void> setProgressionLevel(UUID uuid, String progressionId, long level);
+
+    /**
+     * Asynchronously adds to one progression level of a player directly in the database, as a single atomic update
+     * that is only applied if the resulting level stays within the bounds. A missing row counts as level 0.
+     *
+     * @param uuid The player's UUID.
+     * @param progressionId The progression ID.
+     * @param delta The amount to add, negative to subtract.
+     * @param minLevel The lowest allowed resulting level.
+     * @param maxLevel The highest allowed resulting level.
+     * @return A CompletableFuture that completes with the new level, or with null if it would leave the bounds
+     *         and nothing was changed.
+     */
+    CompletableFuture<Long> adjustProgressionLevel(UUID uuid, String progressionId, long delta, long minLevel, long maxLevel);
 
     /**
      * Asynchronously loads the set of claimed one-time reward keys for a player.
@@ -0,0 +1,86 @@
+package net.bumpier.brankup.data;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Size-bounded, read-through cache of read-only projections of offline players' data, for admin commands and
+ * lookups. It is kept apart from the online cache so looking up many offline players never grows it, and its
+ * entries are never pinned. Projections are never modified; edits of offline players go straight to the database
+ * and invalidate the projection.
+ */
+public class OfflinePlayerCache {
+
+    private final IDatabaseService databaseService;
+    private final PlayerDataCache projections;
+    private final Map<UUID, CompletableFuture<PlayerRankData>> loadingFutures = new ConcurrentHashMap<>();
+
+    /**
+     * @param ttlMs How long an unused projection is kept.
+     * @param maxSize The maximum number of projections.
+     */
+    public OfflinePlayerCache(IDatabaseService databaseService, long ttlMs, int maxSize) {
+        this.databaseService = databaseService;
+        this.projections = new PlayerDataCache(ttlMs, maxSize);
+    }
+
+    /**
+     * Get a player's projection, loading it on a miss. Concurrent callers share one load.
+     */
+    public CompletableFuture<PlayerRankData> get(UUID uuid) {
+        PlayerRankData cached = projections.get(uuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<PlayerRankData> load = loadingFutures.computeIfAbsent(uuid, this::startLoad);
+        load.whenComplete((data, ex) -> loadingFutures.remove(uuid, load));
+        return load.thenApply(data -> data);
+    }
+
+    /**
+     * Get a player's projection if it is cached. Does not trigger a load.
+     */
+    public PlayerRankData getIfPresent(UUID uuid) {
+        return projections.get(uuid);
+    }
+
+    private CompletableFuture<PlayerRankData> startLoad(UUID uuid) {
+        long start = System.nanoTime();
+        return databaseService.loadPlayerData(uuid).thenApply(loaded -> {
+            PlayerRankData data = loaded != null ? loaded : PlayerRankData.newPlayer(uuid);
+            projections.recordLoad(System.nanoTime() - start);
+            projections.put(uuid, data, false);
+            return data;
+        });
+    }
+
+    /**
+     * Drop a player's projection, e.g. after their rows were changed in the database or they logged in.
+     * A load still in flight is left to finish, but its result is not kept.
+     */
+    public void invalidate(UUID uuid) {
+        CompletableFuture<PlayerRankData> load = loadingFutures.get(uuid);
+        if (load != null) {
+            load.thenRun(() -> projections.remove(uuid));
+        }
+        projections.remove(uuid);
+    }
+
+    /**
+     * Remove projections that have not been used within the TTL.
+     */
+    public void expireEntries() {
+        projections.expireEntries();
+    }
+
+    public void clear() {
+        projections.clear();
+        loadingFutures.clear();
+    }
+
+    public PlayerDataCache.Stats getStats() {
+        return projections.getStats();
+    }
+}
@@ -0,0 +1,251 @@
+package net.bumpier.brankup.data;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Concurrent cache of loaded player data in a single structure: every entry carries its own access metadata,
+ * so there is no second map to keep in sync.
+ * The size and idle-time bounds are enforced by a CLOCK hand over the entries in insertion order. Recently used
+ * entries get a second chance, while pinned (online) entries and entries with unflushed changes are skipped,
+ * so every step of a sweep is O(1) and nothing is ever sorted.
+ */
+public class PlayerDataCache {
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    // CLOCK ring; entries replaced or removed from the map are dropped lazily when the hand reaches them
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger clockSize = new AtomicInteger();
+    private final Object sweepLock = new Object();
+    // CLOCK steps a put may take; if pinned or dirty entries fill the cache, the periodic cleanup finishes the sweep
+    private static final int EVICTION_STEPS_PER_PUT = 32;
+
+    private final long ttlMs;
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    /**
+     * @param ttlMs How long an unpinned entry may stay unused before it expires.
+     * @param maxSize The maximum number of entries, 0 for unlimited. Pinned entries may exceed it.
+     */
+    public PlayerDataCache(long ttlMs, int maxSize) {
+        this.ttlMs = ttlMs;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get a player's cached data and mark it as recently used.
+     * @return The cached data, or null if it is not cached.
+     */
+    public PlayerRankData get(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        entry.lastAccess = System.currentTimeMillis();
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.data;
+    }
+
+    /**
+     * Get a player's cached data without touching its access metadata or the statistics.
+     */
+    public PlayerRankData peek(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        return entry != null ? entry.data : null;
+    }
+
+    /**
+     * Cache a player's data, evicting the least recently used unpinned entries if the cache is over its size.
+     * @param pinned Whether the entry is exempt from eviction and expiry, e.g. because the player is online.
+     */
+    public void put(UUID uuid, PlayerRankData data, boolean pinned) {
+        Entry entry = new Entry(uuid, data, pinned);
+        entries.put(uuid, entry);
+        clock.add(entry);
+        clockSize.incrementAndGet();
+        if (maxSize > 0 && entries.size() > maxSize) {
+            evictToSize(EVICTION_STEPS_PER_PUT);
+        }
+    }
+
+    /**
+     * Pin or unpin a cached player. Does nothing if the player is not cached.
+     */
+    public void setPinned(UUID uuid, boolean pinned) {
+        Entry entry = entries.get(uuid);
+        if (entry != null) {
+            entry.pinned = pinned;
+        }
+    }
+
+    public PlayerRankData remove(UUID uuid) {
+        Entry entry = entries.remove(uuid);
+        return entry != null ? entry.data : null;
+    }
+
+    /**
+     * Remove a player's data unless it is pinned or has unflushed changes.
+     * @return Whether an entry was removed.
+     */
+    public boolean discard(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        return entry != null && !entry.pinned && !entry.data.isDirty() && entries.remove(uuid, entry);
+    }
+
+    /**
+     * Record the time taken to load a player's data into the cache.
+     */
+    public void recordLoad(long nanos) {
+        loads.increment();
+        loadNanos.add(nanos);
+    }
+
+    /**
+     * Remove unpinned, clean entries that have not been used within the TTL, then evict down to the maximum size
+     * if the bounded sweeps of recent puts left the cache over it.
+     * A single turn of the CLOCK hand for the expiry, so every entry is visited at most once.
+     */
+    public void expireEntries() {
+        long threshold = System.currentTimeMillis() - ttlMs;
+        synchronized (sweepLock) {
+            for (int steps = clockSize.get(); steps > 0; steps--) {
+                Entry entry = pollHand();
+                if (entry == null) {
+                    return;
+                }
+                if (!isLive(entry)) {
+                    continue;
+                }
+                if (!entry.pinned && !entry.data.isDirty() && entry.lastAccess < threshold && entries.remove(entry.uuid, entry)) {
+                    expirations.increment();
+                    continue;
+                }
+                returnToHand(entry);
+            }
+        }
+        if (maxSize > 0 && entries.size() > maxSize) {
+            // Two turns are enough to clear every reference bit; stop there if everything left is pinned or dirty
+            evictToSize(clockSize.get() * 2);
+        }
+    }
+
+    /**
+     * Advance the CLOCK hand until the cache is within its size, or for at most the given number of steps.
+     */
+    private void evictToSize(int maxSteps) {
+        synchronized (sweepLock) {
+            for (int steps = maxSteps; steps > 0 && entries.size() > maxSize; steps--) {
+                Entry entry = pollHand();
+                if (entry == null) {
+                    return;
+                }
+                if (!isLive(entry)) {
+                    continue;
+                }
+                if (entry.pinned || entry.data.isDirty()) {
+                    returnToHand(entry);
+                } else if (entry.referenced) {
+                    entry.referenced = false;
+                    returnToHand(entry);
+                } else if (entries.remove(entry.uuid, entry)) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private Entry pollHand() {
+        Entry entry = clock.poll();
+        if (entry != null) {
+            clockSize.decrementAndGet();
+        }
+        return entry;
+    }
+
+    private void returnToHand(Entry entry) {
+        clock.add(entry);
+        clockSize.incrementAndGet();
+    }
+
+    private boolean isLive(Entry entry) {
+        return entries.get(entry.uuid) == entry;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Get a snapshot of the cached data.
+     */
+    public Collection<PlayerRankData> values() {
+        return entries.values().stream().map(entry -> entry.data).collect(Collectors.toList());
+    }
+
+    public void clear() {
+        entries.clear();
+        synchronized (sweepLock) {
+            clock.clear();
+            clockSize.set(0);
+        }
+    }
+
+    public Stats getStats() {
+        int pinned = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.pinned) pinned++;
+        }
+        long loadCount = loads.sum();
+        double averageLoadMillis = loadCount > 0 ? loadNanos.sum() / 1_000_000.0 / loadCount : 0.0;
+        return new Stats(entries.size(), pinned, hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), loadCount, averageLoadMillis);
+    }
+
+    /**
+     * Point-in-time cache statistics.
+     */
+    public record Stats(int size, int pinned, long hits, long misses, long evictions, long expirations,
+                        long loads, double averageLoadMillis) {
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total > 0 ? (double) hits / total : 0.0;
+        }
+    }
+
+    private static final class Entry {
+        private final UUID uuid;
+        private final PlayerRankData data;
+        private volatile boolean pinned;
+        private volatile boolean referenced;
+        private volatile long lastAccess;
+
+        private Entry(UUID uuid, PlayerRankData data, boolean pinned) {
+            this.uuid = uuid;
+            this.data = data;
+            this.pinned = pinned;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+}
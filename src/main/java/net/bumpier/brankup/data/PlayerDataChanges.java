@@ -0,0 +1,21 @@
+package net.bumpier.brankup.data;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The rows of a player's data that changed since the last flush.
+ * @param uuid The player's UUID.
+ * @param levels Changed progression levels, keyed by progression ID.
+ * @param autoStates Changed auto-progression states, keyed by progression ID.
+ */
+public record PlayerDataChanges(UUID uuid, Map<String, Long> levels, Map<String, Boolean> autoStates) {
+
+    public boolean isEmpty() {
+        return levels.isEmpty() && autoStates.isEmpty();
+    }
+
+    public int getRowCount() {
+        return levels.size() + autoStates.size();
+    }
+}
@@ -1,22 +1,34 @@
 package net.bumpier.brankup.data;
 
 import net.bumpier.brankup.bRankup;
+import net.bumpier.brankup.progression.ProgressionRuntime;
+import net.bumpier.brankup.progression.ProgressionType;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 public class PlayerManagerService implements Listener {
@@ -24,30 +36,51 @@ public class PlayerManagerService implements Listener {
     private final bRankup plugin;
     private final IDatabaseService databaseService;
 
-    // Dedicated executor for player data operations
-    private final ExecutorService executor = Executors.newFixedThreadPool(2, 
-            r -> new Thread(r, "bRankup-PlayerData-Thread"));
+    // How long a login that never completes keeps its pre-loaded data staged
+    private static final long PENDING_LOGIN_EXPIRY_MS = TimeUnit.MINUTES.toMillis(1);
+    // Saves of fewer players only log the total
+    private static final int PROGRESS_LOG_MIN_PLAYERS = 500;
 
-    private final Map<UUID, PlayerRankData> playerDataCache = new ConcurrentHashMap<>();
-    private final Map<UUID, Long> cacheTimestamps = new ConcurrentHashMap<>();
+    private final PlayerDataCache playerDataCache;
+    // Read-only projections of offline players, kept apart so lookups never grow the online cache
+    private final OfflinePlayerCache offlinePlayerCache;
     private final Map<UUID, CompletableFuture<PlayerRankData>> loadingFutures = new ConcurrentHashMap<>();
-
-    // Cache metrics
-    private long cacheHits = 0;
-    private long cacheMisses = 0;
+    // Players whose data was loaded during pre-login and who have not joined yet, with the time of their login
+    private final Map<UUID, Long> pendingLogins = new ConcurrentHashMap<>();
+    // Runs each player's progression mutations in order, independently of other players
+    private final PlayerMutationQueue mutationQueue;
 
     // Cache settings
     private final long cacheTtlMs;
     private final int maxCachedPlayers;
+    private final long preLoginTimeoutMs;
+
+    // Write-behind persistence: flushes are chained so changed rows always reach the database in order
+    private final Object flushLock = new Object();
+    private CompletableFuture<Void> lastFlush = CompletableFuture.completedFuture(null);
+    // Each player's latest queued write, until it finishes; a load of the player waits for it and nothing else
+    private final Map<UUID, CompletableFuture<Void>> pendingWrites = new ConcurrentHashMap<>();
+    // Players whose load has already looked up its pending write, until the load finishes. Guarded by flushLock when added.
+    private final Set<UUID> startedLoads = ConcurrentHashMap.newKeySet();
+    // Data that left the cache, e.g. on quit, while its write failed. Flushed again until a write succeeds, and
+    // staged instead of the database row if the player is loaded meanwhile. Guarded by flushLock when changed.
+    private final Map<UUID, PlayerRankData> unsavedData = new ConcurrentHashMap<>();
 
     public PlayerManagerService(bRankup plugin, IDatabaseService databaseService) {
         this.plugin = plugin;
         this.databaseService = databaseService;
+        this.mutationQueue = new PlayerMutationQueue(plugin.isVirtualThreads());
+        plugin.getPerformanceMonitor().registerExecutor(mutationQueue.getExecutor());
 
         // Load cache settings from config
         this.cacheTtlMs = TimeUnit.MINUTES.toMillis(
             plugin.getConfigManager().getMainConfig().getLong("performance.cache.player-data-ttl", 30));
         this.maxCachedPlayers = plugin.getConfigManager().getMainConfig().getInt("performance.cache.max-cached-players", 0);
+        this.playerDataCache = new PlayerDataCache(cacheTtlMs, maxCachedPlayers);
+        this.offlinePlayerCache = new OfflinePlayerCache(databaseService, cacheTtlMs,
+            plugin.getConfigManager().getMainConfig().getInt("performance.cache.max-offline-players", 500));
+        this.preLoginTimeoutMs = TimeUnit.SECONDS.toMillis(
+            plugin.getConfigManager().getMainConfig().getLong("performance.cache.pre-login-timeout", 5));
 
         // Register events
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
@@ -60,33 +93,95 @@ public class PlayerManagerService implements Listener {
         plugin.getServer().getScheduler().runTaskTimerAsynchronously(
             plugin, this::performCacheCleanup, cleanupIntervalTicks, cleanupIntervalTicks);
 
+        // Schedule the write-behind flusher (0 = only write on quit and shutdown)
+        long flushIntervalSeconds = plugin.getConfigManager().getMainConfig().getLong("performance.write-behind.flush-interval", 5);
+        if (flushIntervalSeconds > 0) {
+            long flushIntervalTicks = flushIntervalSeconds * 20L;
+            plugin.getServer().getScheduler().runTaskTimerAsynchronously(
+                plugin, this::flushChanges, flushIntervalTicks, flushIntervalTicks);
+        }
+
         plugin.getLogger().info("Player data cache initialized with TTL: " + 
             TimeUnit.MILLISECONDS.toMinutes(cacheTtlMs) + " minutes, max players: " + 
             (maxCachedPlayers == 0 ? "unlimited" : maxCachedPlayers));
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        UUID uuid = event.getUniqueId();
+        pendingLogins.put(uuid, System.currentTimeMillis());
+        // The player's data becomes live now; a projection loaded while they were offline may be outdated
+        offlinePlayerCache.invalidate(uuid);
+
+        // This event already runs off the main thread, so the login can wait here for the data to be staged
+        try {
+            getOrLoadData(uuid).get(preLoginTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning("Loading data for " + event.getName() + " took longer than "
+                    + preLoginTimeoutMs + "ms; the login continues while it finishes.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to load data for " + event.getName() + " during login", e);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            dropPendingLogin(event.getPlayer().getUniqueId());
+        }
+    }
+
     @EventHandler(priority = EventPriority.LOWEST)
     public void onPlayerJoin(PlayerJoinEvent event) {
-        getOrLoadData(event.getPlayer().getUniqueId());
+        Player player = event.getPlayer();
+        UUID uuid = player.getUniqueId();
+        pendingLogins.remove(uuid);
+        // Online players are pinned so eviction and expiry never drop them
+        getOrLoadData(uuid).thenRun(() -> {
+            if (player.isOnline()) {
+                playerDataCache.setPinned(uuid, true);
+            }
+        });
     }
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
-        UUID uuid = event.getPlayer().getUniqueId();
-
-        CompletableFuture<PlayerRankData> loadingFuture = loadingFutures.remove(uuid);
-        if (loadingFuture != null) {
-            loadingFuture.cancel(true);
-        }
-
-        PlayerRankData data = playerDataCache.remove(uuid);
-        cacheTimestamps.remove(uuid);
-        if (data != null) {
-            databaseService.savePlayerData(data).exceptionally(ex -> {
-                plugin.getLogger().log(Level.SEVERE, "Failed to save data for " + event.getPlayer().getName(), ex);
-                return null;
-            });
-        }
+        Player player = event.getPlayer();
+        UUID uuid = player.getUniqueId();
+
+        // Queued behind the player's pending mutations, so none of them changes the data after it was written
+        mutationQueue.submit(uuid, () -> {
+            Player current = plugin.getServer().getPlayer(uuid);
+            if (current != null && current != player) {
+                // Rejoined before the queue got here; the data stays cached and pinned
+                return CompletableFuture.completedFuture(null);
+            }
+            Map<PlayerRankData, PlayerDataChanges> drained = new LinkedHashMap<>();
+            // Removed under the flush lock, so a load after the removal always finds this save queued (see startLoad)
+            synchronized (flushLock) {
+                // A load still in flight is left to finish for its other callers; its entry is unpinned and expires normally
+                PlayerRankData data = playerDataCache.remove(uuid);
+                if (data == null) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                // Only the rows changed since the last flush need to be written
+                PlayerDataChanges changes = data.drainChanges();
+                if (!changes.isEmpty()) {
+                    drained.put(data, changes);
+                }
+                // Ordered after this player's own earlier writes only, so it never waits for a large flush of others
+                CompletableFuture<Void> previous = pendingWrites.getOrDefault(uuid, CompletableFuture.completedFuture(null));
+                return writeChanges(drained, written -> { }, previous);
+            }
+        }).exceptionally(ex -> {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save player data for " + uuid + " on quit", ex);
+            return null;
+        });
     }
 
     /**
@@ -108,60 +203,168 @@ public class PlayerManagerService implements Listener {
         return data;
     }
 
+    /**
+     * Gets a player's data from the cache, loading it from the database on a miss.
+     * Concurrent callers for the same player share a single load. Each caller receives its own future,
+     * so cancelling it never cancels the load for the others.
+     *
+     * @param uuid The player's UUID.
+     * @return A future completed with the player's data.
+     */
     public CompletableFuture<PlayerRankData> getOrLoadData(UUID uuid) {
-        // Track performance
-        plugin.getPerformanceMonitor().startOperation("player-data-load");
-
-        // Check if we're already loading this player's data
-        CompletableFuture<PlayerRankData> loadingFuture = loadingFutures.get(uuid);
-        if (loadingFuture != null) {
-            plugin.getPerformanceMonitor().endOperation("player-data-load");
-            return loadingFuture;
-        }
-
-        // Check if data is in cache and not expired
+        // Cached entries stay valid until expired by the cleanup task, which never drops unflushed changes
         PlayerRankData cachedData = playerDataCache.get(uuid);
         if (cachedData != null) {
-            Long timestamp = cacheTimestamps.get(uuid);
-            if (timestamp != null && (System.currentTimeMillis() - timestamp) < cacheTtlMs) {
-                // Cache hit
-                cacheHits++;
-                plugin.getPerformanceMonitor().recordCacheHit();
-                plugin.getPerformanceMonitor().endOperation("player-data-load");
-                return CompletableFuture.completedFuture(cachedData);
-            }
+            plugin.getPerformanceMonitor().recordCacheHit();
+            return CompletableFuture.completedFuture(cachedData);
         }
 
-        // Cache miss - need to load from database
-        cacheMisses++;
+        // Cache miss - join the load in flight, or start one
         plugin.getPerformanceMonitor().recordCacheMiss();
+        long start = System.nanoTime();
+        CompletableFuture<PlayerRankData> load = loadingFutures.computeIfAbsent(uuid, this::startLoad);
+        // Registered outside computeIfAbsent, since an already completed load runs this immediately.
+        // Only this load's own mapping is removed, never a newer one.
+        load.whenComplete((data, ex) -> loadingFutures.remove(uuid, load));
+
+        return load.whenComplete((data, ex) ->
+                plugin.getPerformanceMonitor().recordPlayerDataLoad(System.nanoTime() - start));
+    }
 
-        CompletableFuture<PlayerRankData> newLoadFuture = CompletableFuture.supplyAsync(() -> {
-            try {
-                // Load data from database
-                PlayerRankData data = databaseService.loadPlayerData(uuid).join();
-                if (data == null) {
-                    data = PlayerRankData.newPlayer(uuid);
+    /**
+     * Runs a progression mutation on a player's data, loading it first if needed.
+     * Mutations of the same player run one at a time in submission order, so a mutation that checks a balance,
+     * withdraws and changes levels is never interleaved with another one. Other players are never blocked.
+     *
+     * @param uuid The player's UUID.
+     * @param mutation Starts the mutation; the returned stage must complete once every step of it is done.
+     * @return A future completed with the mutation's result.
+     */
+    public <T> CompletableFuture<T> mutate(UUID uuid, Function<PlayerRankData, ? extends CompletionStage<T>> mutation) {
+        return mutationQueue.submit(uuid, () -> getOrLoadData(uuid).thenCompose(mutation));
+    }
+
+    /**
+     * Runs a change directly in the database for a player whose data is not live, queued with the player's
+     * mutations and ordered after their pending write. A load that starts meanwhile waits for the change,
+     * so it always reads the changed rows and a later flush cannot overwrite them.
+     * If the player's data became live before the queue got here, the live change runs on it instead.
+     *
+     * @param uuid The player's UUID.
+     * @param databaseChange Starts the database change; only called while the player is not live.
+     * @param liveChange Starts the change on the player's data, as with {@link #mutate(UUID, Function)}.
+     * @return A future completed with the result of whichever change ran.
+     */
+    public <T> CompletableFuture<T> mutateOffline(UUID uuid, Supplier<CompletableFuture<T>> databaseChange,
+                                                  Function<PlayerRankData, ? extends CompletionStage<T>> liveChange) {
+        return mutationQueue.submit(uuid, () -> {
+            CompletableFuture<T> change;
+            // Checked under the flush lock, so a load either counts as live here or finds this change in startLoad
+            synchronized (flushLock) {
+                if (isLive(uuid)) {
+                    change = null;
+                } else {
+                    CompletableFuture<Void> previous = pendingWrites.getOrDefault(uuid, CompletableFuture.completedFuture(null));
+                    change = previous.handle((ignored, ex) -> null).thenCompose(ignored -> databaseChange.get());
+                    CompletableFuture<Void> write = change.handle((result, ex) -> null);
+                    pendingWrites.put(uuid, write);
+                    write.thenRun(() -> pendingWrites.remove(uuid, write));
                 }
+            }
+            return change != null ? change : getOrLoadData(uuid).thenCompose(liveChange);
+        });
+    }
 
-                // Update cache
-                playerDataCache.put(uuid, data);
-                cacheTimestamps.put(uuid, System.currentTimeMillis());
+    private CompletableFuture<PlayerRankData> startLoad(UUID uuid) {
+        // A load that finished between the cache check and here has already staged the data
+        PlayerRankData cachedData = playerDataCache.peek(uuid);
+        if (cachedData != null) {
+            return CompletableFuture.completedFuture(cachedData);
+        }
 
-                // Enforce max cache size if needed
-                if (maxCachedPlayers > 0 && playerDataCache.size() > maxCachedPlayers) {
-                    performCacheCleanup();
-                }
+        // Loads may run on other connections than writes, so wait for this player's queued write, e.g. the save
+        // of a player who quit and rejoined right away. Writes of other players never hold the load back.
+        CompletableFuture<Void> pendingWrite;
+        synchronized (flushLock) {
+            pendingWrite = pendingWrites.get(uuid);
+            // Counts as live from here on, so offline changes queued after this point go to the loaded data instead
+            startedLoads.add(uuid);
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<PlayerRankData> load;
+        if (pendingWrite == null) {
+            load = databaseService.loadPlayerData(uuid).thenApply(loaded -> stageLoadedData(uuid, loaded, start));
+        } else {
+            // Continue on the database thread, so a load never occupies a second thread waiting for the query
+            load = pendingWrite.handle((ignored, ex) -> null)
+                    .thenCompose(ignored -> databaseService.loadPlayerData(uuid))
+                    .thenApply(loaded -> stageLoadedData(uuid, loaded, start));
+        }
+        // Staged in the cache first, so the player stays live without a gap
+        return load.whenComplete((data, ex) -> startedLoads.remove(uuid));
+    }
+
+    private PlayerRankData stageLoadedData(UUID uuid, PlayerRankData loaded, long start) {
+        // Rows whose write failed are newer than the database, so the retained data replaces the loaded row
+        PlayerRankData unsaved;
+        synchronized (flushLock) {
+            unsaved = unsavedData.remove(uuid);
+        }
+        PlayerRankData data = unsaved != null ? unsaved : loaded != null ? loaded : PlayerRankData.newPlayer(uuid);
+        playerDataCache.recordLoad(System.nanoTime() - start);
+
+        // Update cache before the load completes, so later callers hit it instead of starting a new load.
+        // The cache evicts down to its maximum size itself.
+        playerDataCache.put(uuid, data, false);
+        return data;
+    }
 
-                return data;
-            } finally {
-                loadingFutures.remove(uuid);
-                plugin.getPerformanceMonitor().endOperation("player-data-load");
+    /**
+     * Loads every online player that is not cached yet with batched queries, instead of one load per player,
+     * and pins them in the cache. Used to warm the cache at startup and after a reload.
+     * Players already being loaded keep their own load.
+     * @return A future that completes once every batched player is cached.
+     */
+    public CompletableFuture<Void> loadOnlinePlayers() {
+        Map<UUID, Player> missing = new LinkedHashMap<>();
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            UUID uuid = player.getUniqueId();
+            if (playerDataCache.peek(uuid) != null) {
+                playerDataCache.setPinned(uuid, true);
+            } else if (!loadingFutures.containsKey(uuid)) {
+                missing.put(uuid, player);
             }
-        }, executor); // Use our dedicated executor
+        }
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-        loadingFutures.put(uuid, newLoadFuture);
-        return newLoadFuture;
+        long start = System.nanoTime();
+        CompletableFuture<Map<UUID, PlayerRankData>> batch = databaseService.loadPlayerDataBatch(missing.keySet());
+        List<CompletableFuture<PlayerRankData>> loads = new ArrayList<>();
+        missing.forEach((uuid, player) -> {
+            // Registered as the player's load, so concurrent callers wait for the batch instead of querying
+            CompletableFuture<PlayerRankData> load = loadingFutures.computeIfAbsent(uuid,
+                    id -> batch.thenApply(loaded -> stageLoadedData(id, loaded.get(id), start)));
+            load.whenComplete((data, ex) -> {
+                loadingFutures.remove(uuid, load);
+                if (ex == null && player.isOnline()) {
+                    playerDataCache.setPinned(uuid, true);
+                }
+            });
+            loads.add(load);
+        });
+
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture[0])).whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to load data for " + missing.size()
+                        + " online players; they will be loaded individually when needed.", ex);
+            } else {
+                plugin.getLogger().info(String.format("Loaded data for %d online players in %.1fms.",
+                        missing.size(), (System.nanoTime() - start) / 1_000_000.0));
+            }
+        });
     }
 
     /**
@@ -174,28 +377,192 @@ public class PlayerManagerService implements Listener {
     }
 
     /**
-     * Saves all cached player data to the database in an optimized batch operation.
-     * This method is called during plugin shutdown or reload.
+     * Checks if a player's data is live: cached, being loaded or about to be loaded for a login.
+     * Live data must be changed in memory; anything else may be changed directly in the database.
      */
-    public void saveAll() {
-        if (playerDataCache.isEmpty()) return;
+    public boolean isLive(UUID uuid) {
+        return playerDataCache.peek(uuid) != null || loadingFutures.containsKey(uuid) || startedLoads.contains(uuid)
+                || pendingLogins.containsKey(uuid) || unsavedData.containsKey(uuid);
+    }
 
-        plugin.getLogger().info("Saving data for " + playerDataCache.size() + " cached players...");
-        plugin.getPerformanceMonitor().startOperation("batch-save");
+    /**
+     * Gets a player's data for reading without adding an offline player to the online cache.
+     * Live data is returned as is; offline players get a read-only projection from a separate, size-bounded cache.
+     * The returned data of an offline player must not be modified.
+     */
+    public CompletableFuture<PlayerRankData> getOfflineData(UUID uuid) {
+        PlayerRankData data = playerDataCache.peek(uuid);
+        return data != null ? CompletableFuture.completedFuture(data) : offlinePlayerCache.get(uuid);
+    }
 
-        // Create a list of futures to track completion
-        List<CompletableFuture<Void>> saveFutures = new ArrayList<>();
+    /**
+     * Synchronous variant of {@link #getOfflineData(UUID)} for placeholders.
+     * If the data is not available, it returns a temporary default object and triggers an async load.
+     */
+    public PlayerRankData getOfflineDataSynchronously(UUID uuid) {
+        PlayerRankData data = playerDataCache.peek(uuid);
+        if (data == null) {
+            data = offlinePlayerCache.getIfPresent(uuid);
+        }
+        if (data == null) {
+            offlinePlayerCache.get(uuid);
+            return PlayerRankData.newPlayer(uuid);
+        }
+        return data;
+    }
 
-        // Save each player's data
-        for (PlayerRankData data : playerDataCache.values()) {
-            saveFutures.add(databaseService.savePlayerData(data));
+    /**
+     * Drops the projection of an offline player, after their rows were changed directly in the database.
+     */
+    public void invalidateOfflineData(UUID uuid) {
+        offlinePlayerCache.invalidate(uuid);
+    }
+
+    /**
+     * Gets the statistics of the offline player projection cache.
+     */
+    public PlayerDataCache.Stats getOfflineCacheStats() {
+        return offlinePlayerCache.getStats();
+    }
+
+    /**
+     * Gets the statistics of the player data cache.
+     */
+    public PlayerDataCache.Stats getCacheStats() {
+        return playerDataCache.getStats();
+    }
+
+    /**
+     * Writes the rows changed since the last flush, for every cached player, with chunked multi-row upserts.
+     * Runs periodically from the write-behind flusher. A failed write marks its rows dirty again,
+     * so they are retried by the next flush, including those of players who left the cache meanwhile.
+     * @return A future that completes once this flush, and every flush before it, has finished.
+     */
+    public CompletableFuture<Void> flushChanges() {
+        return flushChanges(false);
+    }
+
+    private CompletableFuture<Void> flushChanges(boolean reportProgress) {
+        synchronized (flushLock) {
+            Map<PlayerRankData, PlayerDataChanges> drained = new LinkedHashMap<>();
+            for (PlayerRankData data : playerDataCache.values()) {
+                drainInto(drained, data);
+            }
+            for (PlayerRankData data : unsavedData.values()) {
+                drainInto(drained, data);
+            }
+            if (!reportProgress || drained.isEmpty()) {
+                return writeChanges(drained, written -> { });
+            }
+
+            int players = drained.size();
+            int rows = drained.values().stream().mapToInt(PlayerDataChanges::getRowCount).sum();
+            long start = System.nanoTime();
+            plugin.getLogger().info("Saving " + rows + " changed rows for " + players + " players...");
+            return writeChanges(drained, progressLogger(players)).thenRun(() ->
+                    plugin.getLogger().info(String.format("Saved %d rows for %d players in %.1fms.",
+                            rows, players, (System.nanoTime() - start) / 1_000_000.0)));
         }
+    }
 
-        // Wait for all saves to complete
-        CompletableFuture.allOf(saveFutures.toArray(new CompletableFuture[0])).join();
+    private static void drainInto(Map<PlayerRankData, PlayerDataChanges> drained, PlayerRankData data) {
+        if (data.isDirty()) {
+            PlayerDataChanges changes = data.drainChanges();
+            if (!changes.isEmpty()) {
+                drained.put(data, changes);
+            }
+        }
+    }
 
-        plugin.getPerformanceMonitor().endOperation("batch-save");
-        plugin.getLogger().info("All player data saved successfully.");
+    // Logs every quarter of a large save; chunks may report from several threads at once
+    private IntConsumer progressLogger(int players) {
+        int step = Math.max(PROGRESS_LOG_MIN_PLAYERS, players / 4);
+        int[] nextReport = {step};
+        return written -> {
+            synchronized (nextReport) {
+                if (written < nextReport[0] || written >= players) {
+                    return;
+                }
+                nextReport[0] = (written / step + 1) * step;
+            }
+            plugin.getLogger().info("Saved " + written + "/" + players + " players...");
+        };
+    }
+
+    // Must be called while holding flushLock, in the same block that drained the changes
+    private CompletableFuture<Void> writeChanges(Map<PlayerRankData, PlayerDataChanges> drained, IntConsumer progress) {
+        return writeChanges(drained, progress, lastFlush);
+    }
+
+    /**
+     * Queue a write of the drained rows once the given write has finished.
+     * Must be called while holding flushLock, in the same block that drained the changes.
+     * @param after The write to order this one after: every earlier flush, or the player's own pending write.
+     * @return A future that completes once the rows are written.
+     */
+    private CompletableFuture<Void> writeChanges(Map<PlayerRankData, PlayerDataChanges> drained, IntConsumer progress, CompletableFuture<Void> after) {
+        if (drained.isEmpty()) {
+            return after;
+        }
+        int rows = drained.values().stream().mapToInt(PlayerDataChanges::getRowCount).sum();
+        CompletableFuture<Void> write = after
+                .handle((ignored, previousFailure) -> null)
+                .thenCompose(ignored -> databaseService.savePlayerChangesBulk(List.copyOf(drained.values()), progress))
+                .whenComplete((ignored, ex) -> {
+                    synchronized (flushLock) {
+                        drained.forEach((data, changes) -> {
+                            if (ex == null) {
+                                if (!data.isDirty()) {
+                                    unsavedData.remove(changes.uuid(), data);
+                                }
+                                return;
+                            }
+                            data.markDirty(changes);
+                            // Data that left the cache is kept, so the next flush still finds its rows
+                            if (playerDataCache.peek(changes.uuid()) != data) {
+                                unsavedData.put(changes.uuid(), data);
+                            }
+                        });
+                    }
+                    if (ex == null) {
+                        plugin.getPerformanceMonitor().recordWriteBehindFlush(rows);
+                        return;
+                    }
+                    plugin.getPerformanceMonitor().recordWriteBehindFailure();
+                    plugin.getLogger().log(Level.SEVERE, "Failed to write " + rows + " changed rows for "
+                            + drained.size() + " players; they will be retried on the next flush.", ex);
+                });
+        // Later flushes and the shutdown save still wait for every write
+        lastFlush = after == lastFlush ? write : CompletableFuture.allOf(lastFlush, write);
+
+        for (PlayerDataChanges changes : drained.values()) {
+            pendingWrites.put(changes.uuid(), write);
+        }
+        write.whenComplete((ignored, ex) -> {
+            for (PlayerDataChanges changes : drained.values()) {
+                pendingWrites.remove(changes.uuid(), write);
+            }
+        });
+        return write;
+    }
+
+    /**
+     * Saves all cached player data to the database with the bulk save, logging progress and timing.
+     * Only rows changed since the last flush are written. This method is called during plugin shutdown.
+     */
+    public void saveAll() {
+        if (playerDataCache.isEmpty() && unsavedData.isEmpty()) return;
+
+        plugin.getPerformanceMonitor().startOperation("batch-save");
+
+        try {
+            flushChanges(true).join();
+            plugin.getLogger().info("All player data saved successfully.");
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save player data on shutdown", e);
+        } finally {
+            plugin.getPerformanceMonitor().endOperation("batch-save");
+        }
     }
 
     /**
@@ -203,65 +570,93 @@ public class PlayerManagerService implements Listener {
      * This should be called when the plugin is disabled.
      */
     public void shutdown() {
+        // Let running mutations finish before their changes are saved
+        mutationQueue.shutdown(plugin.getLogger());
+
         // Save all player data
         saveAll();
 
-        // Shutdown the executor
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                executor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            executor.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-
         // Clear caches
         clearCache();
 
         // Log cache statistics
-        double hitRatio = cacheHits + cacheMisses > 0 
-            ? (double) cacheHits / (cacheHits + cacheMisses) * 100 
-            : 0;
+        PlayerDataCache.Stats stats = playerDataCache.getStats();
         plugin.getLogger().info(String.format(
-            "Cache statistics - Hits: %d, Misses: %d, Ratio: %.1f%%", 
-            cacheHits, cacheMisses, hitRatio));
+            "Cache statistics - Hits: %d, Misses: %d, Ratio: %.1f%%, Evictions: %d, Expirations: %d, Avg load: %.2fms",
+            stats.hits(), stats.misses(), stats.getHitRatio() * 100, stats.evictions(), stats.expirations(),
+            stats.averageLoadMillis()));
     }
 
     private void performCacheCleanup() {
-        long cleanupThreshold = System.currentTimeMillis() - cacheTtlMs;
-
         // Track performance metrics
         plugin.getPerformanceMonitor().startOperation("cache-cleanup");
 
-        // First, remove expired entries
-        cacheTimestamps.entrySet().removeIf(entry -> {
-            if (entry.getValue() < cleanupThreshold) {
-                playerDataCache.remove(entry.getKey());
-                return true;
+        // Drop data loaded for logins that never completed
+        long loginThreshold = System.currentTimeMillis() - PENDING_LOGIN_EXPIRY_MS;
+        pendingLogins.forEach((uuid, loginTime) -> {
+            if (loginTime < loginThreshold) {
+                dropPendingLogin(uuid);
             }
-            return false;
         });
 
-        // Then, if we have a max cache size, trim down to that size
-        if (maxCachedPlayers > 0 && playerDataCache.size() > maxCachedPlayers) {
-            // Sort entries by timestamp (oldest first)
-            cacheTimestamps.entrySet().stream()
-                .sorted(Map.Entry.comparingByValue())
-                .limit(playerDataCache.size() - maxCachedPlayers)
-                .forEach(entry -> {
-                    playerDataCache.remove(entry.getKey());
-                    cacheTimestamps.remove(entry.getKey());
-                });
-        }
+        // Remove expired entries. Online players and entries with unflushed changes are kept.
+        playerDataCache.expireEntries();
+        offlinePlayerCache.expireEntries();
 
         plugin.getPerformanceMonitor().endOperation("cache-cleanup");
     }
 
+    /**
+     * Adapts the cached player data to a reloaded progression runtime, without reading anything from the database.
+     * Pending changes are flushed first, then the data of progression types that no longer exist is dropped.
+     * Values derived from the old runtime's services are discarded so they are rebuilt against the new ones.
+     * @param previous The runtime before the reload.
+     * @param current The runtime now published.
+     * @return A future that completes once the flushed changes are written.
+     */
+    public CompletableFuture<Void> adaptToRuntime(ProgressionRuntime previous, ProgressionRuntime current) {
+        // The flush drains the changes before returning, so dropping rows afterwards cannot lose a pending write
+        CompletableFuture<Void> flush = flushChanges();
+
+        BitSet removedTypes = new BitSet();
+        for (ProgressionType type : previous.getAllProgressionTypes()) {
+            if (current.getProgressionType(type.getId()) == null) {
+                removedTypes.set(type.getIndex());
+            }
+        }
+        for (PlayerRankData data : playerDataCache.values()) {
+            if (!removedTypes.isEmpty()) {
+                data.removeProgressions(removedTypes);
+            }
+            data.clearDerivedValues();
+        }
+        if (!removedTypes.isEmpty()) {
+            plugin.getLogger().info("Dropped cached data of " + removedTypes.cardinality() + " removed progression types.");
+        }
+        return flush;
+    }
+
+    /**
+     * Drops the data loaded during pre-login for a player who did not finish joining.
+     */
+    private void dropPendingLogin(UUID uuid) {
+        if (pendingLogins.remove(uuid) == null) {
+            return;
+        }
+        // The shared load may have other callers, so it is not cancelled; its result is discarded once staged
+        CompletableFuture<PlayerRankData> loadingFuture = loadingFutures.get(uuid);
+        if (loadingFuture != null) {
+            loadingFuture.thenRun(() -> playerDataCache.discard(uuid));
+        } else {
+            playerDataCache.discard(uuid);
+        }
+    }
+
     public void clearCache() {
+        // Queue the pending changes first; the drained rows keep their values after the cache is cleared
+        flushChanges();
         playerDataCache.clear();
-        cacheTimestamps.clear();
+        offlinePlayerCache.clear();
         loadingFutures.clear();
         plugin.getLogger().info("Player data cache cleared.");
     }
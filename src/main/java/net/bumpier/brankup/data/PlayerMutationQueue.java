@@ -0,0 +1,85 @@
+package net.bumpier.brankup.data;
+
+import net.bumpier.brankup.util.IoExecutor;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Per-player mailboxes that run progression mutations one at a time, in submission order.
+ * A mutation is a task returning a future; the next mutation of the same player starts only once that future
+ * completes, so a check, withdraw and level change chained in one task can never interleave with another task's.
+ * Each player's mailbox is just the tail of their chain, so there is no global lock and different players
+ * progress in parallel.
+ */
+public class PlayerMutationQueue {
+
+    // Tail of each player's chain; completes when the player's last submitted mutation has finished
+    private final Map<UUID, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    // Mutations may block on economy calls, so they get their own threads rather than the common pool.
+    // Each player runs at most one at a time, so on virtual threads the number of players bounds the concurrency.
+    // Platform threads are capped at the processor count, so a burst of mutations cannot start thousands of them.
+    private final IoExecutor executor;
+
+    /**
+     * @param virtualThreads Whether mutations run on virtual threads instead of platform threads.
+     */
+    public PlayerMutationQueue(boolean virtualThreads) {
+        int concurrency = virtualThreads ? Integer.MAX_VALUE : Runtime.getRuntime().availableProcessors();
+        this.executor = new IoExecutor("bRankup-Progression-Thread", concurrency, virtualThreads);
+    }
+
+    /**
+     * Queue a mutation for a player. It starts after every mutation submitted before it for the same player.
+     * A mutation must not wait on a later mutation of the same player, since that one cannot start first.
+     * @param task Starts the mutation; the returned stage must complete once the mutation is done.
+     * @return A future completed with the mutation's result.
+     */
+    public <T> CompletableFuture<T> submit(UUID uuid, Supplier<? extends CompletionStage<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<Void> tail = result.handle((value, ex) -> null);
+        CompletableFuture<Void> previous = tails.put(uuid, tail);
+
+        Runnable start = () -> {
+            try {
+                task.get().whenComplete((value, ex) -> {
+                    if (ex != null) {
+                        result.completeExceptionally(ex);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        };
+        CompletableFuture<Void> ready = previous != null ? previous : CompletableFuture.completedFuture(null);
+        // Fails the mutation instead of leaving it pending if the executor was shut down, before or after it was queued
+        ready.thenCompose(ignored -> executor.runAsync(start)).exceptionally(ex -> {
+            result.completeExceptionally(ex);
+            return null;
+        });
+
+        // Drop the mailbox once it is idle; a newer tail means more work was queued behind this one
+        tail.thenRun(() -> tails.remove(uuid, tail));
+        return result;
+    }
+
+    /**
+     * Stop accepting new work and wait briefly for running mutations to finish.
+     * @param logger Where to report mutations that were dropped because they never started.
+     */
+    public void shutdown(Logger logger) {
+        executor.shutdown(5, TimeUnit.SECONDS, logger);
+    }
+
+    public IoExecutor getExecutor() {
+        return executor;
+    }
+}
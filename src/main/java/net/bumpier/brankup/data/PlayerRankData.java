@@ -1,28 +1,48 @@
 package net.bumpier.brankup.data;
 
+import java.math.BigDecimal;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class PlayerRankData {
 
+    // Bitsets kept per progression index, see Slots
+    private static final int LEVEL_SET = 0;
+    private static final int AUTO_ENABLED = 1;
+    private static final int AUTO_SET = 2;
+    private static final int LEVEL_DIRTY = 3;
+    private static final int AUTO_DIRTY = 4;
+    private static final int BITSET_COUNT = 5;
+
     private final UUID uuid;
-    private final Map<String, Long> progressionLevels = new ConcurrentHashMap<>();
+    // Levels and auto-progression flags, addressed by ProgressionIds index. Reads are lock-free;
+    // writes, growth and draining the dirty bits lock on this object.
+    private volatile Slots slots;
     private final Set<String> claimedOneTimeRewards;
-    // The old boolean fields have been replaced with this dynamic map
-    private final Map<String, Boolean> autoProgressionStates = new ConcurrentHashMap<>();
+    // Bumped after every level change, so values derived from the levels know when to recalculate
+    private final AtomicLong levelsVersion = new AtomicLong();
+    private final Map<Object, Object> derivedValues = new ConcurrentHashMap<>();
+    // Immutable view for readers, rebuilt on the first read after a change; null while stale
+    private volatile Snapshot snapshot;
+    // Bumped after every change of a level or auto-progression state. Guarded by the lock.
+    private long version;
 
     public PlayerRankData(UUID uuid, Map<String, Long> levels, Set<String> claimedRewards, Map<String, Boolean> autoStates) {
         this.uuid = uuid;
+        this.slots = new Slots(ProgressionIds.size());
         if (levels != null) {
-            this.progressionLevels.putAll(levels);
+            levels.forEach((progressionId, level) -> putLevel(ProgressionIds.intern(progressionId), level));
         }
         this.claimedOneTimeRewards = claimedRewards != null ? claimedRewards : new HashSet<>();
         if (autoStates != null) {
-            this.autoProgressionStates.putAll(autoStates);
+            autoStates.forEach((progressionId, enabled) -> putAutoState(ProgressionIds.intern(progressionId), enabled));
         }
     }
 
@@ -32,14 +52,196 @@ public class PlayerRankData {
         return new PlayerRankData(uuid, defaultLevels, new HashSet<>(), new HashMap<>());
     }
 
+    // --- Indexed Methods ---
+    public long getProgressionLevel(int index) {
+        Slots current = slots;
+        return index >= 0 && index < current.capacity ? current.levels.get(index) : 0L;
+    }
+
+    /**
+     * Check if a level has been stored for the progression, even if it is 0.
+     */
+    public boolean hasProgressionLevel(int index) {
+        return slots.test(LEVEL_SET, index);
+    }
+
+    public boolean isAutoProgressionEnabled(int index) {
+        return slots.test(AUTO_ENABLED, index);
+    }
+
+    public synchronized void setProgressionLevel(int index, long level) {
+        putLevel(index, level);
+        onLevelChanged(index);
+    }
+
+    public synchronized void incrementProgressionLevel(int index) {
+        putLevel(index, getProgressionLevel(index) + 1);
+        onLevelChanged(index);
+    }
+
+    public synchronized void setAutoProgressionEnabled(int index, boolean enabled) {
+        putAutoState(index, enabled);
+        slots.set(AUTO_DIRTY, index, true);
+    }
+
     // --- Dynamic Methods ---
-    public long getProgressionLevel(String progressionId) { return progressionLevels.getOrDefault(progressionId, 0L); }
-    public void setProgressionLevel(String progressionId, long level) { progressionLevels.put(progressionId, level); }
-    public void incrementProgressionLevel(String progressionId) { progressionLevels.merge(progressionId, 1L, Long::sum); }
-    public boolean isAutoProgressionEnabled(String progressionId) { return autoProgressionStates.getOrDefault(progressionId, false); }
-    public void setAutoProgressionEnabled(String progressionId, boolean enabled) { autoProgressionStates.put(progressionId, enabled); }
-    public Map<String, Long> getAllProgressionLevels() { return new HashMap<>(progressionLevels); }
-    public Map<String, Boolean> getAutoProgressionStates() { return new HashMap<>(autoProgressionStates); }
+    public long getProgressionLevel(String progressionId) { return getProgressionLevel(ProgressionIds.find(progressionId)); }
+    public void setProgressionLevel(String progressionId, long level) { setProgressionLevel(ProgressionIds.intern(progressionId), level); }
+    public void incrementProgressionLevel(String progressionId) { incrementProgressionLevel(ProgressionIds.intern(progressionId)); }
+    public boolean isAutoProgressionEnabled(String progressionId) { return isAutoProgressionEnabled(ProgressionIds.find(progressionId)); }
+    public void setAutoProgressionEnabled(String progressionId, boolean enabled) { setAutoProgressionEnabled(ProgressionIds.intern(progressionId), enabled); }
+
+    public Map<String, Long> getAllProgressionLevels() {
+        return snapshot().getAllProgressionLevels();
+    }
+
+    public Map<String, Boolean> getAutoProgressionStates() {
+        return snapshot().getAutoProgressionStates();
+    }
+
+    // --- Snapshots ---
+
+    /**
+     * Get an immutable view of the levels and auto-progression states, consistent as of one point in time.
+     * Readers such as placeholders use it instead of the live data, so they never see a half-applied change
+     * and never contend with writers. Once published, a snapshot costs a single volatile read until the next change.
+     */
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : publishSnapshot();
+    }
+
+    /**
+     * Check if a snapshot still reflects the current data, e.g. before memoizing a value derived from both.
+     */
+    public boolean isCurrent(Snapshot candidate) {
+        return snapshot == candidate;
+    }
+
+    private synchronized Snapshot publishSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            current = new Snapshot(version, slots);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    // Must be called while holding the lock, or from the constructor
+    private void putLevel(int index, long level) {
+        Slots current = ensureCapacity(index);
+        current.levels.set(index, level);
+        current.set(LEVEL_SET, index, true);
+        onChanged();
+    }
+
+    // Must be called while holding the lock, or from the constructor
+    private void putAutoState(int index, boolean enabled) {
+        Slots current = ensureCapacity(index);
+        current.set(AUTO_ENABLED, index, enabled);
+        current.set(AUTO_SET, index, true);
+        onChanged();
+    }
+
+    // Must be called while holding the lock, or from the constructor
+    private void onChanged() {
+        version++;
+        snapshot = null;
+    }
+
+    private void onLevelChanged(int index) {
+        slots.set(LEVEL_DIRTY, index, true);
+        levelsVersion.incrementAndGet();
+    }
+
+    private Slots ensureCapacity(int index) {
+        Slots current = slots;
+        if (index < current.capacity) {
+            return current;
+        }
+        Slots grown = new Slots(Math.max(index + 1, ProgressionIds.size()), current);
+        slots = grown;
+        return grown;
+    }
+
+    // --- Dirty Tracking ---
+    public boolean isDirty() { return slots.any(LEVEL_DIRTY) || slots.any(AUTO_DIRTY); }
+
+    /**
+     * Collect the rows changed since the last call and clear their dirty marks.
+     * @return The changed rows, empty if nothing changed.
+     */
+    public synchronized PlayerDataChanges drainChanges() {
+        Slots current = slots;
+        Map<String, Long> levels = new HashMap<>();
+        Map<String, Boolean> autoStates = new HashMap<>();
+        for (int index = 0; index < current.capacity; index++) {
+            if (current.test(LEVEL_DIRTY, index)) {
+                current.set(LEVEL_DIRTY, index, false);
+                levels.put(ProgressionIds.getId(index), current.levels.get(index));
+            }
+            if (current.test(AUTO_DIRTY, index)) {
+                current.set(AUTO_DIRTY, index, false);
+                autoStates.put(ProgressionIds.getId(index), current.test(AUTO_ENABLED, index));
+            }
+        }
+        return new PlayerDataChanges(uuid, levels, autoStates);
+    }
+
+    /**
+     * Mark drained rows dirty again after a failed write, so the next flush retries them.
+     * Rows removed in the meantime are not retried.
+     */
+    public synchronized void markDirty(PlayerDataChanges changes) {
+        Slots current = slots;
+        for (String progressionId : changes.levels().keySet()) {
+            int index = ProgressionIds.find(progressionId);
+            if (current.test(LEVEL_SET, index)) {
+                current.set(LEVEL_DIRTY, index, true);
+            }
+        }
+        for (String progressionId : changes.autoStates().keySet()) {
+            int index = ProgressionIds.find(progressionId);
+            if (current.test(AUTO_SET, index)) {
+                current.set(AUTO_DIRTY, index, true);
+            }
+        }
+    }
+
+    /**
+     * Drop the levels and auto-progression states of the given progressions, e.g. after their types were removed.
+     * Their database rows are left alone, and nothing is marked dirty.
+     * @param indices The ProgressionIds indices to drop.
+     */
+    public synchronized void removeProgressions(BitSet indices) {
+        Slots current = slots;
+        boolean levelsChanged = false;
+        for (int index = indices.nextSetBit(0); index >= 0 && index < current.capacity; index = indices.nextSetBit(index + 1)) {
+            if (current.test(LEVEL_SET, index)) {
+                current.levels.set(index, 0L);
+                current.set(LEVEL_SET, index, false);
+                levelsChanged = true;
+            }
+            current.set(LEVEL_DIRTY, index, false);
+            current.set(AUTO_ENABLED, index, false);
+            current.set(AUTO_SET, index, false);
+            current.set(AUTO_DIRTY, index, false);
+        }
+        if (levelsChanged) {
+            levelsVersion.incrementAndGet();
+        }
+        onChanged();
+    }
+
+    // --- Derived Values ---
+    public long getLevelsVersion() { return levelsVersion.get(); }
+    public Object getDerivedValue(Object key) { return derivedValues.get(key); }
+    public void setDerivedValue(Object key, Object value) { derivedValues.put(key, value); }
+    public void clearDerivedValues() {
+        derivedValues.clear();
+        // The snapshot memoizes costs of the old services too
+        snapshot = null;
+    }
 
     // --- Legacy Getters for PAPI ---
     public long getRank() { return getProgressionLevel("rankup"); }
@@ -51,4 +253,160 @@ public class PlayerRankData {
     public Set<String> getClaimedOneTimeRewards() { return claimedOneTimeRewards; }
     public void addClaimedReward(String rewardKey) { this.claimedOneTimeRewards.add(rewardKey); }
     public UUID getUuid() { return uuid; }
-}
\ No newline at end of file
+
+    /**
+     * Immutable, versioned copy of a player's levels and auto-progression states, addressed by ProgressionIds index.
+     * Next-level costs derived from it can be memoized on it, so repeated placeholder reads neither recalculate
+     * nor reformat them until the player's data changes or the progression services are reloaded.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final long[] levels;
+        private final long[] levelSet;
+        private final long[] autoEnabled;
+        private final long[] autoSet;
+        // Memoized derived values; racy but idempotent, since every thread derives the same immutable value
+        private final BigDecimal[] nextCosts;
+        private final String[] formattedNextCosts;
+
+        // Called while holding the owner's lock, so the copy is consistent
+        private Snapshot(long version, Slots slots) {
+            this.version = version;
+            this.levels = new long[slots.capacity];
+            for (int index = 0; index < slots.capacity; index++) {
+                levels[index] = slots.levels.get(index);
+            }
+            this.levelSet = slots.copy(LEVEL_SET);
+            this.autoEnabled = slots.copy(AUTO_ENABLED);
+            this.autoSet = slots.copy(AUTO_SET);
+            this.nextCosts = new BigDecimal[slots.capacity];
+            this.formattedNextCosts = new String[slots.capacity];
+        }
+
+        public long getVersion() { return version; }
+
+        public long getProgressionLevel(int index) {
+            return index >= 0 && index < levels.length ? levels[index] : 0L;
+        }
+
+        public boolean hasProgressionLevel(int index) {
+            return test(levelSet, index);
+        }
+
+        public boolean isAutoProgressionEnabled(int index) {
+            return test(autoEnabled, index);
+        }
+
+        /**
+         * @return The memoized cost of the next level of a progression, or null if not derived yet.
+         */
+        public BigDecimal getNextCost(int index) {
+            return index >= 0 && index < nextCosts.length ? nextCosts[index] : null;
+        }
+
+        public void setNextCost(int index, BigDecimal cost) {
+            if (index >= 0 && index < nextCosts.length) {
+                nextCosts[index] = cost;
+            }
+        }
+
+        /**
+         * @return The memoized display form of the next level's cost, or null if not derived yet.
+         */
+        public String getFormattedNextCost(int index) {
+            return index >= 0 && index < formattedNextCosts.length ? formattedNextCosts[index] : null;
+        }
+
+        public void setFormattedNextCost(int index, String formattedCost) {
+            if (index >= 0 && index < formattedNextCosts.length) {
+                formattedNextCosts[index] = formattedCost;
+            }
+        }
+
+        public Map<String, Long> getAllProgressionLevels() {
+            Map<String, Long> result = new HashMap<>();
+            for (int index = 0; index < levels.length; index++) {
+                if (test(levelSet, index)) {
+                    result.put(ProgressionIds.getId(index), levels[index]);
+                }
+            }
+            return result;
+        }
+
+        public Map<String, Boolean> getAutoProgressionStates() {
+            Map<String, Boolean> result = new HashMap<>();
+            for (int index = 0; index < levels.length; index++) {
+                if (test(autoSet, index)) {
+                    result.put(ProgressionIds.getId(index), test(autoEnabled, index));
+                }
+            }
+            return result;
+        }
+
+        private static boolean test(long[] bits, int index) {
+            return index >= 0 && (index >>> 6) < bits.length && (bits[index >>> 6] & (1L << index)) != 0;
+        }
+    }
+
+    /**
+     * Fixed-capacity storage: one level per index plus one bit per index in each bitset.
+     * The bitsets share a single array, BITSET_COUNT blocks of 'words' longs each.
+     */
+    private static final class Slots {
+        private final int capacity;
+        private final int words;
+        private final AtomicLongArray levels;
+        private final AtomicLongArray bits;
+
+        private Slots(int capacity) {
+            this.capacity = capacity;
+            this.words = (capacity + 63) >>> 6;
+            this.levels = new AtomicLongArray(capacity);
+            this.bits = new AtomicLongArray(words * BITSET_COUNT);
+        }
+
+        private Slots(int capacity, Slots previous) {
+            this(capacity);
+            for (int index = 0; index < previous.capacity; index++) {
+                levels.set(index, previous.levels.get(index));
+            }
+            for (int bitset = 0; bitset < BITSET_COUNT; bitset++) {
+                for (int word = 0; word < previous.words; word++) {
+                    bits.set(bitset * words + word, previous.bits.get(bitset * previous.words + word));
+                }
+            }
+        }
+
+        private boolean test(int bitset, int index) {
+            if (index < 0 || index >= capacity) {
+                return false;
+            }
+            return (bits.get(bitset * words + (index >>> 6)) & (1L << index)) != 0;
+        }
+
+        // Callers hold the owner's lock, so a plain read-modify-write cannot lose an update
+        private void set(int bitset, int index, boolean value) {
+            int word = bitset * words + (index >>> 6);
+            long mask = 1L << index;
+            long current = bits.get(word);
+            bits.set(word, value ? current | mask : current & ~mask);
+        }
+
+        private long[] copy(int bitset) {
+            long[] copy = new long[words];
+            for (int word = 0; word < words; word++) {
+                copy[word] = bits.get(bitset * words + word);
+            }
+            return copy;
+        }
+
+        private boolean any(int bitset) {
+            for (int word = 0; word < words; word++) {
+                if (bits.get(bitset * words + word) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package net.bumpier.brankup.data;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry that gives every progression ID a dense int index, used to address the arrays in {@link PlayerRankData}.
+ * Indices are only ever appended, so they stay valid across reloads and for IDs that are no longer configured.
+ */
+public final class ProgressionIds {
+
+    private static final Map<String, Integer> indices = new ConcurrentHashMap<>();
+    private static volatile String[] ids = new String[0];
+
+    private ProgressionIds() {
+    }
+
+    /**
+     * Get the index of a progression ID, assigning the next free index if it has none yet.
+     */
+    public static int intern(String progressionId) {
+        Integer index = indices.get(progressionId);
+        if (index != null) {
+            return index;
+        }
+        synchronized (ProgressionIds.class) {
+            index = indices.get(progressionId);
+            if (index == null) {
+                String[] current = ids;
+                index = current.length;
+                String[] grown = Arrays.copyOf(current, index + 1);
+                grown[index] = progressionId;
+                // Publish the name before the index, so any index a reader can see resolves to its ID
+                ids = grown;
+                indices.put(progressionId, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Get the index of a progression ID without assigning one.
+     * @return The index, or -1 if the ID has never been interned.
+     */
+    public static int find(String progressionId) {
+        Integer index = indices.get(progressionId);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Get the progression ID with the given index.
+     */
+    public static String getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Get the number of interned IDs; every index is below this value.
+     */
+    public static int size() {
+        return ids.length;
+    }
+}
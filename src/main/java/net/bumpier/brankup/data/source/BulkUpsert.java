@@ -0,0 +1,98 @@
+package net.bumpier.brankup.data.source;
+
+import net.bumpier.brankup.data.PlayerDataChanges;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes many players' rows with multi-row upserts: one statement carries a few hundred rows, so a save of
+ * thousands of players is a handful of statement executions instead of one per row.
+ * Used by the bulk save of both JDBC backends.
+ */
+final class BulkUpsert {
+
+    // Three parameters per row keeps a full statement below SQLite's historic limit of 999 variables
+    static final int ROWS_PER_STATEMENT = 300;
+
+    /**
+     * Prepares statements for the upsert. The caller decides whether they are cached or closed afterwards.
+     */
+    @FunctionalInterface
+    interface Statements {
+        PreparedStatement prepare(String sql) throws SQLException;
+    }
+
+    private record Row(UUID uuid, String key, long value) {}
+
+    private BulkUpsert() {
+    }
+
+    /**
+     * Split the players into chunks of at most the given size, e.g. one per transaction.
+     */
+    static List<List<PlayerDataChanges>> partition(Collection<PlayerDataChanges> players, int playersPerChunk) {
+        List<PlayerDataChanges> list = new ArrayList<>(players);
+        List<List<PlayerDataChanges>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += playersPerChunk) {
+            chunks.add(list.subList(from, Math.min(from + playersPerChunk, list.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Upsert the players' levels and auto-progression states into the layout's tables, in the caller's transaction.
+     * @return The number of rows written.
+     */
+    static int write(Statements statements, SqlDialect dialect, SchemaLayout layout, Collection<PlayerDataChanges> players) throws SQLException {
+        List<Row> levels = new ArrayList<>();
+        List<Row> autoStates = new ArrayList<>();
+        for (PlayerDataChanges player : players) {
+            for (Map.Entry<String, Long> entry : player.levels().entrySet()) {
+                levels.add(new Row(player.uuid(), entry.getKey(), entry.getValue()));
+            }
+            for (Map.Entry<String, Boolean> entry : player.autoStates().entrySet()) {
+                autoStates.add(new Row(player.uuid(), entry.getKey(), entry.getValue() ? 1 : 0));
+            }
+        }
+        upsert(statements, dialect, layout, layout.levelsTable(), "level", levels);
+        upsert(statements, dialect, layout, layout.autoStatesTable(), "is_enabled", autoStates);
+        return levels.size() + autoStates.size();
+    }
+
+    private static void upsert(Statements statements, SqlDialect dialect, SchemaLayout layout, String table, String valueColumn, List<Row> rows) throws SQLException {
+        PreparedStatement full = null;
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            List<Row> chunk = rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size()));
+            PreparedStatement ps;
+            if (chunk.size() == ROWS_PER_STATEMENT) {
+                // Every full chunk shares one statement
+                if (full == null) {
+                    full = statements.prepare(sql(dialect, table, valueColumn, ROWS_PER_STATEMENT));
+                }
+                ps = full;
+            } else {
+                ps = statements.prepare(sql(dialect, table, valueColumn, chunk.size()));
+            }
+            int index = 1;
+            for (Row row : chunk) {
+                layout.bindUuid(ps, index++, row.uuid());
+                ps.setString(index++, row.key());
+                ps.setLong(index++, row.value());
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    private static String sql(SqlDialect dialect, String table, String valueColumn, int rows) {
+        return "INSERT INTO " + table + " (uuid, progression_id, " + valueColumn + ") VALUES "
+                + String.join(", ", Collections.nCopies(rows, "(?, ?, ?)"))
+                + dialect.getUpsertClause("uuid, progression_id", valueColumn) + ";";
+    }
+}
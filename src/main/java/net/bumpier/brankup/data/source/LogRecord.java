@@ -0,0 +1,133 @@
+package net.bumpier.brankup.data.source;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * A player's complete stored data, and its on-disk form in the log storage.
+ * A record is a header with the payload length and its CRC-32, followed by the payload: a format byte, the UUID,
+ * then the levels, auto-progression states and claimed rewards. The checksum lets a scan stop at a torn write.
+ * @param levels Progression levels by progression ID. Mutable.
+ * @param autoStates Auto-progression states by progression ID. Mutable.
+ * @param rewards Claimed one-time reward keys. Mutable.
+ */
+record LogRecord(UUID uuid, Map<String, Long> levels, Map<String, Boolean> autoStates, Set<String> rewards) {
+
+    static final int HEADER_BYTES = 8;
+    private static final byte FORMAT = 1;
+    // Longer payloads can only come from a corrupt header
+    static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+
+    static LogRecord empty(UUID uuid) {
+        return new LogRecord(uuid, new HashMap<>(), new HashMap<>(), new HashSet<>());
+    }
+
+    /**
+     * Encode the record, header included, ready to be written.
+     */
+    ByteBuffer encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 24 * (levels.size() + autoStates.size() + rewards.size()));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(FORMAT);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            out.writeInt(levels.size());
+            for (Map.Entry<String, Long> entry : levels.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.writeInt(autoStates.size());
+            for (Map.Entry<String, Boolean> entry : autoStates.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeBoolean(entry.getValue());
+            }
+            out.writeInt(rewards.size());
+            for (String reward : rewards) {
+                writeString(out, reward);
+            }
+        } catch (IOException e) {
+            // Only the in-memory stream is written
+            throw new UncheckedIOException(e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        int payloadLength = buffer.capacity() - HEADER_BYTES;
+        buffer.putInt(0, payloadLength);
+        buffer.putInt(4, checksum(buffer, HEADER_BYTES, payloadLength));
+        return buffer;
+    }
+
+    /**
+     * Decode a complete record, header included.
+     * @throws IOException If the checksum does not match or the payload is malformed.
+     */
+    static LogRecord decode(ByteBuffer buffer) throws IOException {
+        int payloadLength = buffer.getInt(0);
+        if (payloadLength < 0 || payloadLength != buffer.capacity() - HEADER_BYTES
+                || buffer.getInt(4) != checksum(buffer, HEADER_BYTES, payloadLength)) {
+            throw new IOException("Corrupt log record");
+        }
+        try {
+            ByteBuffer in = buffer.duplicate().position(HEADER_BYTES);
+            if (in.get() != FORMAT) {
+                throw new IOException("Unknown log record format");
+            }
+            UUID uuid = new UUID(in.getLong(), in.getLong());
+            int levelCount = in.getInt();
+            Map<String, Long> levels = new HashMap<>();
+            for (int i = 0; i < levelCount; i++) {
+                levels.put(readString(in), in.getLong());
+            }
+            int stateCount = in.getInt();
+            Map<String, Boolean> autoStates = new HashMap<>();
+            for (int i = 0; i < stateCount; i++) {
+                autoStates.put(readString(in), in.get() != 0);
+            }
+            int rewardCount = in.getInt();
+            Set<String> rewards = new HashSet<>();
+            for (int i = 0; i < rewardCount; i++) {
+                rewards.add(readString(in));
+            }
+            return new LogRecord(uuid, levels, autoStates, rewards);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed log record", e);
+        }
+    }
+
+    /**
+     * Read the UUID of an encoded record without decoding the rest.
+     */
+    static UUID readUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(HEADER_BYTES + 1), buffer.getLong(HEADER_BYTES + 9));
+    }
+
+    static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(offset).limit(offset + length));
+        return (int) crc.getValue();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,150 @@
+package net.bumpier.brankup.data.source;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One append-only file of the log storage. Records are only ever appended at the end; a record is replaced by
+ * appending a newer version, possibly to a later segment, and the old bytes stay until the segment is compacted.
+ * Not thread-safe.
+ */
+final class LogSegment implements AutoCloseable {
+
+    /**
+     * Receives the records found by a scan.
+     */
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(UUID uuid, long offset, ByteBuffer record) throws IOException;
+    }
+
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private long size;
+
+    private LogSegment(int id, Path path, FileChannel channel) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    static LogSegment open(Path directory, int id) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        return new LogSegment(id, path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    static String fileName(int id) {
+        return String.format("segment-%08d.log", id);
+    }
+
+    /**
+     * @return The segment ID of a segment file name, or -1 if it is not one.
+     */
+    static int parseId(String fileName) {
+        if (!fileName.startsWith("segment-") || !fileName.endsWith(".log")) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(fileName.substring(8, fileName.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    int getId() { return id; }
+    long getSize() { return size; }
+
+    /**
+     * Append the encoded records with a single gathering write.
+     * @return The offset of the first record; the others follow back to back.
+     */
+    long append(List<ByteBuffer> records) throws IOException {
+        long offset = size;
+        ByteBuffer[] buffers = new ByteBuffer[records.size()];
+        long total = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = records.get(i).duplicate().rewind();
+            total += buffers[i].remaining();
+        }
+        channel.position(offset);
+        long written = 0;
+        while (written < total) {
+            written += channel.write(buffers);
+        }
+        size = offset + total;
+        return offset;
+    }
+
+    /**
+     * Read a whole record, header included.
+     */
+    ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Log record at " + offset + " in " + path.getFileName() + " is past the end of the file");
+            }
+        }
+        return buffer.rewind();
+    }
+
+    /**
+     * Visit the valid records from a position, up to roughly the given number of bytes.
+     * Stops early at the first torn or corrupt record.
+     * @return The position after the last valid record visited; the end of the segment once everything is scanned.
+     */
+    long scan(long from, long maxBytes, RecordVisitor visitor) throws IOException {
+        long position = from;
+        ByteBuffer header = ByteBuffer.allocate(LogRecord.HEADER_BYTES);
+        while (position < size && position - from < maxBytes) {
+            if (size - position < LogRecord.HEADER_BYTES) {
+                break;
+            }
+            header.clear();
+            channel.read(header, position);
+            int payloadLength = header.getInt(0);
+            if (payloadLength <= 0 || payloadLength > LogRecord.MAX_PAYLOAD_BYTES || position + LogRecord.HEADER_BYTES + payloadLength > size) {
+                break;
+            }
+            int length = LogRecord.HEADER_BYTES + payloadLength;
+            ByteBuffer record = read(position, length);
+            if (record.getInt(4) != LogRecord.checksum(record, LogRecord.HEADER_BYTES, payloadLength)) {
+                break;
+            }
+            visitor.visit(LogRecord.readUuid(record), position, record);
+            position += length;
+        }
+        return position;
+    }
+
+    /**
+     * Cut off a torn tail left by a crash, so new records are appended after the last valid one.
+     */
+    void truncate(long newSize) throws IOException {
+        channel.truncate(newSize);
+        size = newSize;
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,480 @@
+package net.bumpier.brankup.data.source;
+
+import net.bumpier.brankup.bRankup;
+import net.bumpier.brankup.data.IDatabaseService;
+import net.bumpier.brankup.data.PlayerDataChanges;
+import net.bumpier.brankup.data.PlayerRankData;
+import net.bumpier.brankup.util.IoExecutor;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Embedded storage without JDBC: every save appends the player's complete record to the end of the active
+ * segment file, and a memory-mapped hash index maps each UUID to their newest record, so a load is one index
+ * lookup and one read. Appends are sequential writes and a batch of players goes out as a single gathering write.
+ *
+ * <p>Replaced records stay in their segment until it is compacted: segments whose live records make up less than
+ * the compaction threshold are rewritten in the background, a chunk at a time, by appending their live records to
+ * the active segment and deleting the old file. The index is flushed and marked clean on shutdown; after a crash it
+ * is rebuilt by scanning the segments, and a torn write at the end of the log is cut off.
+ */
+public class LogStorageService implements IDatabaseService {
+
+    private final bRankup plugin;
+    // Every read, write and compaction step runs on this single thread, so the files and the index need no locking
+    private final IoExecutor executor;
+    // Held by each task, so shutdown does not close the files under a task that outlived the executor's timeout
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Path directory;
+    private final long segmentSizeBytes;
+    private final double compactionThreshold;
+    private final long compactionIntervalTicks;
+    private final boolean syncWrites;
+
+    // Only used from the executor
+    private final TreeMap<Integer, LogSegment> segments = new TreeMap<>();
+    // Bytes of each segment that the index still points at
+    private final Map<Integer, Long> liveBytes = new HashMap<>();
+    private LogSegment active;
+    private MappedHashIndex index;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private volatile boolean closed;
+    private BukkitTask compactionTask;
+
+    // Bytes of a segment scanned per compaction step; other reads and writes run between the steps
+    private static final long COMPACTION_CHUNK_BYTES = 1024 * 1024;
+    // Players per appended batch of a bulk save
+    private static final int BULK_SAVE_PLAYERS_PER_BATCH = 500;
+
+    public LogStorageService(bRankup plugin) {
+        this.plugin = plugin;
+        this.directory = plugin.getDataFolder().toPath().resolve("playerdata-log");
+        this.segmentSizeBytes = Math.max(1, plugin.getConfigManager().getMainConfig().getLong("database.log.segment-size-mb", 64)) * 1024 * 1024;
+        this.compactionThreshold = Math.min(1.0, Math.max(0.0, plugin.getConfigManager().getMainConfig().getDouble("database.log.compaction-threshold", 0.5)));
+        this.compactionIntervalTicks = Math.max(0, plugin.getConfigManager().getMainConfig().getLong("database.log.compaction-interval-seconds", 300)) * 20;
+        this.syncWrites = plugin.getConfigManager().getMainConfig().getBoolean("database.log.sync-writes", false);
+
+        // The segments are appended to by one writer, so everything runs one at a time
+        this.executor = new IoExecutor("bRankup-DB-Thread", 1, plugin.isVirtualThreads());
+        plugin.getPerformanceMonitor().registerExecutor(executor);
+    }
+
+    @Override
+    public void initialize() {
+        boolean opened = supplyAsync(() -> {
+            try {
+                open();
+                plugin.getLogger().info("Log storage opened with " + segments.size() + " segment(s) and " + index.size() + " players.");
+                return true;
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to open the log storage", e);
+                return false;
+            }
+        }).join();
+        if (opened && compactionIntervalTicks > 0) {
+            compactionTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::compact,
+                    compactionIntervalTicks, compactionIntervalTicks);
+        }
+    }
+
+    @Override
+    public CompletableFuture<PlayerRankData> loadPlayerData(UUID uuid) {
+        return supplyAsync(() -> {
+            LogRecord record = readRecord(uuid);
+            return record != null
+                    ? new PlayerRankData(uuid, record.levels(), record.rewards(), record.autoStates())
+                    : new PlayerRankData(uuid, null, null, null);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, PlayerRankData>> loadPlayerDataBatch(Collection<UUID> uuids) {
+        return supplyAsync(() -> {
+            Map<UUID, PlayerRankData> result = new HashMap<>();
+            for (UUID uuid : new LinkedHashSet<>(uuids)) {
+                LogRecord record = readRecord(uuid);
+                result.put(uuid, record != null
+                        ? new PlayerRankData(uuid, record.levels(), record.rewards(), record.autoStates())
+                        : new PlayerRankData(uuid, null, null, null));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> savePlayerChangesBulk(Collection<PlayerDataChanges> changes, IntConsumer progress) {
+        // Batches queue up on the single thread, so loads run in between
+        AtomicInteger written = new AtomicInteger();
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (List<PlayerDataChanges> batch : BulkUpsert.partition(changes, BULK_SAVE_PLAYERS_PER_BATCH)) {
+            batches.add(runAsync(() -> {
+                writeChanges(batch);
+                progress.accept(written.addAndGet(batch.size()));
+            }));
+        }
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]));
+    }
+
+    @Override
+    public CompletableFuture<Void> setProgressionLevel(UUID uuid, String progressionId, long level) {
+        return runAsync(() -> {
+            LogRecord record = readOrCreate(uuid);
+            record.levels().put(progressionId, level);
+            writeRecords(List.of(record), "Failed to set " + progressionId + " level for " + uuid);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> adjustProgressionLevel(UUID uuid, String progressionId, long delta, long minLevel, long maxLevel) {
+        // Atomic, since nothing else touches the record between the read and the append
+        return supplyAsync(() -> {
+            LogRecord record = readOrCreate(uuid);
+            long newLevel;
+            try {
+                newLevel = Math.addExact(record.levels().getOrDefault(progressionId, 0L), delta);
+            } catch (ArithmeticException e) {
+                return null;
+            }
+            if (newLevel < minLevel || newLevel > maxLevel) {
+                return null;
+            }
+            record.levels().put(progressionId, newLevel);
+            writeRecords(List.of(record), "Failed to adjust " + progressionId + " level for " + uuid);
+            return newLevel;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> loadClaimedRewards(UUID uuid) {
+        return supplyAsync(() -> {
+            LogRecord record = readRecord(uuid);
+            return record != null ? record.rewards() : new HashSet<>();
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> saveClaimedReward(UUID uuid, String rewardKey) {
+        return runAsync(() -> {
+            try {
+                LogRecord record = readOrCreate(uuid);
+                if (record.rewards().add(rewardKey)) {
+                    writeRecords(List.of(record), "Failed to save claimed reward '" + rewardKey + "' for " + uuid);
+                }
+            } catch (CompletionException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to save claimed reward '" + rewardKey + "' for " + uuid, e.getCause());
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        if (compactionTask != null) {
+            compactionTask.cancel();
+            compactionTask = null;
+        }
+        // Let queued writes finish before the files are closed
+        executor.shutdown(5, TimeUnit.SECONDS, plugin.getLogger());
+
+        lock.lock();
+        try {
+            closed = true;
+            if (index == null) {
+                return;
+            }
+            try {
+                for (LogSegment segment : segments.values()) {
+                    segment.force();
+                }
+                // Only now is the index known to match the segments, so the next start can skip the rebuild
+                index.setClean(true);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not flush the log storage; the index will be rebuilt on the next start", e);
+            }
+            for (LogSegment segment : segments.values()) {
+                closeQuietly(segment);
+            }
+            closeQuietly(index);
+            segments.clear();
+            index = null;
+            active = null;
+            plugin.getLogger().info("Log storage closed successfully.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Open the segments and the index, rebuilding the index if the last shutdown was not clean.
+     */
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.log")) {
+            for (Path file : files) {
+                int id = LogSegment.parseId(file.getFileName().toString());
+                if (id > 0) {
+                    segments.put(id, LogSegment.open(directory, id));
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(1, LogSegment.open(directory, 1));
+        }
+        active = segments.lastEntry().getValue();
+
+        index = MappedHashIndex.openClean(directory);
+        if (index != null && !matchesSegments(index)) {
+            closeQuietly(index);
+            index = null;
+        }
+        if (index == null) {
+            plugin.getLogger().info("Rebuilding the log storage index...");
+            index = rebuildIndex();
+        }
+        // Cleared until the next clean shutdown; a crash before that leaves the index to be rebuilt
+        index.setClean(false);
+
+        index.forEach((uuid, location) -> liveBytes.merge(location.segment(), (long) location.length(), Long::sum));
+    }
+
+    private boolean matchesSegments(MappedHashIndex candidate) {
+        boolean[] valid = {true};
+        candidate.forEach((uuid, location) -> {
+            LogSegment segment = segments.get(location.segment());
+            if (segment == null || location.offset() + location.length() > segment.getSize()) {
+                valid[0] = false;
+            }
+        });
+        return valid[0];
+    }
+
+    /**
+     * Scan every segment, oldest first, so each UUID ends up pointing at their newest record.
+     */
+    private MappedHashIndex rebuildIndex() throws IOException {
+        MappedHashIndex[] rebuilt = {MappedHashIndex.create(directory, 0)};
+        for (LogSegment segment : segments.values()) {
+            long end = segment.scan(0, Long.MAX_VALUE, (uuid, offset, record) ->
+                    rebuilt[0] = rebuilt[0].put(uuid, new MappedHashIndex.Location(segment.getId(), offset, record.capacity())));
+            if (end < segment.getSize()) {
+                if (segment == active) {
+                    plugin.getLogger().warning("Discarding " + (segment.getSize() - end) + " bytes of an incomplete write at the end of "
+                            + LogSegment.fileName(segment.getId()) + ".");
+                    segment.truncate(end);
+                } else {
+                    plugin.getLogger().severe("Segment " + LogSegment.fileName(segment.getId()) + " is corrupt after byte " + end
+                            + "; records after it cannot be read.");
+                }
+            }
+        }
+        return rebuilt[0];
+    }
+
+    private LogRecord readRecord(UUID uuid) {
+        MappedHashIndex.Location location = requireIndex().get(uuid);
+        if (location == null) {
+            return null;
+        }
+        try {
+            return LogRecord.decode(segments.get(location.segment()).read(location.offset(), location.length()));
+        } catch (IOException e) {
+            throw new CompletionException("Failed to read data for " + uuid, e);
+        }
+    }
+
+    private LogRecord readOrCreate(UUID uuid) {
+        LogRecord record = readRecord(uuid);
+        return record != null ? record : LogRecord.empty(uuid);
+    }
+
+    /**
+     * Merge the changed rows into the players' records and append the new records.
+     */
+    private void writeChanges(Collection<PlayerDataChanges> changes) {
+        List<LogRecord> records = new ArrayList<>(changes.size());
+        for (PlayerDataChanges playerChanges : changes) {
+            LogRecord record = readOrCreate(playerChanges.uuid());
+            record.levels().putAll(playerChanges.levels());
+            record.autoStates().putAll(playerChanges.autoStates());
+            records.add(record);
+        }
+        writeRecords(records, "Failed to save changes for " + changes.size() + " players");
+    }
+
+    private void writeRecords(List<LogRecord> records, String failure) {
+        List<ByteBuffer> encoded = new ArrayList<>(records.size());
+        for (LogRecord record : records) {
+            encoded.add(record.encode());
+        }
+        try {
+            append(encoded);
+        } catch (IOException e) {
+            throw new CompletionException(failure, e);
+        }
+    }
+
+    /**
+     * Append encoded records to the active segment, starting a new segment whenever it is full,
+     * and point the index at them.
+     */
+    private void append(List<ByteBuffer> records) throws IOException {
+        requireIndex();
+        int from = 0;
+        while (from < records.size()) {
+            if (active.getSize() >= segmentSizeBytes) {
+                roll();
+            }
+            // A segment takes at least one record, however large
+            long room = segmentSizeBytes - active.getSize();
+            int to = from;
+            long bytes = 0;
+            while (to < records.size() && (to == from || bytes + records.get(to).capacity() <= room)) {
+                bytes += records.get(to).capacity();
+                to++;
+            }
+            List<ByteBuffer> batch = records.subList(from, to);
+            long offset = active.append(batch);
+            if (syncWrites) {
+                active.force();
+            }
+            for (ByteBuffer record : batch) {
+                int length = record.capacity();
+                UUID uuid = LogRecord.readUuid(record);
+                MappedHashIndex.Location previous = index.get(uuid);
+                if (previous != null) {
+                    liveBytes.merge(previous.segment(), (long) -previous.length(), Long::sum);
+                }
+                index = index.put(uuid, new MappedHashIndex.Location(active.getId(), offset, length));
+                liveBytes.merge(active.getId(), (long) length, Long::sum);
+                offset += length;
+            }
+            from = to;
+        }
+    }
+
+    private void roll() throws IOException {
+        // The sealed segment is complete; later crashes only ever tear the active one
+        active.force();
+        active = LogSegment.open(directory, active.getId() + 1);
+        segments.put(active.getId(), active);
+    }
+
+    /**
+     * Compact every sealed segment whose live records fall below the threshold. Runs on the timer thread;
+     * the work itself is queued on the executor in small steps.
+     */
+    private void compact() {
+        if (closed || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        supplyAsync(() -> {
+            List<Integer> candidates = new ArrayList<>();
+            for (LogSegment segment : segments.values()) {
+                long live = liveBytes.getOrDefault(segment.getId(), 0L);
+                if (segment != active && live <= segment.getSize() * compactionThreshold) {
+                    candidates.add(segment.getId());
+                }
+            }
+            return candidates;
+        }).thenCompose(candidates -> {
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (int id : candidates) {
+                chain = chain.thenCompose(ignored -> compactSegment(id, 0));
+            }
+            return chain;
+        }).whenComplete((ignored, ex) -> {
+            compacting.set(false);
+            if (ex != null && !closed) {
+                plugin.getLogger().log(Level.WARNING, "Log storage compaction failed", ex);
+            }
+        });
+    }
+
+    /**
+     * Copy the live records of one chunk of a segment to the active segment, then continue with the next chunk.
+     * Once the whole segment is copied, it is deleted.
+     */
+    private CompletableFuture<Void> compactSegment(int id, long from) {
+        return supplyAsync(() -> {
+            LogSegment segment = segments.get(id);
+            if (closed || segment == null) {
+                return -1L;
+            }
+            try {
+                List<ByteBuffer> live = new ArrayList<>();
+                long next = segment.scan(from, COMPACTION_CHUNK_BYTES, (uuid, offset, record) -> {
+                    MappedHashIndex.Location location = index.get(uuid);
+                    if (location != null && location.segment() == id && location.offset() == offset) {
+                        live.add(record);
+                    }
+                });
+                append(live);
+                if (next < segment.getSize() && next > from) {
+                    return next;
+                }
+
+                if (liveBytes.getOrDefault(id, 0L) > 0) {
+                    // Only a corrupt record stops a scan early; keep the file rather than lose what the index still needs
+                    plugin.getLogger().warning("Could not compact " + LogSegment.fileName(id) + "; it is kept.");
+                    return -1L;
+                }
+                // The copies must be on disk before the originals are gone; sealed segments were forced when they filled up
+                active.force();
+                segments.remove(id);
+                liveBytes.remove(id);
+                segment.delete();
+                return -1L;
+            } catch (IOException e) {
+                throw new CompletionException("Failed to compact " + LogSegment.fileName(id), e);
+            }
+        }).thenCompose(next -> next >= 0 ? compactSegment(id, next) : CompletableFuture.completedFuture(null));
+    }
+
+    private MappedHashIndex requireIndex() {
+        if (index == null) {
+            throw new CompletionException(new IOException("The log storage is not open"));
+        }
+        return index;
+    }
+
+    private void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Error closing the log storage", e);
+        }
+    }
+
+    private CompletableFuture<Void> runAsync(Runnable task) {
+        return supplyAsync(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return executor.supplyAsync(() -> {
+            lock.lock();
+            try {
+                return supplier.get();
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+}
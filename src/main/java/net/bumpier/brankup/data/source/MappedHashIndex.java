@@ -0,0 +1,260 @@
+package net.bumpier.brankup.data.source;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Memory-mapped open-addressing hash table from player UUID to the location of their newest log record.
+ * The table lives in a file, so a restart maps it back instead of scanning every segment; a lookup is a few
+ * reads from the page cache. Entries are never removed, so linear probing needs no tombstones.
+ * When the table gets too full, it is rehashed into a new file of twice the size, named by a generation number.
+ *
+ * <p>The header holds a clean flag that is only set after a clean shutdown has flushed the table. An index that
+ * was not closed cleanly may have lost updates and is rebuilt from the segments instead. Not thread-safe.
+ */
+final class MappedHashIndex implements AutoCloseable {
+
+    /**
+     * Where a record is stored.
+     * @param length The record length, header included.
+     */
+    record Location(int segment, long offset, int length) {}
+
+    private static final int MAGIC = 0x62524B49;
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 64;
+    // UUID (16), segment (4), length (4), offset (8)
+    private static final int SLOT_BYTES = 32;
+    private static final int MIN_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7;
+
+    private static final int MAGIC_AT = 0;
+    private static final int FORMAT_AT = 4;
+    private static final int CAPACITY_AT = 8;
+    private static final int SIZE_AT = 12;
+    private static final int CLEAN_AT = 16;
+
+    private final Path directory;
+    private final long generation;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int size;
+
+    private MappedHashIndex(Path directory, long generation, FileChannel channel, MappedByteBuffer buffer, int capacity, int size) {
+        this.directory = directory;
+        this.generation = generation;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.size = size;
+    }
+
+    /**
+     * Map the newest index file, if it was closed cleanly.
+     * @return The index, or null if there is none or it has to be rebuilt.
+     */
+    static MappedHashIndex openClean(Path directory) throws IOException {
+        long generation = latestGeneration(directory);
+        if (generation < 0) {
+            return null;
+        }
+        Path path = directory.resolve(fileName(generation));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_BYTES) {
+            channel.close();
+            return null;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        int capacity = buffer.getInt(CAPACITY_AT);
+        boolean valid = buffer.getInt(MAGIC_AT) == MAGIC && buffer.getInt(FORMAT_AT) == FORMAT
+                && capacity >= MIN_CAPACITY && Integer.bitCount(capacity) == 1
+                && channel.size() == HEADER_BYTES + (long) capacity * SLOT_BYTES
+                && buffer.getInt(CLEAN_AT) == 1;
+        if (!valid) {
+            channel.close();
+            return null;
+        }
+        return new MappedHashIndex(directory, generation, channel, buffer, capacity, buffer.getInt(SIZE_AT));
+    }
+
+    /**
+     * Create an empty index in a new generation file, removing older generations.
+     * @param expectedEntries The number of entries to size the table for.
+     */
+    static MappedHashIndex create(Path directory, int expectedEntries) throws IOException {
+        int capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD < expectedEntries) {
+            capacity <<= 1;
+        }
+        return create(directory, latestGeneration(directory) + 1, capacity);
+    }
+
+    private static MappedHashIndex create(Path directory, long generation, int capacity) throws IOException {
+        Path path = directory.resolve(fileName(generation));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+        buffer.putInt(MAGIC_AT, MAGIC);
+        buffer.putInt(FORMAT_AT, FORMAT);
+        buffer.putInt(CAPACITY_AT, capacity);
+        buffer.putInt(SIZE_AT, 0);
+        buffer.putInt(CLEAN_AT, 0);
+        deleteOlderGenerations(directory, generation);
+        return new MappedHashIndex(directory, generation, channel, buffer, capacity, 0);
+    }
+
+    int size() {
+        return size;
+    }
+
+    Location get(UUID uuid) {
+        int slot = find(uuid);
+        if (slot < 0) {
+            return null;
+        }
+        return readLocation(slotPosition(slot));
+    }
+
+    /**
+     * Point the UUID at a new location.
+     * @return The index to use from now on: this one, or a larger one if the table had to grow.
+     */
+    MappedHashIndex put(UUID uuid, Location location) throws IOException {
+        int slot = find(uuid);
+        if (slot < 0) {
+            if (size + 1 > capacity * MAX_LOAD) {
+                MappedHashIndex grown = grow();
+                return grown.put(uuid, location);
+            }
+            slot = -slot - 1;
+            long position = slotPosition(slot);
+            buffer.putLong((int) position, uuid.getMostSignificantBits());
+            buffer.putLong((int) position + 8, uuid.getLeastSignificantBits());
+            size++;
+            buffer.putInt(SIZE_AT, size);
+        }
+        long position = slotPosition(slot);
+        buffer.putInt((int) position + 20, location.length());
+        buffer.putLong((int) position + 24, location.offset());
+        // The segment goes last: a slot with a segment is complete
+        buffer.putInt((int) position + 16, location.segment());
+        return this;
+    }
+
+    void forEach(BiConsumer<UUID, Location> action) {
+        for (int slot = 0; slot < capacity; slot++) {
+            long position = slotPosition(slot);
+            if (buffer.getInt((int) position + 16) != 0) {
+                action.accept(new UUID(buffer.getLong((int) position), buffer.getLong((int) position + 8)), readLocation(position));
+            }
+        }
+    }
+
+    /**
+     * Mark whether the file on disk is complete. Marking it clean flushes the table first.
+     */
+    void setClean(boolean clean) {
+        if (clean) {
+            buffer.force();
+        }
+        buffer.putInt(CLEAN_AT, clean ? 1 : 0);
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return The slot holding the UUID, or -(free slot + 1) if it is not in the table.
+     */
+    private int find(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        long hash = msb ^ lsb;
+        hash ^= hash >>> 32;
+        int mask = capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            int position = (int) slotPosition(slot);
+            if (buffer.getInt(position + 16) == 0) {
+                return -slot - 1;
+            }
+            if (buffer.getLong(position) == msb && buffer.getLong(position + 8) == lsb) {
+                return slot;
+            }
+        }
+    }
+
+    private MappedHashIndex grow() throws IOException {
+        MappedHashIndex grown = create(directory, generation + 1, capacity << 1);
+        MappedHashIndex[] target = {grown};
+        IOException[] failure = {null};
+        forEach((uuid, location) -> {
+            try {
+                target[0] = target[0].put(uuid, location);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        close();
+        return target[0];
+    }
+
+    private Location readLocation(long position) {
+        return new Location(buffer.getInt((int) position + 16), buffer.getLong((int) position + 24), buffer.getInt((int) position + 20));
+    }
+
+    private static long slotPosition(int slot) {
+        return HEADER_BYTES + (long) slot * SLOT_BYTES;
+    }
+
+    private static String fileName(long generation) {
+        return "index-" + generation + ".dat";
+    }
+
+    private static long latestGeneration(Path directory) throws IOException {
+        long latest = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "index-*.dat")) {
+            for (Path file : files) {
+                latest = Math.max(latest, parseGeneration(file));
+            }
+        }
+        return latest;
+    }
+
+    private static void deleteOlderGenerations(Path directory, long generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "index-*.dat")) {
+            for (Path file : files) {
+                long fileGeneration = parseGeneration(file);
+                if (fileGeneration >= 0 && fileGeneration < generation) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException ignored) {
+                        // Still mapped on some platforms; removed on a later start
+                    }
+                }
+            }
+        }
+    }
+
+    private static long parseGeneration(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(6, name.length() - 4));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+}
@@ -4,25 +4,40 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import net.bumpier.brankup.bRankup;
 import net.bumpier.brankup.data.IDatabaseService;
+import net.bumpier.brankup.data.PlayerDataChanges;
 import net.bumpier.brankup.data.PlayerRankData;
+import net.bumpier.brankup.util.IoExecutor;
 
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 import java.util.logging.Level;
 
 public class MySQLService implements IDatabaseService {
 
     private final bRankup plugin;
-    private final ExecutorService executor = Executors.newFixedThreadPool(4, r -> new Thread(r, "bRankup-DB-Thread"));
-    private final String tablePrefix;
+    private final IoExecutor executor;
+    private final StorageSchema schema;
     private HikariDataSource dataSource;
 
+    // Players per load statement; each is bound once per table
+    private static final int BATCH_LOAD_CHUNK_SIZE = 500;
+    // Players per transaction of a bulk save; small enough that the chunks spread over the pool
+    private static final int BULK_SAVE_PLAYERS_PER_TRANSACTION = 250;
+
     public MySQLService(bRankup plugin) {
         this.plugin = plugin;
-        this.tablePrefix = plugin.getConfigManager().getMainConfig().getString("database.table-prefix", "brankup_");
+        String tablePrefix = plugin.getConfigManager().getMainConfig().getString("database.table-prefix", "brankup_");
+        this.schema = new StorageSchema(plugin.getLogger(), SqlDialect.MYSQL, tablePrefix,
+                Math.max(1, plugin.getConfigManager().getMainConfig().getInt("database.migration.chunk-size", 1000)));
+        // One running query per pooled connection; more would only wait inside Hikari
+        this.executor = new IoExecutor("bRankup-DB-Thread",
+                plugin.getConfigManager().getMainConfig().getInt("database.mysql.pool.maximum-pool-size", 10), plugin.isVirtualThreads());
+        plugin.getPerformanceMonitor().registerExecutor(executor);
     }
 
     @Override
@@ -62,125 +77,160 @@ public class MySQLService implements IDatabaseService {
             return;
         }
 
-        final String createLevelsSql = "CREATE TABLE IF NOT EXISTS " + tablePrefix + "progression_levels (uuid VARCHAR(36) NOT NULL, progression_id VARCHAR(255) NOT NULL, level BIGINT NOT NULL DEFAULT 0, PRIMARY KEY (uuid, progression_id));";
-        final String createAutoStatesSql = "CREATE TABLE IF NOT EXISTS " + tablePrefix + "auto_progression_states (uuid VARCHAR(36) NOT NULL, progression_id VARCHAR(255) NOT NULL, is_enabled BOOLEAN NOT NULL DEFAULT 0, PRIMARY KEY (uuid, progression_id));";
-        final String createRewardsSql = "CREATE TABLE IF NOT EXISTS " + tablePrefix + "claimed_rewards (id INT AUTO_INCREMENT PRIMARY KEY, uuid VARCHAR(36) NOT NULL, reward_key VARCHAR(255) NOT NULL, UNIQUE INDEX idx_unique_reward (uuid, reward_key));";
-
-        // Create indices for faster lookups
-        final String createLevelsIndexSql = "CREATE INDEX IF NOT EXISTS " + tablePrefix + "idx_levels_uuid ON " + tablePrefix + "progression_levels (uuid);";
-        final String createAutoStatesIndexSql = "CREATE INDEX IF NOT EXISTS " + tablePrefix + "idx_auto_states_uuid ON " + tablePrefix + "auto_progression_states (uuid);";
-        final String createRewardsIndexSql = "CREATE INDEX IF NOT EXISTS " + tablePrefix + "idx_rewards_uuid ON " + tablePrefix + "claimed_rewards (uuid);";
-
-        runAsync(() -> {
-            try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-                // Create tables
-                stmt.execute(createLevelsSql);
-                stmt.execute(createAutoStatesSql);
-                stmt.execute(createRewardsSql);
-
-                // Create indices
-                try {
-                    stmt.execute(createLevelsIndexSql);
-                    stmt.execute(createAutoStatesIndexSql);
-                    stmt.execute(createRewardsIndexSql);
-                } catch (SQLException e) {
-                    // MySQL may not support IF NOT EXISTS for indices, so handle this gracefully
-                    if (!e.getMessage().contains("Duplicate key")) {
-                        throw e;
-                    }
-                }
-
-                plugin.getLogger().info("MySQL database tables and indices initialized successfully.");
+        // Statements build their SQL from the schema's layouts, so the schema is set up before anything else runs
+        boolean migrate = supplyAsync(() -> {
+            try (Connection conn = getConnection()) {
+                boolean pending = schema.initialize(conn);
+                plugin.getLogger().info("MySQL database tables initialized successfully.");
+                return pending;
             } catch (SQLException e) {
                 plugin.getLogger().log(Level.SEVERE, "Failed to initialize MySQL database", e);
+                return false;
             }
-        });
+        }).join();
+        if (migrate) {
+            schema.migrate(this::submitSchemaTask);
+        }
     }
 
     @Override
     public CompletableFuture<PlayerRankData> loadPlayerData(UUID uuid) {
-        CompletableFuture<Map<String, Long>> levelsFuture = loadProgressionLevels(uuid);
-        CompletableFuture<Set<String>> rewardsFuture = loadClaimedRewards(uuid);
-        CompletableFuture<Map<String, Boolean>> autoStatesFuture = loadAutoProgressionStates(uuid);
-
-        return CompletableFuture.allOf(levelsFuture, rewardsFuture, autoStatesFuture)
-                .thenApplyAsync(v -> {
-                    Map<String, Long> levels = levelsFuture.join();
-                    Set<String> rewards = rewardsFuture.join();
-                    Map<String, Boolean> autoStates = autoStatesFuture.join();
-                    return new PlayerRankData(uuid, levels, rewards, autoStates);
-                }, executor);
-    }
-
-    private CompletableFuture<Map<String, Long>> loadProgressionLevels(UUID uuid) {
+        // One statement for all three tables: a single connection checkout and round trip per load
         return supplyAsync(() -> {
-            Map<String, Long> levels = new HashMap<>();
-            String sql = "SELECT progression_id, level FROM " + tablePrefix + "progression_levels WHERE uuid = ?;";
-            try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ResultSet rs = ps.executeQuery();
-                while (rs.next()) {
-                    levels.put(rs.getString("progression_id"), rs.getLong("level"));
+            SchemaLayout layout = schema.getLayouts().get(0);
+            List<UUID> player = List.of(uuid);
+            try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(PlayerDataQuery.forPlayers(layout, 1))) {
+                PlayerDataQuery.bind(ps, layout, player);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return PlayerDataQuery.read(rs, layout, player).get(uuid);
                 }
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to load progression levels for " + uuid, e);
+                throw new CompletionException("Failed to load data for " + uuid, e);
             }
-            return levels;
         });
     }
 
-    private CompletableFuture<Map<String, Boolean>> loadAutoProgressionStates(UUID uuid) {
+    @Override
+    public CompletableFuture<Map<UUID, PlayerRankData>> loadPlayerDataBatch(Collection<UUID> uuids) {
         return supplyAsync(() -> {
-            Map<String, Boolean> states = new HashMap<>();
-            String sql = "SELECT progression_id, is_enabled FROM " + tablePrefix + "auto_progression_states WHERE uuid = ?;";
-            try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ResultSet rs = ps.executeQuery();
-                while (rs.next()) {
-                    states.put(rs.getString("progression_id"), rs.getBoolean("is_enabled"));
+            SchemaLayout layout = schema.getLayouts().get(0);
+            List<UUID> uuidList = new ArrayList<>(new LinkedHashSet<>(uuids));
+            Map<UUID, PlayerRankData> result = new HashMap<>();
+            try (Connection conn = getConnection()) {
+                for (int from = 0; from < uuidList.size(); from += BATCH_LOAD_CHUNK_SIZE) {
+                    List<UUID> chunk = uuidList.subList(from, Math.min(from + BATCH_LOAD_CHUNK_SIZE, uuidList.size()));
+                    try (PreparedStatement ps = conn.prepareStatement(PlayerDataQuery.forPlayers(layout, chunk.size()))) {
+                        PlayerDataQuery.bind(ps, layout, chunk);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            result.putAll(PlayerDataQuery.read(rs, layout, chunk));
+                        }
+                    }
                 }
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to load auto-progression states for " + uuid, e);
+                throw new CompletionException("Failed to load data for " + uuidList.size() + " players", e);
             }
-            return states;
+            return result;
         });
     }
 
     @Override
-    public CompletableFuture<Void> savePlayerData(PlayerRankData data) {
-        return runAsync(() -> {
-            // MySQL uses different syntax for upsert compared to SQLite
-            String levelUpsertSql = "INSERT INTO " + tablePrefix + "progression_levels (uuid, progression_id, level) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE level = VALUES(level);";
-            String stateUpsertSql = "INSERT INTO " + tablePrefix + "auto_progression_states (uuid, progression_id, is_enabled) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE is_enabled = VALUES(is_enabled);";
+    public CompletableFuture<Void> savePlayerChangesBulk(Collection<PlayerDataChanges> changes, IntConsumer progress) {
+        // Chunks of neighbouring keys, so the parallel transactions lock disjoint index ranges.
+        // Unsigned byte order is also the order of the legacy lowercase string keys.
+        List<PlayerDataChanges> sorted = new ArrayList<>(changes);
+        sorted.sort(Comparator.comparing(playerChanges -> SchemaLayout.toBytes(playerChanges.uuid()), Arrays::compareUnsigned));
 
+        // Each chunk is its own task, so up to the pool size of them run at once on separate connections
+        AtomicInteger written = new AtomicInteger();
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (List<PlayerDataChanges> chunk : BulkUpsert.partition(sorted, BULK_SAVE_PLAYERS_PER_TRANSACTION)) {
+            chunks.add(runAsync(() -> {
+                try {
+                    try {
+                        saveChunk(chunk);
+                    } catch (SQLTransactionRollbackException e) {
+                        // Rolled back as a deadlock victim of a parallel chunk; retry once
+                        saveChunk(chunk);
+                    }
+                } catch (SQLException e) {
+                    throw new CompletionException("Failed to save changes for " + chunk.size() + " players", e);
+                }
+                progress.accept(written.addAndGet(chunk.size()));
+            }));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0]));
+    }
+
+    @Override
+    public CompletableFuture<Void> setProgressionLevel(UUID uuid, String progressionId, long level) {
+        return runAsync(() -> {
             try (Connection conn = getConnection()) {
                 conn.setAutoCommit(false);
-                try (PreparedStatement levelPs = conn.prepareStatement(levelUpsertSql);
-                     PreparedStatement statePs = conn.prepareStatement(stateUpsertSql)) {
-
-                    for (Map.Entry<String, Long> entry : data.getAllProgressionLevels().entrySet()) {
-                        levelPs.setString(1, data.getUuid().toString());
-                        levelPs.setString(2, entry.getKey());
-                        levelPs.setLong(3, entry.getValue());
-                        levelPs.addBatch();
+                try {
+                    for (SchemaLayout layout : schema.getLayouts()) {
+                        upsertLevel(conn, layout, uuid, progressionId, level);
                     }
-                    levelPs.executeBatch();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                throw new CompletionException("Failed to set " + progressionId + " level for " + uuid, e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> adjustProgressionLevel(UUID uuid, String progressionId, long delta, long minLevel, long maxLevel) {
+        return supplyAsync(() -> {
+            List<SchemaLayout> layouts = schema.getLayouts();
+            SchemaLayout layout = layouts.get(0);
+            String insertSql = "INSERT IGNORE INTO " + layout.levelsTable() + " (uuid, progression_id, level) VALUES (?, ?, 0);";
+            String updateSql = "UPDATE " + layout.levelsTable() + " SET level = level + ? WHERE uuid = ? AND progression_id = ? AND level + ? BETWEEN ? AND ?;";
+            String selectSql = "SELECT level FROM " + layout.levelsTable() + " WHERE uuid = ? AND progression_id = ?;";
+
+            try (Connection conn = getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement insertPs = conn.prepareStatement(insertSql);
+                     PreparedStatement updatePs = conn.prepareStatement(updateSql);
+                     PreparedStatement selectPs = conn.prepareStatement(selectSql)) {
+
+                    // Make sure the row exists, so the bounded update below covers new players too
+                    layout.bindUuid(insertPs, 1, uuid);
+                    insertPs.setString(2, progressionId);
+                    insertPs.executeUpdate();
 
-                    for (Map.Entry<String, Boolean> entry : data.getAutoProgressionStates().entrySet()) {
-                        statePs.setString(1, data.getUuid().toString());
-                        statePs.setString(2, entry.getKey());
-                        statePs.setBoolean(3, entry.getValue());
-                        statePs.addBatch();
+                    updatePs.setLong(1, delta);
+                    layout.bindUuid(updatePs, 2, uuid);
+                    updatePs.setString(3, progressionId);
+                    updatePs.setLong(4, delta);
+                    updatePs.setLong(5, minLevel);
+                    updatePs.setLong(6, maxLevel);
+                    if (updatePs.executeUpdate() == 0) {
+                        conn.rollback();
+                        return null;
                     }
-                    statePs.executeBatch();
 
+                    layout.bindUuid(selectPs, 1, uuid);
+                    selectPs.setString(2, progressionId);
+                    long newLevel;
+                    try (ResultSet rs = selectPs.executeQuery()) {
+                        rs.next();
+                        newLevel = rs.getLong("level");
+                    }
+                    // Mirror the result while a schema migration writes to both layouts
+                    for (SchemaLayout mirror : layouts.subList(1, layouts.size())) {
+                        upsertLevel(conn, mirror, uuid, progressionId, newLevel);
+                    }
                     conn.commit();
+                    return newLevel;
                 } catch (SQLException e) {
                     conn.rollback();
-                    plugin.getLogger().log(Level.SEVERE, "Failed to save player data for " + data.getUuid(), e);
+                    throw e;
                 }
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Database transaction error for " + data.getUuid(), e);
+                throw new CompletionException("Failed to adjust " + progressionId + " level for " + uuid, e);
             }
         });
     }
@@ -188,10 +238,11 @@ public class MySQLService implements IDatabaseService {
     @Override
     public CompletableFuture<Set<String>> loadClaimedRewards(UUID uuid) {
         return supplyAsync(() -> {
+            SchemaLayout layout = schema.getLayouts().get(0);
             Set<String> claimedKeys = new HashSet<>();
-            final String selectSql = "SELECT reward_key FROM " + tablePrefix + "claimed_rewards WHERE uuid = ?;";
+            final String selectSql = "SELECT reward_key FROM " + layout.rewardsTable() + " WHERE uuid = ?;";
             try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(selectSql)) {
-                pstmt.setString(1, uuid.toString());
+                layout.bindUuid(pstmt, 1, uuid);
                 ResultSet rs = pstmt.executeQuery();
                 while (rs.next()) {
                     claimedKeys.add(rs.getString("reward_key"));
@@ -206,11 +257,15 @@ public class MySQLService implements IDatabaseService {
     @Override
     public CompletableFuture<Void> saveClaimedReward(UUID uuid, String rewardKey) {
         return runAsync(() -> {
-            final String insertSql = "INSERT IGNORE INTO " + tablePrefix + "claimed_rewards (uuid, reward_key) VALUES (?, ?);";
-            try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
-                pstmt.setString(1, uuid.toString());
-                pstmt.setString(2, rewardKey);
-                pstmt.executeUpdate();
+            try (Connection conn = getConnection()) {
+                for (SchemaLayout layout : schema.getLayouts()) {
+                    final String insertSql = "INSERT IGNORE INTO " + layout.rewardsTable() + " (uuid, reward_key) VALUES (?, ?);";
+                    try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+                        layout.bindUuid(pstmt, 1, uuid);
+                        pstmt.setString(2, rewardKey);
+                        pstmt.executeUpdate();
+                    }
+                }
             } catch (SQLException e) {
                 plugin.getLogger().log(Level.SEVERE, "Failed to save claimed reward '" + rewardKey + "' for " + uuid, e);
             }
@@ -219,14 +274,14 @@ public class MySQLService implements IDatabaseService {
 
     @Override
     public void shutdown() {
+        // Let queued queries finish before their connections are closed
+        executor.shutdown(5, TimeUnit.SECONDS, plugin.getLogger());
+
         // Close the connection pool
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             plugin.getLogger().info("MySQL connection pool closed successfully.");
         }
-
-        // Shutdown the executor service
-        executor.shutdown();
     }
 
     private Connection getConnection() throws SQLException {
@@ -236,11 +291,55 @@ public class MySQLService implements IDatabaseService {
         return dataSource.getConnection();
     }
 
+    private void upsertLevel(Connection conn, SchemaLayout layout, UUID uuid, String progressionId, long level) throws SQLException {
+        String upsertSql = "INSERT INTO " + layout.levelsTable() + " (uuid, progression_id, level) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE level = VALUES(level);";
+        try (PreparedStatement ps = conn.prepareStatement(upsertSql)) {
+            layout.bindUuid(ps, 1, uuid);
+            ps.setString(2, progressionId);
+            ps.setLong(3, level);
+            ps.executeUpdate();
+        }
+    }
+
+    private void saveChunk(List<PlayerDataChanges> chunk) throws SQLException {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            List<PreparedStatement> statements = new ArrayList<>();
+            try {
+                for (SchemaLayout layout : schema.getLayouts()) {
+                    BulkUpsert.write(sql -> {
+                        PreparedStatement ps = conn.prepareStatement(sql);
+                        statements.add(ps);
+                        return ps;
+                    }, SqlDialect.MYSQL, layout, chunk);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                for (PreparedStatement ps : statements) {
+                    ps.close();
+                }
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> submitSchemaTask(SchemaMigration.Task<T> task) {
+        return supplyAsync(() -> {
+            try (Connection conn = getConnection()) {
+                return task.run(conn);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
     private CompletableFuture<Void> runAsync(Runnable runnable) {
-        return CompletableFuture.runAsync(runnable, executor);
+        return executor.runAsync(runnable);
     }
 
     private <T> CompletableFuture<T> supplyAsync(java.util.function.Supplier<T> supplier) {
-        return CompletableFuture.supplyAsync(supplier, executor);
+        return executor.supplyAsync(supplier);
     }
 }
\ No newline at end of file
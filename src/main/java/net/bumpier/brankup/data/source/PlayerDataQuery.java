@@ -0,0 +1,81 @@
+package net.bumpier.brankup.data.source;
+
+import net.bumpier.brankup.data.PlayerRankData;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Loads players' levels, auto-progression states and claimed rewards with a single statement.
+ * The three tables are combined with UNION ALL, each row tagged with a discriminator column, and the data
+ * is assembled from the one result stream, so a load costs one connection checkout and one round trip.
+ * The SQL is plain enough to run unchanged on both SQLite and MySQL.
+ */
+final class PlayerDataQuery {
+
+    private static final int LEVEL = 0;
+    private static final int AUTO_STATE = 1;
+    private static final int REWARD = 2;
+    // Each player's UUID is bound once per table
+    static final int PARAMETERS_PER_PLAYER = 3;
+
+    private PlayerDataQuery() {
+    }
+
+    /**
+     * Build the statement for a number of players.
+     * @param players The number of UUIDs to bind, at least 1.
+     */
+    static String forPlayers(SchemaLayout layout, int players) {
+        String condition = players == 1 ? "uuid = ?" : "uuid IN (" + String.join(", ", Collections.nCopies(players, "?")) + ")";
+        return "SELECT " + LEVEL + " AS row_kind, uuid, progression_id AS row_key, level AS row_value FROM " + layout.levelsTable() + " WHERE " + condition
+                + " UNION ALL SELECT " + AUTO_STATE + ", uuid, progression_id, is_enabled FROM " + layout.autoStatesTable() + " WHERE " + condition
+                + " UNION ALL SELECT " + REWARD + ", uuid, reward_key, 0 FROM " + layout.rewardsTable() + " WHERE " + condition + ";";
+    }
+
+    /**
+     * Bind the UUIDs for a statement built by {@link #forPlayers(SchemaLayout, int)} with the same layout and number of players.
+     */
+    static void bind(PreparedStatement ps, SchemaLayout layout, List<UUID> uuids) throws SQLException {
+        int index = 1;
+        for (int table = 0; table < PARAMETERS_PER_PLAYER; table++) {
+            for (UUID uuid : uuids) {
+                layout.bindUuid(ps, index++, uuid);
+            }
+        }
+    }
+
+    /**
+     * Assemble the players' data from the result stream. Every requested player gets a data object,
+     * even if they have no rows.
+     */
+    static Map<UUID, PlayerRankData> read(ResultSet rs, SchemaLayout layout, List<UUID> uuids) throws SQLException {
+        Map<UUID, Map<String, Long>> levels = new HashMap<>();
+        Map<UUID, Map<String, Boolean>> autoStates = new HashMap<>();
+        Map<UUID, Set<String>> rewards = new HashMap<>();
+        while (rs.next()) {
+            UUID uuid = layout.readUuid(rs, "uuid");
+            String name = rs.getString("row_key");
+            switch (rs.getInt("row_kind")) {
+                case LEVEL -> levels.computeIfAbsent(uuid, k -> new HashMap<>()).put(name, rs.getLong("row_value"));
+                case AUTO_STATE -> autoStates.computeIfAbsent(uuid, k -> new HashMap<>()).put(name, rs.getLong("row_value") != 0);
+                case REWARD -> rewards.computeIfAbsent(uuid, k -> new HashSet<>()).add(name);
+                default -> { }
+            }
+        }
+
+        Map<UUID, PlayerRankData> result = new HashMap<>();
+        for (UUID uuid : uuids) {
+            result.put(uuid, new PlayerRankData(uuid, levels.get(uuid), rewards.get(uuid), autoStates.get(uuid)));
+        }
+        return result;
+    }
+}
@@ -2,31 +2,65 @@ package net.bumpier.brankup.data.source;
 
 import net.bumpier.brankup.bRankup;
 import net.bumpier.brankup.data.IDatabaseService;
+import net.bumpier.brankup.data.PlayerDataChanges;
 import net.bumpier.brankup.data.PlayerRankData;
+import net.bumpier.brankup.util.IoExecutor;
 
 import java.io.File;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 import java.util.logging.Level;
 
+/**
+ * SQLite storage tuned for a single server: the database runs in WAL mode, so one writer connection and a small
+ * pool of read-only connections work at the same time and a long save never stalls a load.
+ * Every connection keeps its prepared statements for its lifetime (see {@link SQLiteSession}).
+ */
 public class SQLiteService implements IDatabaseService {
 
     private final bRankup plugin;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "bRankup-DB-Thread"));
-    private final String tablePrefix;
+    // Writes, and the schema migrations, run one at a time on the single writer connection
+    private final IoExecutor executor;
+    // Loads run on the reader connections, one per slot
+    private final IoExecutor readExecutor;
+    private final StorageSchema schema;
+    private final int cacheSizeKb;
+    private final long mmapSizeBytes;
     private String connectionString;
 
-    // Connection pool (single connection for SQLite to prevent locking issues)
-    private Connection connection;
-    private long lastConnectionCheck = 0;
-    private static final long CONNECTION_VALIDITY_CHECK_INTERVAL = 30000; // 30 seconds
+    // Only used from the writer executor
+    private SQLiteSession writer;
+    // Idle reader connections; the read executor never runs more tasks than the pool holds
+    private final BlockingQueue<SQLiteSession> readers = new LinkedBlockingQueue<>();
+
+    // Players per load statement; each is bound once per table, staying below SQLite's historic limit of 999 variables
+    private static final int BATCH_LOAD_CHUNK_SIZE = 300;
+    // Players per transaction of a bulk save. WAL commits are cheap, so this only bounds how long other writes wait
+    private static final int BULK_SAVE_PLAYERS_PER_TRANSACTION = 500;
+    // How long a connection waits for a lock, e.g. a reader while the writer checkpoints the WAL
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
 
     public SQLiteService(bRankup plugin) {
         this.plugin = plugin;
-        this.tablePrefix = plugin.getConfigManager().getMainConfig().getString("database.table-prefix", "brankup_");
+        String tablePrefix = plugin.getConfigManager().getMainConfig().getString("database.table-prefix", "brankup_");
+        this.schema = new StorageSchema(plugin.getLogger(), SqlDialect.SQLITE, tablePrefix,
+                Math.max(1, plugin.getConfigManager().getMainConfig().getInt("database.migration.chunk-size", 1000)));
+        this.cacheSizeKb = Math.max(0, plugin.getConfigManager().getMainConfig().getInt("database.sqlite.cache-size-mb", 16)) * 1024;
+        this.mmapSizeBytes = Math.max(0, plugin.getConfigManager().getMainConfig().getLong("database.sqlite.mmap-size-mb", 256)) * 1024 * 1024;
+        int readerConnections = Math.max(1, plugin.getConfigManager().getMainConfig().getInt("database.sqlite.reader-connections", 2));
+
+        // SQLite has a single writer, so writes run one at a time
+        this.executor = new IoExecutor("bRankup-DB-Thread", 1, plugin.isVirtualThreads());
+        this.readExecutor = new IoExecutor("bRankup-DB-Reader", readerConnections, plugin.isVirtualThreads());
+        plugin.getPerformanceMonitor().registerExecutor(executor);
+        plugin.getPerformanceMonitor().registerExecutor(readExecutor);
     }
 
     @Override
@@ -34,134 +68,163 @@ public class SQLiteService implements IDatabaseService {
         File dbFile = new File(plugin.getDataFolder(), "playerdata.db");
         this.connectionString = "jdbc:sqlite:" + dbFile.getAbsolutePath();
 
-        final String createLevelsSql = "CREATE TABLE IF NOT EXISTS " + tablePrefix + "progression_levels (uuid VARCHAR(36) NOT NULL, progression_id VARCHAR(255) NOT NULL, level BIGINT NOT NULL DEFAULT 0, PRIMARY KEY (uuid, progression_id));";
-        final String createAutoStatesSql = "CREATE TABLE IF NOT EXISTS " + tablePrefix + "auto_progression_states (uuid VARCHAR(36) NOT NULL, progression_id VARCHAR(255) NOT NULL, is_enabled BOOLEAN NOT NULL DEFAULT 0, PRIMARY KEY (uuid, progression_id));";
-        final String createRewardsSql = "CREATE TABLE IF NOT EXISTS " + tablePrefix + "claimed_rewards (id INTEGER PRIMARY KEY AUTOINCREMENT, uuid VARCHAR(36) NOT NULL, reward_key VARCHAR(255) NOT NULL, UNIQUE(uuid, reward_key));";
-
-        // Create indices for faster lookups
-        final String createLevelsIndexSql = "CREATE INDEX IF NOT EXISTS " + tablePrefix + "idx_levels_uuid ON " + tablePrefix + "progression_levels (uuid);";
-        final String createAutoStatesIndexSql = "CREATE INDEX IF NOT EXISTS " + tablePrefix + "idx_auto_states_uuid ON " + tablePrefix + "auto_progression_states (uuid);";
-        final String createRewardsIndexSql = "CREATE INDEX IF NOT EXISTS " + tablePrefix + "idx_rewards_uuid ON " + tablePrefix + "claimed_rewards (uuid);";
-
-        runAsync(() -> {
-            try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-                // Create tables
-                stmt.execute(createLevelsSql);
-                stmt.execute(createAutoStatesSql);
-                stmt.execute(createRewardsSql);
-
-                // Create indices
-                stmt.execute(createLevelsIndexSql);
-                stmt.execute(createAutoStatesIndexSql);
-                stmt.execute(createRewardsIndexSql);
-
-                plugin.getLogger().info("SQLite database tables and indices initialized successfully.");
+        // Statements build their SQL from the schema's layouts, so the schema is set up before anything else runs
+        boolean migrate = supplyAsync(() -> {
+            try {
+                boolean pending = schema.initialize(getWriter().getConnection());
+                plugin.getLogger().info("SQLite database tables initialized successfully.");
+                return pending;
             } catch (SQLException e) {
                 plugin.getLogger().log(Level.SEVERE, "Failed to initialize SQLite database", e);
+                return false;
             }
-        });
+        }).join();
+        if (migrate) {
+            schema.migrate(this::submitSchemaTask);
+        }
     }
 
     @Override
     public CompletableFuture<PlayerRankData> loadPlayerData(UUID uuid) {
-        // CORRECTED: This method now uses non-blocking future composition to prevent deadlocks.
-        // It asynchronously requests all pieces of data and combines them once they are all ready.
-        CompletableFuture<Map<String, Long>> levelsFuture = loadProgressionLevels(uuid);
-        CompletableFuture<Set<String>> rewardsFuture = loadClaimedRewards(uuid);
-        CompletableFuture<Map<String, Boolean>> autoStatesFuture = loadAutoProgressionStates(uuid);
-
-        return CompletableFuture.allOf(levelsFuture, rewardsFuture, autoStatesFuture)
-                .thenApplyAsync(v -> {
-                    // .join() is now safe because allOf guarantees the futures have completed.
-                    Map<String, Long> levels = levelsFuture.join();
-                    Set<String> rewards = rewardsFuture.join();
-                    Map<String, Boolean> autoStates = autoStatesFuture.join();
-                    return new PlayerRankData(uuid, levels, rewards, autoStates);
-                }, executor);
+        // One statement for all three tables: a single round trip per load
+        return supplyRead(session -> {
+            SchemaLayout layout = schema.getLayouts().get(0);
+            List<UUID> player = List.of(uuid);
+            try {
+                PreparedStatement ps = session.prepare(PlayerDataQuery.forPlayers(layout, 1));
+                PlayerDataQuery.bind(ps, layout, player);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return PlayerDataQuery.read(rs, layout, player).get(uuid);
+                }
+            } catch (SQLException e) {
+                throw new CompletionException("Failed to load data for " + uuid, e);
+            }
+        });
     }
 
-    private CompletableFuture<Map<String, Long>> loadProgressionLevels(UUID uuid) {
-        return supplyAsync(() -> {
-            Map<String, Long> levels = new HashMap<>();
-            String sql = "SELECT progression_id, level FROM " + tablePrefix + "progression_levels WHERE uuid = ?;";
-            try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ResultSet rs = ps.executeQuery();
-                while (rs.next()) {
-                    levels.put(rs.getString("progression_id"), rs.getLong("level"));
+    @Override
+    public CompletableFuture<Map<UUID, PlayerRankData>> loadPlayerDataBatch(Collection<UUID> uuids) {
+        return supplyRead(session -> {
+            SchemaLayout layout = schema.getLayouts().get(0);
+            List<UUID> uuidList = new ArrayList<>(new LinkedHashSet<>(uuids));
+            Map<UUID, PlayerRankData> result = new HashMap<>();
+            try {
+                for (int from = 0; from < uuidList.size(); from += BATCH_LOAD_CHUNK_SIZE) {
+                    List<UUID> chunk = uuidList.subList(from, Math.min(from + BATCH_LOAD_CHUNK_SIZE, uuidList.size()));
+                    PreparedStatement ps = session.prepare(PlayerDataQuery.forPlayers(layout, chunk.size()));
+                    PlayerDataQuery.bind(ps, layout, chunk);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        result.putAll(PlayerDataQuery.read(rs, layout, chunk));
+                    }
                 }
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to load progression levels for " + uuid, e);
+                throw new CompletionException("Failed to load data for " + uuidList.size() + " players", e);
             }
-            return levels;
+            return result;
         });
     }
 
-    private CompletableFuture<Map<String, Boolean>> loadAutoProgressionStates(UUID uuid) {
-        return supplyAsync(() -> {
-            Map<String, Boolean> states = new HashMap<>();
-            String sql = "SELECT progression_id, is_enabled FROM " + tablePrefix + "auto_progression_states WHERE uuid = ?;";
-            try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ResultSet rs = ps.executeQuery();
-                while (rs.next()) {
-                    states.put(rs.getString("progression_id"), rs.getBoolean("is_enabled"));
+    @Override
+    public CompletableFuture<Void> savePlayerChangesBulk(Collection<PlayerDataChanges> changes, IntConsumer progress) {
+        // There is one writer, so the chunks queue up on it; other writes and all loads run in between
+        AtomicInteger written = new AtomicInteger();
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (List<PlayerDataChanges> chunk : BulkUpsert.partition(changes, BULK_SAVE_PLAYERS_PER_TRANSACTION)) {
+            chunks.add(runWrite(session -> {
+                try {
+                    session.transaction(() -> {
+                        for (SchemaLayout layout : schema.getLayouts()) {
+                            BulkUpsert.write(session::prepare, SqlDialect.SQLITE, layout, chunk);
+                        }
+                        return null;
+                    });
+                } catch (SQLException e) {
+                    throw new CompletionException("Failed to save changes for " + chunk.size() + " players", e);
                 }
+                progress.accept(written.addAndGet(chunk.size()));
+            }));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0]));
+    }
+
+    @Override
+    public CompletableFuture<Void> setProgressionLevel(UUID uuid, String progressionId, long level) {
+        return runWrite(session -> {
+            try {
+                session.transaction(() -> {
+                    for (SchemaLayout layout : schema.getLayouts()) {
+                        upsertLevel(session, layout, uuid, progressionId, level);
+                    }
+                    return null;
+                });
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to load auto-progression states for " + uuid, e);
+                throw new CompletionException("Failed to set " + progressionId + " level for " + uuid, e);
             }
-            return states;
         });
     }
 
     @Override
-    public CompletableFuture<Void> savePlayerData(PlayerRankData data) {
-        return runAsync(() -> {
-            String levelUpsertSql = "INSERT INTO " + tablePrefix + "progression_levels (uuid, progression_id, level) VALUES (?, ?, ?) ON CONFLICT(uuid, progression_id) DO UPDATE SET level = excluded.level;";
-            String stateUpsertSql = "INSERT INTO " + tablePrefix + "auto_progression_states (uuid, progression_id, is_enabled) VALUES (?, ?, ?) ON CONFLICT(uuid, progression_id) DO UPDATE SET is_enabled = excluded.is_enabled;";
+    public CompletableFuture<Long> adjustProgressionLevel(UUID uuid, String progressionId, long delta, long minLevel, long maxLevel) {
+        return supplyWrite(session -> {
+            List<SchemaLayout> layouts = schema.getLayouts();
+            SchemaLayout layout = layouts.get(0);
+            String insertSql = "INSERT OR IGNORE INTO " + layout.levelsTable() + " (uuid, progression_id, level) VALUES (?, ?, 0);";
+            String updateSql = "UPDATE " + layout.levelsTable() + " SET level = level + ? WHERE uuid = ? AND progression_id = ? AND level + ? BETWEEN ? AND ?;";
+            String selectSql = "SELECT level FROM " + layout.levelsTable() + " WHERE uuid = ? AND progression_id = ?;";
 
-            try (Connection conn = getConnection()) {
-                conn.setAutoCommit(false);
-                try (PreparedStatement levelPs = conn.prepareStatement(levelUpsertSql);
-                     PreparedStatement statePs = conn.prepareStatement(stateUpsertSql)) {
+            try {
+                return session.transaction(() -> {
+                    // Make sure the row exists, so the bounded update below covers new players too
+                    PreparedStatement insertPs = session.prepare(insertSql);
+                    layout.bindUuid(insertPs, 1, uuid);
+                    insertPs.setString(2, progressionId);
+                    insertPs.executeUpdate();
 
-                    for (Map.Entry<String, Long> entry : data.getAllProgressionLevels().entrySet()) {
-                        levelPs.setString(1, data.getUuid().toString());
-                        levelPs.setString(2, entry.getKey());
-                        levelPs.setLong(3, entry.getValue());
-                        levelPs.addBatch();
+                    PreparedStatement updatePs = session.prepare(updateSql);
+                    updatePs.setLong(1, delta);
+                    layout.bindUuid(updatePs, 2, uuid);
+                    updatePs.setString(3, progressionId);
+                    updatePs.setLong(4, delta);
+                    updatePs.setLong(5, minLevel);
+                    updatePs.setLong(6, maxLevel);
+                    if (updatePs.executeUpdate() == 0) {
+                        session.getConnection().rollback();
+                        return null;
                     }
-                    levelPs.executeBatch();
 
-                    for (Map.Entry<String, Boolean> entry : data.getAutoProgressionStates().entrySet()) {
-                        statePs.setString(1, data.getUuid().toString());
-                        statePs.setString(2, entry.getKey());
-                        statePs.setBoolean(3, entry.getValue());
-                        statePs.addBatch();
+                    PreparedStatement selectPs = session.prepare(selectSql);
+                    layout.bindUuid(selectPs, 1, uuid);
+                    selectPs.setString(2, progressionId);
+                    long newLevel;
+                    try (ResultSet rs = selectPs.executeQuery()) {
+                        rs.next();
+                        newLevel = rs.getLong("level");
                     }
-                    statePs.executeBatch();
-
-                    conn.commit();
-                } catch (SQLException e) {
-                    conn.rollback();
-                    plugin.getLogger().log(Level.SEVERE, "Failed to save player data for " + data.getUuid(), e);
-                }
+                    // Mirror the result while a schema migration writes to both layouts
+                    for (SchemaLayout mirror : layouts.subList(1, layouts.size())) {
+                        upsertLevel(session, mirror, uuid, progressionId, newLevel);
+                    }
+                    return newLevel;
+                });
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Database transaction error for " + data.getUuid(), e);
+                throw new CompletionException("Failed to adjust " + progressionId + " level for " + uuid, e);
             }
         });
     }
 
     @Override
     public CompletableFuture<Set<String>> loadClaimedRewards(UUID uuid) {
-        return supplyAsync(() -> {
+        return supplyRead(session -> {
+            SchemaLayout layout = schema.getLayouts().get(0);
             Set<String> claimedKeys = new HashSet<>();
-            final String selectSql = "SELECT reward_key FROM " + tablePrefix + "claimed_rewards WHERE uuid = ?;";
-            try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(selectSql)) {
-                pstmt.setString(1, uuid.toString());
-                ResultSet rs = pstmt.executeQuery();
-                while (rs.next()) {
-                    claimedKeys.add(rs.getString("reward_key"));
+            final String selectSql = "SELECT reward_key FROM " + layout.rewardsTable() + " WHERE uuid = ?;";
+            try {
+                PreparedStatement pstmt = session.prepare(selectSql);
+                layout.bindUuid(pstmt, 1, uuid);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        claimedKeys.add(rs.getString("reward_key"));
+                    }
                 }
             } catch (SQLException e) {
                 plugin.getLogger().log(Level.SEVERE, "Failed to load claimed rewards for " + uuid, e);
@@ -172,12 +235,17 @@ public class SQLiteService implements IDatabaseService {
 
     @Override
     public CompletableFuture<Void> saveClaimedReward(UUID uuid, String rewardKey) {
-        return runAsync(() -> {
-            final String insertSql = "INSERT OR IGNORE INTO " + tablePrefix + "claimed_rewards (uuid, reward_key) VALUES (?, ?);";
-            try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
-                pstmt.setString(1, uuid.toString());
-                pstmt.setString(2, rewardKey);
-                pstmt.executeUpdate();
+        return runWrite(session -> {
+            try {
+                session.transaction(() -> {
+                    for (SchemaLayout layout : schema.getLayouts()) {
+                        PreparedStatement pstmt = session.prepare("INSERT OR IGNORE INTO " + layout.rewardsTable() + " (uuid, reward_key) VALUES (?, ?);");
+                        layout.bindUuid(pstmt, 1, uuid);
+                        pstmt.setString(2, rewardKey);
+                        pstmt.executeUpdate();
+                    }
+                    return null;
+                });
             } catch (SQLException e) {
                 plugin.getLogger().log(Level.SEVERE, "Failed to save claimed reward '" + rewardKey + "' for " + uuid, e);
             }
@@ -186,88 +254,127 @@ public class SQLiteService implements IDatabaseService {
 
     @Override
     public void shutdown() {
-        // Close the database connection
-        if (connection != null) {
+        // Let queued statements finish before the connections are closed
+        readExecutor.shutdown(5, TimeUnit.SECONDS, plugin.getLogger());
+        executor.shutdown(5, TimeUnit.SECONDS, plugin.getLogger());
+
+        SQLiteSession reader;
+        while ((reader = readers.poll()) != null) {
+            closeQuietly(reader);
+        }
+        // The writer goes last, so closing it checkpoints the WAL into the database file
+        if (writer != null) {
             try {
-                if (!connection.isClosed()) {
-                    connection.close();
-                    plugin.getLogger().info("Database connection closed successfully.");
-                }
+                // Refreshes the query planner statistics of tables that changed a lot
+                writer.execute("PRAGMA optimize;");
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.WARNING, "Error closing database connection", e);
-            } finally {
-                connection = null;
+                plugin.getLogger().log(Level.FINE, "Could not optimize the SQLite database", e);
             }
+            closeQuietly(writer);
+            writer = null;
+            plugin.getLogger().info("Database connections closed successfully.");
         }
+    }
 
-        // Shutdown the executor service
-        executor.shutdown();
+    private void upsertLevel(SQLiteSession session, SchemaLayout layout, UUID uuid, String progressionId, long level) throws SQLException {
+        PreparedStatement ps = session.prepare("INSERT INTO " + layout.levelsTable() + " (uuid, progression_id, level) VALUES (?, ?, ?) ON CONFLICT(uuid, progression_id) DO UPDATE SET level = excluded.level;");
+        layout.bindUuid(ps, 1, uuid);
+        ps.setString(2, progressionId);
+        ps.setLong(3, level);
+        ps.executeUpdate();
     }
 
-    private Connection getConnection() throws SQLException {
-        long currentTime = System.currentTimeMillis();
-        boolean needsNewConnection = false;
-        
-        // Always check if the connection is valid before returning it
-        if (connection == null) {
-            needsNewConnection = true;
-        } else {
-            try {
-                // Check if connection is closed or invalid
-                if (connection.isClosed() || !connection.isValid(1)) {
-                    needsNewConnection = true;
-                    try {
-                        connection.close();
-                    } catch (SQLException ignored) {
-                        // Ignore errors when closing invalid connection
-                    } finally {
-                        connection = null;
-                    }
-                }
-            } catch (SQLException e) {
-                // If validation fails, assume connection is invalid
-                needsNewConnection = true;
-                try {
-                    connection.close();
-                } catch (SQLException ignored) {
-                    // Ignore errors when closing invalid connection
-                } finally {
-                    connection = null;
-                }
-                plugin.getLogger().log(Level.WARNING, "Database connection validation failed, creating new connection", e);
+    /**
+     * Open a connection with the performance profile. WAL lets readers and the writer work at the same time, and
+     * with WAL, synchronous=NORMAL only syncs at checkpoints: a power loss may drop the last commits, but never
+     * corrupts the database. The page cache and memory map keep the hot index pages in memory.
+     */
+    private SQLiteSession openSession(boolean readOnly) throws SQLException {
+        Connection connection = DriverManager.getConnection(connectionString);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLIS + ";");
+            if (!readOnly) {
+                // Stored in the database file, so readers opened later use it too
+                stmt.execute("PRAGMA journal_mode=WAL;");
+            }
+            stmt.execute("PRAGMA synchronous=NORMAL;");
+            // A negative size is in KiB rather than pages
+            stmt.execute("PRAGMA cache_size=-" + cacheSizeKb + ";");
+            stmt.execute("PRAGMA mmap_size=" + mmapSizeBytes + ";");
+            stmt.execute("PRAGMA temp_store=MEMORY;");
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only=ON;");
             }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return new SQLiteSession(connection);
+    }
+
+    // Only called from the writer executor
+    private SQLiteSession getWriter() throws SQLException {
+        if (writer == null || writer.isClosed()) {
+            writer = openSession(false);
+            plugin.getLogger().info("Created new SQLite database connection");
         }
+        return writer;
+    }
 
-        // Create a new connection if needed
-        if (needsNewConnection) {
+    private void closeQuietly(SQLiteSession session) {
+        try {
+            session.close();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Error closing database connection", e);
+        }
+    }
+
+    private <T> CompletableFuture<T> submitSchemaTask(SchemaMigration.Task<T> task) {
+        return supplyWrite(session -> {
             try {
-                connection = DriverManager.getConnection(connectionString);
-                // Enable WAL mode for better concurrency
-                try (Statement stmt = connection.createStatement()) {
-                    stmt.execute("PRAGMA journal_mode=WAL;");
-                    stmt.execute("PRAGMA synchronous=NORMAL;");
-                    stmt.execute("PRAGMA cache_size=10000;");
-                    stmt.execute("PRAGMA temp_store=MEMORY;");
-                }
-                plugin.getLogger().info("Created new SQLite database connection");
+                return task.run(session.getConnection());
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to create new database connection", e);
-                throw e; // Re-throw to let caller handle it
+                throw new CompletionException(e);
             }
-            lastConnectionCheck = currentTime;
-        } else if (currentTime - lastConnectionCheck > CONNECTION_VALIDITY_CHECK_INTERVAL) {
-            // Update the last check time even if we didn't need a new connection
-            lastConnectionCheck = currentTime;
-        }
+        });
+    }
 
-        return connection;
+    private CompletableFuture<Void> runWrite(java.util.function.Consumer<SQLiteSession> task) {
+        return supplyWrite(session -> {
+            task.accept(session);
+            return null;
+        });
     }
 
-    private CompletableFuture<Void> runAsync(Runnable runnable) {
-        return CompletableFuture.runAsync(runnable, executor);
+    private <T> CompletableFuture<T> supplyWrite(java.util.function.Function<SQLiteSession, T> task) {
+        return supplyAsync(() -> {
+            try {
+                return task.apply(getWriter());
+            } catch (SQLException e) {
+                throw new CompletionException("Failed to open the SQLite database", e);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> supplyRead(java.util.function.Function<SQLiteSession, T> task) {
+        return readExecutor.supplyAsync(() -> {
+            SQLiteSession session = readers.poll();
+            try {
+                if (session == null || session.isClosed()) {
+                    session = openSession(true);
+                }
+            } catch (SQLException e) {
+                throw new CompletionException("Failed to open the SQLite database", e);
+            }
+            try {
+                return task.apply(session);
+            } finally {
+                readers.offer(session);
+            }
+        });
     }
 
     private <T> CompletableFuture<T> supplyAsync(java.util.function.Supplier<T> supplier) {
-        return CompletableFuture.supplyAsync(supplier, executor);
+        return executor.supplyAsync(supplier);
     }
 }
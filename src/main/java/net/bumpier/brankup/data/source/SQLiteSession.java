@@ -0,0 +1,105 @@
+package net.bumpier.brankup.data.source;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A long-lived SQLite connection with the prepared statements compiled on it.
+ * Statements are kept for the lifetime of the connection and reused by their SQL text, so the hot statements are
+ * parsed and planned once instead of on every query. Not thread-safe: a session is used by one task at a time.
+ */
+final class SQLiteSession implements AutoCloseable {
+
+    // Enough for every fixed statement plus the common batch load sizes; the least recently used is closed first
+    private static final int MAX_CACHED_STATEMENTS = 64;
+
+    @FunctionalInterface
+    interface Work<T> {
+        T run() throws SQLException;
+    }
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= MAX_CACHED_STATEMENTS) {
+                return false;
+            }
+            try {
+                eldest.getValue().close();
+            } catch (SQLException ignored) {
+                // The statement is discarded either way
+            }
+            return true;
+        }
+    };
+
+    SQLiteSession(Connection connection) {
+        this.connection = connection;
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Get the statement for the SQL, compiling it on first use. The statement belongs to the session:
+     * close its result sets, but never the statement itself.
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+        if (ps != null) {
+            ps.clearParameters();
+            ps.clearBatch();
+            return ps;
+        }
+        ps = connection.prepareStatement(sql);
+        statements.put(sql, ps);
+        return ps;
+    }
+
+    /**
+     * Run the work in a transaction, rolling it back if the work throws.
+     * The connection is back in auto-commit mode afterwards.
+     */
+    <T> T transaction(Work<T> work) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            T result = work.run();
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    void execute(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    boolean isClosed() throws SQLException {
+        return connection.isClosed();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        for (PreparedStatement ps : statements.values()) {
+            try {
+                ps.close();
+            } catch (SQLException ignored) {
+                // Closing the connection releases it anyway
+            }
+        }
+        statements.clear();
+        connection.close();
+    }
+}
@@ -0,0 +1,53 @@
+package net.bumpier.brankup.data.source;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * The tables player data is stored in and how their UUID column is encoded.
+ * The legacy layout stores UUIDs as 36-character strings; the binary layout stores them as 16 big-endian bytes,
+ * which keeps every primary key, and so every index page, less than half the size.
+ * @param levelsTable The progression levels table.
+ * @param autoStatesTable The auto-progression states table.
+ * @param rewardsTable The claimed rewards table.
+ * @param binaryUuids Whether the uuid columns hold 16 raw bytes instead of the string form.
+ */
+record SchemaLayout(String levelsTable, String autoStatesTable, String rewardsTable, boolean binaryUuids) {
+
+    static SchemaLayout legacy(String tablePrefix) {
+        return new SchemaLayout(tablePrefix + "progression_levels", tablePrefix + "auto_progression_states",
+                tablePrefix + "claimed_rewards", false);
+    }
+
+    static SchemaLayout binary(String tablePrefix) {
+        return new SchemaLayout(tablePrefix + "progression_levels_v2", tablePrefix + "auto_progression_states_v2",
+                tablePrefix + "claimed_rewards_v2", true);
+    }
+
+    void bindUuid(PreparedStatement ps, int index, UUID uuid) throws SQLException {
+        if (binaryUuids) {
+            ps.setBytes(index, toBytes(uuid));
+        } else {
+            ps.setString(index, uuid.toString());
+        }
+    }
+
+    UUID readUuid(ResultSet rs, String column) throws SQLException {
+        return binaryUuids ? fromBytes(rs.getBytes(column)) : UUID.fromString(rs.getString(column));
+    }
+
+    static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
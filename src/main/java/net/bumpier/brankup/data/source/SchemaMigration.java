@@ -0,0 +1,54 @@
+package net.bumpier.brankup.data.source;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One step of the player data schema history, identified by its version.
+ * Steps run in version order, each at most once per database; the versions applied are kept in the
+ * schema version table, so a database created by any earlier release is brought up to date step by step.
+ * @param version The version the database is at once the step is applied. Never reuse or reorder versions.
+ * @param description A short description for the log.
+ * @param step The change itself.
+ */
+record SchemaMigration(int version, String description, Step step) {
+
+    /**
+     * A schema change. It runs at startup, before any other statement, so it should only do quick DDL.
+     */
+    @FunctionalInterface
+    interface Step {
+        /**
+         * @return Work that still has to run in the background, e.g. copying existing rows, before the step counts
+         * as applied, or null if the step is complete.
+         */
+        BackgroundWork apply(Connection conn) throws SQLException;
+    }
+
+    /**
+     * The long-running part of a step. It runs while the server is up, so it must not hold locks for long;
+     * following steps wait until it completes.
+     */
+    @FunctionalInterface
+    interface BackgroundWork {
+        CompletableFuture<Void> run(TaskRunner tasks);
+    }
+
+    /**
+     * Runs statements for the migration on the backend's database executor and a connection it lends for the
+     * duration of the task, so they queue up with the regular statements.
+     */
+    @FunctionalInterface
+    interface TaskRunner {
+        /**
+         * @return A future completed with the task's result; an SQLException completes it with a CompletionException.
+         */
+        <T> CompletableFuture<T> submit(Task<T> task);
+    }
+
+    @FunctionalInterface
+    interface Task<T> {
+        T run(Connection conn) throws SQLException;
+    }
+}
@@ -0,0 +1,51 @@
+package net.bumpier.brankup.data.source;
+
+/**
+ * The SQL differences between the supported JDBC backends that the shared schema code needs to know about.
+ */
+enum SqlDialect {
+
+    SQLITE("BLOB", "INSERT OR IGNORE", " WITHOUT ROWID"),
+    MYSQL("BINARY(16)", "INSERT IGNORE", "");
+
+    private final String binaryUuidType;
+    private final String insertIgnore;
+    private final String clusteredTableOptions;
+
+    SqlDialect(String binaryUuidType, String insertIgnore, String clusteredTableOptions) {
+        this.binaryUuidType = binaryUuidType;
+        this.insertIgnore = insertIgnore;
+        this.clusteredTableOptions = clusteredTableOptions;
+    }
+
+    /**
+     * Column type for a UUID stored as 16 raw bytes.
+     */
+    String getBinaryUuidType() { return binaryUuidType; }
+
+    /**
+     * Insert keyword that skips rows whose key already exists.
+     */
+    String getInsertIgnore() { return insertIgnore; }
+
+    /**
+     * Table options that store rows in primary key order without a separate row ID.
+     * InnoDB always clusters on the primary key; SQLite needs WITHOUT ROWID.
+     */
+    String getClusteredTableOptions() { return clusteredTableOptions; }
+
+    /**
+     * Clause that turns an insert into an upsert, overwriting the value column of an existing row.
+     * @param keyColumns The primary key columns, comma separated.
+     */
+    String getUpsertClause(String keyColumns, String valueColumn) {
+        return this == MYSQL
+                ? " ON DUPLICATE KEY UPDATE " + valueColumn + " = VALUES(" + valueColumn + ")"
+                : " ON CONFLICT(" + keyColumns + ") DO UPDATE SET " + valueColumn + " = excluded." + valueColumn;
+    }
+
+    String getDropIndexSql(String table, String index) {
+        // SQLite index names are schema-wide, MySQL's are per table
+        return this == MYSQL ? "DROP INDEX " + index + " ON " + table + ";" : "DROP INDEX " + index + ";";
+    }
+}
@@ -0,0 +1,316 @@
+package net.bumpier.brankup.data.source;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates and migrates the player data tables and tracks which {@link SchemaLayout} statements read from and write to.
+ *
+ * <p>The schema history is the ordered list of {@link SchemaMigration} steps below, shared by every JDBC backend.
+ * At startup the steps after the database's recorded version are applied in order. A step that moves existing rows
+ * does so in the background, and the steps after it wait until it is done.
+ *
+ * <p>The binary UUID step migrates online: the legacy tables stay authoritative for reads while every write
+ * goes to both layouts, and a background copy moves the existing rows over in small keyset-paginated chunks,
+ * each in its own short transaction, so no table is locked for long and queries keep running in between.
+ * Once the copy is done the binary tables serve reads.
+ */
+final class StorageSchema {
+
+    static final int LEGACY_VERSION = 1;
+    static final int BINARY_UUID_VERSION = 2;
+    static final int DROP_UUID_INDEXES_VERSION = 3;
+
+    private final Logger logger;
+    private final SqlDialect dialect;
+    private final String tablePrefix;
+    private final String versionTable;
+    private final SchemaLayout legacy;
+    private final SchemaLayout binary;
+    private final int copyChunkSize;
+    private final List<SchemaMigration> migrations;
+    // The first layout is read from; every layout is written to. Replaced as a whole, so a statement sees one state.
+    private volatile List<SchemaLayout> layouts;
+    // Position in the migration list of the step whose background work is still to run, or -1
+    private int pendingMigration = -1;
+    private SchemaMigration.BackgroundWork pendingWork;
+
+    /**
+     * @param copyChunkSize The number of rows per chunk and transaction when a step copies existing rows.
+     */
+    StorageSchema(Logger logger, SqlDialect dialect, String tablePrefix, int copyChunkSize) {
+        this.logger = logger;
+        this.dialect = dialect;
+        this.tablePrefix = tablePrefix;
+        this.versionTable = tablePrefix + "schema_version";
+        this.legacy = SchemaLayout.legacy(tablePrefix);
+        this.binary = SchemaLayout.binary(tablePrefix);
+        this.copyChunkSize = copyChunkSize;
+        // Until initialize() knows better, read the legacy tables so existing data is never hidden
+        this.layouts = List.of(legacy, binary);
+        this.migrations = List.of(
+                // Tables created by releases before the schema was versioned; there is nothing to create
+                new SchemaMigration(LEGACY_VERSION, "legacy string UUID tables", conn -> null),
+                new SchemaMigration(BINARY_UUID_VERSION, "binary UUID tables", this::createBinaryTables),
+                new SchemaMigration(DROP_UUID_INDEXES_VERSION, "drop uuid indexes duplicating the primary key", this::dropRedundantIndexes));
+    }
+
+    /**
+     * Apply the pending schema changes and pick the layouts for this run. Background work is left to {@link #migrate}.
+     * @return Whether there is background work, and possibly more steps after it, left to run.
+     */
+    boolean initialize(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + versionTable + " (version INT NOT NULL PRIMARY KEY, applied_at BIGINT NOT NULL);");
+        }
+        int version = readVersion(conn);
+        if (version >= BINARY_UUID_VERSION) {
+            layouts = List.of(binary);
+        }
+        return applyFrom(conn, version);
+    }
+
+    /**
+     * The layouts for the next statement. Read from the first one and write to all of them.
+     */
+    List<SchemaLayout> getLayouts() {
+        return layouts;
+    }
+
+    /**
+     * Run the background work left by {@link #initialize}, then the steps after it.
+     * If the work is interrupted, e.g. by a shutdown, the step is not recorded and is picked up again on the next start.
+     */
+    CompletableFuture<Void> migrate(SchemaMigration.TaskRunner tasks) {
+        return runPending(tasks).whenComplete((v, ex) -> {
+            if (ex != null) {
+                logger.log(Level.WARNING, "Schema migration stopped; it resumes on the next start.", ex);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> runPending(SchemaMigration.TaskRunner tasks) {
+        SchemaMigration migration = migrations.get(pendingMigration);
+        return pendingWork.run(tasks)
+                .thenCompose(v -> tasks.submit(conn -> {
+                    recordVersion(conn, migration);
+                    return applyFrom(conn, migration.version());
+                }))
+                .thenCompose(more -> more ? runPending(tasks) : CompletableFuture.<Void>completedFuture(null));
+    }
+
+    /**
+     * Apply the steps after the given version until one leaves background work.
+     * @return Whether a step left background work.
+     */
+    private boolean applyFrom(Connection conn, int version) throws SQLException {
+        for (int i = 0; i < migrations.size(); i++) {
+            SchemaMigration migration = migrations.get(i);
+            if (migration.version() <= version) {
+                continue;
+            }
+            SchemaMigration.BackgroundWork work = migration.step().apply(conn);
+            if (work != null) {
+                pendingMigration = i;
+                pendingWork = work;
+                logger.info("Migrating the database schema to version " + migration.version() + " (" + migration.description() + ") in the background...");
+                return true;
+            }
+            recordVersion(conn, migration);
+        }
+        pendingMigration = -1;
+        pendingWork = null;
+        return false;
+    }
+
+    private SchemaMigration.BackgroundWork createBinaryTables(Connection conn) throws SQLException {
+        String uuidType = dialect.getBinaryUuidType();
+        String options = dialect.getClusteredTableOptions();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + binary.levelsTable() + " (uuid " + uuidType + " NOT NULL, progression_id VARCHAR(255) NOT NULL, level BIGINT NOT NULL DEFAULT 0, PRIMARY KEY (uuid, progression_id))" + options + ";");
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + binary.autoStatesTable() + " (uuid " + uuidType + " NOT NULL, progression_id VARCHAR(255) NOT NULL, is_enabled BOOLEAN NOT NULL DEFAULT 0, PRIMARY KEY (uuid, progression_id))" + options + ";");
+            // The (uuid, reward_key) key replaces the legacy surrogate ID and its separate unique index
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + binary.rewardsTable() + " (uuid " + uuidType + " NOT NULL, reward_key VARCHAR(255) NOT NULL, PRIMARY KEY (uuid, reward_key))" + options + ";");
+        }
+        if (!tableExists(conn, legacy.levelsTable())) {
+            // A new database has nothing to copy
+            layouts = List.of(binary);
+            return null;
+        }
+        layouts = List.of(legacy, binary);
+        return this::copyLegacyRows;
+    }
+
+    /**
+     * Copy the legacy rows to the binary tables. Each chunk is a separate database task, so statements queued
+     * while a chunk runs go first. Rows already written by the dual writes are kept, which also makes a copy
+     * interrupted by a restart safe to run again from the start.
+     */
+    private CompletableFuture<Void> copyLegacyRows(SchemaMigration.TaskRunner tasks) {
+        long start = System.currentTimeMillis();
+        return copyTable(tasks, new TableCopy(legacy.levelsTable(), binary.levelsTable(), "progression_id", "level"))
+                .thenCompose(v -> copyTable(tasks, new TableCopy(legacy.autoStatesTable(), binary.autoStatesTable(), "progression_id", "is_enabled")))
+                .thenCompose(v -> copyTable(tasks, new TableCopy(legacy.rewardsTable(), binary.rewardsTable(), "reward_key", null)))
+                .thenRun(() -> {
+                    // Keep writing the legacy tables for the rest of this run, so statements that picked the
+                    // layouts before the switch still see every write. From the next start only the binary tables are used.
+                    layouts = List.of(binary, legacy);
+                    logger.info("Copied the player data to the binary UUID tables in " + (System.currentTimeMillis() - start) + "ms. The legacy tables "
+                            + legacy.levelsTable() + ", " + legacy.autoStatesTable() + " and " + legacy.rewardsTable()
+                            + " are no longer used after the next restart and can then be dropped.");
+                });
+    }
+
+    /**
+     * Drop the single-column uuid indexes earlier releases created next to the (uuid, ...) primary keys.
+     * The key already serves every lookup by uuid, so the indexes only cost space and write time.
+     */
+    private SchemaMigration.BackgroundWork dropRedundantIndexes(Connection conn) throws SQLException {
+        dropIndexIfExists(conn, legacy.levelsTable(), tablePrefix + "idx_levels_uuid");
+        dropIndexIfExists(conn, legacy.autoStatesTable(), tablePrefix + "idx_auto_states_uuid");
+        dropIndexIfExists(conn, legacy.rewardsTable(), tablePrefix + "idx_rewards_uuid");
+        return null;
+    }
+
+    /**
+     * A legacy table copied into its binary counterpart. The key is (uuid, keyColumn).
+     * @param valueColumn The non-key column, or null if the table has none.
+     */
+    private record TableCopy(String source, String target, String keyColumn, String valueColumn) {}
+
+    private CompletableFuture<Void> copyTable(SchemaMigration.TaskRunner tasks, TableCopy table) {
+        return copyChunks(tasks, table, new CopyPosition("", "", 0));
+    }
+
+    /**
+     * Keyset position of the copy: the last key copied and the rows copied so far.
+     */
+    private record CopyPosition(String uuid, String key, long copied) {}
+
+    private CompletableFuture<Void> copyChunks(SchemaMigration.TaskRunner tasks, TableCopy table, CopyPosition position) {
+        return tasks.submit(conn -> {
+            try {
+                return copyChunk(conn, table, position);
+            } catch (SQLException e) {
+                throw new CompletionException("Failed to copy " + table.source() + " after " + position.copied() + " rows", e);
+            }
+        }).thenCompose(next -> {
+            if (next == null) {
+                logger.info("Copied " + position.copied() + " rows from " + table.source() + " to " + table.target() + ".");
+                return CompletableFuture.completedFuture(null);
+            }
+            return copyChunks(tasks, table, next);
+        });
+    }
+
+    /**
+     * Copy the rows after the given position in one transaction.
+     * @return The position after the chunk, or null if there were no more rows.
+     */
+    private CopyPosition copyChunk(Connection conn, TableCopy table, CopyPosition position) throws SQLException {
+        String columns = "uuid, " + table.keyColumn() + (table.valueColumn() != null ? ", " + table.valueColumn() : "");
+        String selectSql = "SELECT " + columns + " FROM " + table.source()
+                + " WHERE uuid > ? OR (uuid = ? AND " + table.keyColumn() + " > ?) ORDER BY uuid, " + table.keyColumn() + " LIMIT ?;";
+        String insertSql = dialect.getInsertIgnore() + " INTO " + table.target() + " (" + columns + ") VALUES (?, ?"
+                + (table.valueColumn() != null ? ", ?" : "") + ");";
+
+        conn.setAutoCommit(false);
+        try (PreparedStatement selectPs = conn.prepareStatement(selectSql);
+             PreparedStatement insertPs = conn.prepareStatement(insertSql)) {
+            selectPs.setString(1, position.uuid());
+            selectPs.setString(2, position.uuid());
+            selectPs.setString(3, position.key());
+            selectPs.setInt(4, copyChunkSize);
+
+            String lastUuid = null;
+            String lastKey = null;
+            int rows = 0;
+            try (ResultSet rs = selectPs.executeQuery()) {
+                while (rs.next()) {
+                    lastUuid = rs.getString("uuid");
+                    lastKey = rs.getString(table.keyColumn());
+                    rows++;
+                    UUID uuid;
+                    try {
+                        uuid = UUID.fromString(lastUuid);
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Skipping row with invalid UUID '" + lastUuid + "' in " + table.source() + ".");
+                        continue;
+                    }
+                    insertPs.setBytes(1, SchemaLayout.toBytes(uuid));
+                    insertPs.setString(2, lastKey);
+                    if (table.valueColumn() != null) {
+                        insertPs.setLong(3, rs.getLong(table.valueColumn()));
+                    }
+                    insertPs.addBatch();
+                }
+            }
+            if (rows == 0) {
+                conn.commit();
+                return null;
+            }
+            insertPs.executeBatch();
+            conn.commit();
+            return new CopyPosition(lastUuid, lastKey, position.copied() + rows);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private int readVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM " + versionTable + ";")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void recordVersion(Connection conn, SchemaMigration migration) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(dialect.getInsertIgnore() + " INTO " + versionTable + " (version, applied_at) VALUES (?, ?);")) {
+            ps.setInt(1, migration.version());
+            ps.setLong(2, System.currentTimeMillis());
+            ps.executeUpdate();
+        }
+        logger.info("Database schema migrated to version " + migration.version() + " (" + migration.description() + ").");
+    }
+
+    private void dropIndexIfExists(Connection conn, String table, String index) throws SQLException {
+        if (!tableExists(conn, table)) {
+            return;
+        }
+        boolean exists = false;
+        try (ResultSet rs = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, table, false, false)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    exists = true;
+                    break;
+                }
+            }
+        }
+        if (exists) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(dialect.getDropIndexSql(table, index));
+            }
+        }
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        // Limit the lookup to the connection's own database; MySQL would otherwise search all of them
+        try (ResultSet rs = metaData.getTables(conn.getCatalog(), null, table, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package net.bumpier.brankup.economy;
 
 import com.edwardbelt.edprison.utils.EconomyUtils;
+import net.bumpier.brankup.util.IoExecutor;
 import org.bukkit.entity.Player;
 import java.math.BigDecimal;
 import java.util.UUID;
@@ -9,14 +10,17 @@ import java.util.concurrent.CompletableFuture;
 public class EdPrisonEconomyService implements IEconomyService {
 
     private final String currencyId;
+    // Blocking EdPrison calls run here rather than on the common pool
+    private final IoExecutor executor;
 
-    public EdPrisonEconomyService(String currencyId) {
+    public EdPrisonEconomyService(String currencyId, IoExecutor executor) {
         this.currencyId = currencyId;
+        this.executor = executor;
     }
 
     @Override
     public CompletableFuture<Boolean> has(Player player, BigDecimal amount) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.supplyAsync(() -> {
             UUID uuid = player.getUniqueId();
             // Direct call to the static utility method
             double currentBalance = EconomyUtils.getEco(uuid, this.currencyId);
@@ -26,7 +30,7 @@ public class EdPrisonEconomyService implements IEconomyService {
 
     @Override
     public CompletableFuture<Boolean> withdraw(Player player, BigDecimal amount) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.supplyAsync(() -> {
             try {
                 UUID uuid = player.getUniqueId();
                 // Direct call to the static utility method
@@ -39,9 +43,30 @@ public class EdPrisonEconomyService implements IEconomyService {
         });
     }
 
+    @Override
+    public CompletableFuture<Boolean> has(Player player, long amount) {
+        return executor.supplyAsync(() -> {
+            // EdPrison stores balances as doubles, so compare without converting to BigDecimal
+            return EconomyUtils.getEco(player.getUniqueId(), this.currencyId) >= amount;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> withdraw(Player player, long amount) {
+        return executor.supplyAsync(() -> {
+            try {
+                EconomyUtils.removeEco(player.getUniqueId(), this.currencyId, amount);
+                return true;
+            } catch (Exception e) {
+                // In case of any unexpected errors from the API
+                return false;
+            }
+        });
+    }
+
     @Override
     public CompletableFuture<Void> give(Player player, BigDecimal amount) {
-        return CompletableFuture.runAsync(() -> {
+        return executor.runAsync(() -> {
             UUID uuid = player.getUniqueId();
             // Direct call to the static utility method
             EconomyUtils.addEconomy(uuid, this.currencyId, amount.doubleValue());
@@ -50,15 +75,20 @@ public class EdPrisonEconomyService implements IEconomyService {
 
     @Override
     public CompletableFuture<BigDecimal> getBalance(Player player) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.supplyAsync(() -> {
             double balance = EconomyUtils.getEco(player.getUniqueId(), this.currencyId);
             return BigDecimal.valueOf(balance);
         });
     }
 
+    @Override
+    public BigDecimal getBalanceNow(Player player) {
+        return BigDecimal.valueOf(EconomyUtils.getEco(player.getUniqueId(), this.currencyId));
+    }
+
     @Override
     public CompletableFuture<Void> set(Player player, BigDecimal amount) {
-        return CompletableFuture.runAsync(() -> {
+        return executor.runAsync(() -> {
             EconomyUtils.setEco(player.getUniqueId(), this.currencyId, amount.doubleValue());
         });
     }
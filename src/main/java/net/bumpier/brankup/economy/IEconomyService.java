@@ -24,6 +24,28 @@ public interface IEconomyService {
      */
     CompletableFuture<Boolean> withdraw(Player player, BigDecimal amount);
 
+    /**
+     * Checks if a player has at least a whole amount of the service's currency.
+     * Used by the fixed-point cost mode to avoid allocating a BigDecimal per check.
+     * @param player The player to check.
+     * @param amount The amount to check for.
+     * @return A future that completes with true if the player has enough, false otherwise.
+     */
+    default CompletableFuture<Boolean> has(Player player, long amount) {
+        return has(player, BigDecimal.valueOf(amount));
+    }
+
+    /**
+     * Withdraws a whole amount from a player's balance.
+     * Used by the fixed-point cost mode to avoid allocating a BigDecimal per withdrawal.
+     * @param player The player to withdraw from.
+     * @param amount The amount to withdraw.
+     * @return A future that completes with true if the withdrawal was successful, false otherwise.
+     */
+    default CompletableFuture<Boolean> withdraw(Player player, long amount) {
+        return withdraw(player, BigDecimal.valueOf(amount));
+    }
+
     /**
      * Gives a specific amount to a player's balance.
      * @param player The player to give to.
@@ -39,6 +61,15 @@ public interface IEconomyService {
      */
     CompletableFuture<BigDecimal> getBalance(Player player);
 
+    /**
+     * Gets the player's balance directly on the calling thread, for callers that must answer right away,
+     * such as placeholders on the main thread. Never goes through the service's executor, so a busy economy
+     * queue cannot stall the caller.
+     * @param player The player to check.
+     * @return The player's balance.
+     */
+    BigDecimal getBalanceNow(Player player);
+
     /**
      * Sets a player's balance to a specific amount.
      * @param player The player to modify.
@@ -5,6 +5,7 @@ import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import net.bumpier.brankup.bRankup;
 import net.bumpier.brankup.data.PlayerRankData;
 import net.bumpier.brankup.economy.IEconomyService;
+import net.bumpier.brankup.progression.InvalidCostException;
 import net.bumpier.brankup.progression.ProgressionCostService;
 import net.bumpier.brankup.progression.ProgressionType;
 import net.kyori.adventure.text.minimessage.MiniMessage;
@@ -19,13 +20,22 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.text.NumberFormat;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class bRankupExpansion extends PlaceholderExpansion {
 
+    // Upper bound for %brankup_<type>_cost_next_<amount>%
+    private static final int MAX_PREVIEW_LEVELS = 1000;
+    // Upper bound for the number of distinct identifiers kept parsed
+    private static final int MAX_PARSED_IDENTIFIERS = 1024;
+
     private final bRankup plugin;
     private final MiniMessage miniMessage;
     private final LegacyComponentSerializer legacySerializer;
+    // Identifiers come from a fixed set of configured placeholders, so each is split only once
+    private final Map<String, ParsedIdentifier> parsedIdentifiers = new ConcurrentHashMap<>();
 
     public bRankupExpansion(bRankup plugin) {
         this.plugin = plugin;
@@ -60,19 +70,40 @@ public class bRankupExpansion extends PlaceholderExpansion {
         return parsePlaceholder(player, data, identifier);
     }
 
-    private String parsePlaceholder(OfflinePlayer player, PlayerRankData data, String identifier) {
-        String[] parts = identifier.split("_", 2);
-        if (parts.length < 2) return null;
+    @Override
+    public @Nullable String onRequest(OfflinePlayer player, @NotNull String identifier) {
+        if (player == null) return "";
+        Player onlinePlayer = player.getPlayer();
+        if (onlinePlayer != null) {
+            return onPlaceholderRequest(onlinePlayer, identifier);
+        }
+        // Offline lookups read a projection and never add the player to the online cache
+        PlayerRankData data = plugin.getPlayerManagerService().getOfflineDataSynchronously(player.getUniqueId());
+        return parsePlaceholder(player, data, identifier);
+    }
 
-        String typeId = parts[0];
-        String key = parts[1];
+    private String parsePlaceholder(OfflinePlayer player, PlayerRankData data, String identifier) {
+        ParsedIdentifier parsed = parseIdentifier(identifier);
+        if (parsed == null) return null;
 
-        ProgressionType type = plugin.getProgressionChainManager().getProgressionType(typeId);
+        String key = parsed.key();
+        ProgressionType type = plugin.getProgressionChainManager().getProgressionType(parsed.typeId());
         if (type == null) return null;
 
-        long currentLevel = data.getProgressionLevel(type.getId());
+        // Every value below is read from one snapshot, so they are consistent even while the player progresses
+        PlayerRankData.Snapshot snapshot = data.snapshot();
+        long currentLevel = snapshot.getProgressionLevel(type.getIndex());
         boolean isMaxLevel = currentLevel >= type.getLimit();
 
+        try {
+            return parseKey(player, data, snapshot, type, key, currentLevel, isMaxLevel);
+        } catch (InvalidCostException e) {
+            return "N/A"; // Logged once by the cost service
+        }
+    }
+
+    private String parseKey(OfflinePlayer player, PlayerRankData data, PlayerRankData.Snapshot snapshot, ProgressionType type,
+                            String key, long currentLevel, boolean isMaxLevel) {
         return switch (key) {
             case "level" -> String.valueOf(currentLevel);
             case "display" -> formatDisplay(player, type.getProgressionDisplay());
@@ -86,31 +117,90 @@ public class bRankupExpansion extends PlaceholderExpansion {
                 String nextLevelDisplay = displayFormat.replace(tempPlaceholder, String.valueOf(currentLevel + 1));
                 yield formatDisplay(player, nextLevelDisplay);
             }
-            case "cost", "cost_formatted" -> getCost(data, type);
-            case "percent" -> getPercent(player, data, type);
-            case "progress_bar" -> buildProgressBar(type, getPercent(player, data, type));
-            default -> null;
+            case "cost", "cost_formatted" -> getCost(data, snapshot, type);
+            case "percent" -> getPercent(player, data, snapshot, type);
+            case "progress_bar" -> buildProgressBar(type, getPercent(player, data, snapshot, type));
+            default -> key.startsWith("cost_next_") ? getCostOfNext(data, snapshot, type, key.substring("cost_next_".length())) : null;
         };
     }
 
-    private String getCost(PlayerRankData data, ProgressionType type) {
+    private ParsedIdentifier parseIdentifier(String identifier) {
+        ParsedIdentifier parsed = parsedIdentifiers.get(identifier);
+        if (parsed != null) {
+            return parsed;
+        }
+        int separator = identifier.indexOf('_');
+        if (separator < 0) return null;
+        parsed = new ParsedIdentifier(identifier.substring(0, separator), identifier.substring(separator + 1));
+        if (parsedIdentifiers.size() < MAX_PARSED_IDENTIFIERS) {
+            parsedIdentifiers.put(identifier, parsed);
+        }
+        return parsed;
+    }
+
+    private String getCost(PlayerRankData data, PlayerRankData.Snapshot snapshot, ProgressionType type) {
+        ProgressionCostService costService = plugin.getCostServices().get(type.getId());
+        if (costService == null) return "N/A";
+
+        if (snapshot.getProgressionLevel(type.getIndex()) >= type.getLimit()) {
+            return "Maxed";
+        }
+
+        // Formatted once per snapshot; later reads return the same string
+        String formatted = snapshot.getFormattedNextCost(type.getIndex());
+        if (formatted == null) {
+            BigDecimal cost = getNextCost(data, snapshot, type, costService);
+            formatted = NumberFormat.getNumberInstance(Locale.US).format(cost.toBigInteger());
+            if (data.isCurrent(snapshot)) {
+                snapshot.setFormattedNextCost(type.getIndex(), formatted);
+            }
+        }
+        return formatted;
+    }
+
+    private BigDecimal getNextCost(PlayerRankData data, PlayerRankData.Snapshot snapshot, ProgressionType type, ProgressionCostService costService) {
+        BigDecimal cost = snapshot.getNextCost(type.getIndex());
+        if (cost == null) {
+            // Scaling reads the live data, so the result is only memoized if nothing changed in the meantime
+            cost = costService.getCost(snapshot.getProgressionLevel(type.getIndex()), data);
+            if (data.isCurrent(snapshot)) {
+                snapshot.setNextCost(type.getIndex(), cost);
+            }
+        }
+        return cost;
+    }
+
+    private String getCostOfNext(PlayerRankData data, PlayerRankData.Snapshot snapshot, ProgressionType type, String amount) {
         ProgressionCostService costService = plugin.getCostServices().get(type.getId());
         if (costService == null) return "N/A";
 
-        if (data.getProgressionLevel(type.getId()) >= type.getLimit()) {
+        int levels;
+        try {
+            levels = Integer.parseInt(amount);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        long currentLevel = snapshot.getProgressionLevel(type.getIndex());
+        long toLevel = Math.min(type.getLimit(), currentLevel + Math.clamp(levels, 0, MAX_PREVIEW_LEVELS));
+        if (toLevel <= currentLevel) {
             return "Maxed";
         }
 
-        // REFACTORED: Pass the entire data object for dynamic cost scaling
-        BigDecimal cost = costService.getCost(data.getProgressionLevel(type.getId()), data);
-        return NumberFormat.getNumberInstance(Locale.US).format(cost.toBigInteger());
+        // Price the whole range in one pass; fall back to decimals if the total does not fit in a long
+        long total = costService.getCosts(currentLevel, toLevel, data, new long[(int) (toLevel - currentLevel)]);
+        if (total != ProgressionCostService.NOT_REPRESENTABLE) {
+            return NumberFormat.getNumberInstance(Locale.US).format(total);
+        }
+        BigDecimal cost = costService.getTotalCost(currentLevel, toLevel - currentLevel, data);
+        return cost != null ? NumberFormat.getNumberInstance(Locale.US).format(cost.toBigInteger()) : "N/A";
     }
 
-    private String getPercent(OfflinePlayer player, PlayerRankData data, ProgressionType type) {
+    private String getPercent(OfflinePlayer player, PlayerRankData data, PlayerRankData.Snapshot snapshot, ProgressionType type) {
         if (type.getFollows() != null) {
             ProgressionType prerequisiteType = plugin.getProgressionChainManager().getProgressionType(type.getFollows());
             if (prerequisiteType != null) {
-                long prerequisiteLevel = data.getProgressionLevel(prerequisiteType.getId());
+                long prerequisiteLevel = snapshot.getProgressionLevel(prerequisiteType.getIndex());
                 long prerequisiteLimit = prerequisiteType.getLimit();
                 if (prerequisiteLimit <= 0) return "100";
                 double percent = ((double) prerequisiteLevel / prerequisiteLimit) * 100.0;
@@ -125,13 +215,13 @@ public class bRankupExpansion extends PlaceholderExpansion {
         IEconomyService economyService = plugin.getEconomyService(type.getCurrencyType());
         ProgressionCostService costService = plugin.getCostServices().get(type.getId());
 
-        if (economyService == null || costService == null || data.getProgressionLevel(type.getId()) >= type.getLimit()) {
+        if (economyService == null || costService == null || snapshot.getProgressionLevel(type.getIndex()) >= type.getLimit()) {
             return "100";
         }
 
-        BigDecimal balance = economyService.getBalance(onlinePlayer).join();
-        // REFACTORED: Pass the entire data object for dynamic cost scaling
-        BigDecimal cost = costService.getCost(data.getProgressionLevel(type.getId()), data);
+        // Placeholders are requested on the main thread, so the balance is read directly instead of queued
+        BigDecimal balance = economyService.getBalanceNow(onlinePlayer);
+        BigDecimal cost = getNextCost(data, snapshot, type, costService);
 
         if (cost.compareTo(BigDecimal.ZERO) <= 0) return "100";
         if (balance.compareTo(cost) >= 0) return "100";
@@ -180,4 +270,6 @@ public class bRankupExpansion extends PlaceholderExpansion {
         String papiParsed = PlaceholderAPI.setPlaceholders(player, text);
         return legacySerializer.serialize(miniMessage.deserialize(papiParsed));
     }
+
+    private record ParsedIdentifier(String typeId, String key) {}
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package net.bumpier.brankup.progression;
+
+import net.bumpier.brankup.util.PerformanceMonitor;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free cache of calculated costs keyed by a primitive long.
+ * Entries are stored in small fixed-size sets and evicted with the CLOCK (second chance) policy
+ * inside their set, so lookups and inserts never take a lock and never allocate on a hit.
+ * Concurrent inserts of the same key may both succeed; this is harmless because costs are deterministic.
+ */
+public class CostCache {
+
+    private static final int WAYS = 8;
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int setMask;
+    private final PerformanceMonitor performanceMonitor;
+
+    /**
+     * @param maxSize The maximum number of entries, rounded up to a power of two. Values of 0 or less disable the cache.
+     * @param performanceMonitor The monitor that receives hit, miss and eviction counts, may be null.
+     */
+    public CostCache(int maxSize, PerformanceMonitor performanceMonitor) {
+        this.performanceMonitor = performanceMonitor;
+        if (maxSize <= 0) {
+            this.slots = null;
+            this.setMask = 0;
+            return;
+        }
+        int sets = Integer.highestOneBit(Math.max(1, (maxSize + WAYS - 1) / WAYS));
+        if (sets * WAYS < maxSize) {
+            sets <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(sets * WAYS);
+        this.setMask = sets - 1;
+    }
+
+    /**
+     * Get a cached cost.
+     * @return The cached value, or null if the key is not cached.
+     */
+    public BigDecimal get(long key) {
+        if (slots == null) {
+            return null;
+        }
+        int base = setIndex(key) * WAYS;
+        for (int i = 0; i < WAYS; i++) {
+            Entry entry = slots.get(base + i);
+            if (entry != null && entry.key == key) {
+                if (!entry.referenced) {
+                    entry.referenced = true;
+                }
+                if (performanceMonitor != null) performanceMonitor.recordCostCacheHit();
+                return entry.value;
+            }
+        }
+        if (performanceMonitor != null) performanceMonitor.recordCostCacheMiss();
+        return null;
+    }
+
+    /**
+     * Cache a cost, evicting an entry from the key's set if it is full.
+     */
+    public void put(long key, BigDecimal value) {
+        if (slots == null) {
+            return;
+        }
+        int base = setIndex(key) * WAYS;
+        Entry newEntry = new Entry(key, value);
+
+        // First pass: reuse the key's slot or take a free one
+        for (int i = 0; i < WAYS; i++) {
+            Entry entry = slots.get(base + i);
+            if (entry == null) {
+                if (slots.compareAndSet(base + i, null, newEntry)) {
+                    return;
+                }
+            } else if (entry.key == key) {
+                return;
+            }
+        }
+
+        // Second pass: CLOCK sweep, giving referenced entries a second chance
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < WAYS; i++) {
+                Entry entry = slots.get(base + i);
+                if (entry == null) {
+                    if (slots.compareAndSet(base + i, null, newEntry)) {
+                        return;
+                    }
+                } else if (entry.referenced) {
+                    entry.referenced = false;
+                } else if (slots.compareAndSet(base + i, entry, newEntry)) {
+                    if (performanceMonitor != null) performanceMonitor.recordCostCacheEviction();
+                    return;
+                }
+            }
+        }
+        // Every slot was contended; dropping the insert is cheaper than retrying
+    }
+
+    public void clear() {
+        if (slots == null) {
+            return;
+        }
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+
+    public int capacity() {
+        return slots == null ? 0 : slots.length();
+    }
+
+    private int setIndex(long key) {
+        // Finalizer from MurmurHash3 to spread the level and scaling bits across the set index
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & setMask;
+    }
+
+    private static final class Entry {
+        private final long key;
+        private final BigDecimal value;
+        private volatile boolean referenced;
+
+        private Entry(long key, BigDecimal value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package net.bumpier.brankup.progression;
+
+import net.bumpier.brankup.data.PlayerRankData;
+import net.bumpier.brankup.data.ProgressionIds;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A custom cost formula used by the FORMULA calculation mode.
+ * The expression is parsed once and compiled into a tree of primitive-double nodes, with
+ * constant sub-expressions folded, so evaluation does no parsing, lookups of named constants or boxing.
+ *
+ * <p>Supported syntax: numbers, {@code + - * / % ^}, parentheses, the functions
+ * {@code min max pow floor ceil round sqrt abs log exp}, the variable {@code level},
+ * constants from the formula's {@code variables} section and the level of any other progression type by its ID.</p>
+ */
+public class CostFormula {
+
+    private final String expression;
+    private final Node root;
+    private final List<String> referencedTypes;
+
+    private CostFormula(String expression, Node root, List<String> referencedTypes) {
+        this.expression = expression;
+        this.root = root;
+        this.referencedTypes = referencedTypes;
+    }
+
+    /**
+     * Parse and compile a formula.
+     * @param expression The formula expression.
+     * @param constants Named constants that are folded into the compiled tree.
+     * @return The compiled formula.
+     * @throws IllegalArgumentException if the expression is malformed.
+     */
+    public static CostFormula compile(String expression, Map<String, Double> constants) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("Formula expression is empty");
+        }
+        Parser parser = new Parser(expression, constants);
+        Node root = parser.parse();
+        return new CostFormula(expression, root, List.copyOf(parser.referencedTypes));
+    }
+
+    /**
+     * Evaluate the formula for a level.
+     * @param level The current level of the progression type being priced.
+     * @param playerData The player's data, used for references to other progression types. May be null
+     *                   when the formula has no references.
+     * @return The raw, unrounded cost.
+     */
+    public double evaluate(long level, PlayerRankData playerData) {
+        return root.evaluate(level, playerData);
+    }
+
+    /**
+     * Get the IDs of the progression types whose levels the formula reads.
+     */
+    public List<String> getReferencedTypes() {
+        return referencedTypes;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    @FunctionalInterface
+    private interface Node {
+        double evaluate(double level, PlayerRankData playerData);
+    }
+
+    private record Constant(double value) implements Node {
+        @Override
+        public double evaluate(double level, PlayerRankData playerData) {
+            return value;
+        }
+    }
+
+    private static final class Parser {
+        private final String input;
+        private final Map<String, Double> constants;
+        private final Set<String> referencedTypes = new LinkedHashSet<>();
+        private int pos;
+
+        private Parser(String input, Map<String, Double> constants) {
+            this.input = input;
+            this.constants = constants;
+        }
+
+        private Node parse() {
+            Node node = parseExpression();
+            skipWhitespace();
+            if (pos < input.length()) {
+                throw error("Unexpected '" + input.charAt(pos) + "'");
+            }
+            return node;
+        }
+
+        // expression := term (('+' | '-') term)*
+        private Node parseExpression() {
+            Node node = parseTerm();
+            while (true) {
+                if (consume('+')) {
+                    node = binary(node, parseTerm(), '+');
+                } else if (consume('-')) {
+                    node = binary(node, parseTerm(), '-');
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        // term := unary (('*' | '/' | '%') unary)*
+        private Node parseTerm() {
+            Node node = parseUnary();
+            while (true) {
+                if (consume('*')) {
+                    node = binary(node, parseUnary(), '*');
+                } else if (consume('/')) {
+                    node = binary(node, parseUnary(), '/');
+                } else if (consume('%')) {
+                    node = binary(node, parseUnary(), '%');
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        // unary := ('-' | '+') unary | power
+        private Node parseUnary() {
+            if (consume('-')) {
+                Node operand = parseUnary();
+                if (operand instanceof Constant constant) {
+                    return new Constant(-constant.value());
+                }
+                return (level, data) -> -operand.evaluate(level, data);
+            }
+            if (consume('+')) {
+                return parseUnary();
+            }
+            return parsePower();
+        }
+
+        // power := primary ('^' unary)?   (right-associative)
+        private Node parsePower() {
+            Node base = parsePrimary();
+            if (consume('^')) {
+                return binary(base, parseUnary(), '^');
+            }
+            return base;
+        }
+
+        private Node parsePrimary() {
+            skipWhitespace();
+            if (consume('(')) {
+                Node node = parseExpression();
+                expect(')');
+                return node;
+            }
+            if (pos < input.length() && (Character.isDigit(input.charAt(pos)) || input.charAt(pos) == '.')) {
+                return parseNumber();
+            }
+            if (pos < input.length() && isIdentifierStart(input.charAt(pos))) {
+                String name = parseIdentifier();
+                skipWhitespace();
+                if (consume('(')) {
+                    return parseFunction(name);
+                }
+                return resolveIdentifier(name);
+            }
+            throw error(pos < input.length() ? "Unexpected '" + input.charAt(pos) + "'" : "Unexpected end of formula");
+        }
+
+        private Node parseNumber() {
+            int start = pos;
+            while (pos < input.length() && (Character.isDigit(input.charAt(pos)) || input.charAt(pos) == '.')) {
+                pos++;
+            }
+            if (pos < input.length() && (input.charAt(pos) == 'e' || input.charAt(pos) == 'E')) {
+                pos++;
+                if (pos < input.length() && (input.charAt(pos) == '+' || input.charAt(pos) == '-')) {
+                    pos++;
+                }
+                while (pos < input.length() && Character.isDigit(input.charAt(pos))) {
+                    pos++;
+                }
+            }
+            try {
+                return new Constant(Double.parseDouble(input.substring(start, pos)));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + input.substring(start, pos) + "'");
+            }
+        }
+
+        private String parseIdentifier() {
+            int start = pos;
+            while (pos < input.length() && (isIdentifierStart(input.charAt(pos)) || Character.isDigit(input.charAt(pos)))) {
+                pos++;
+            }
+            return input.substring(start, pos);
+        }
+
+        private Node resolveIdentifier(String name) {
+            if (name.equals("level")) {
+                return (level, data) -> level;
+            }
+            Double constant = constants.get(name);
+            if (constant != null) {
+                return new Constant(constant);
+            }
+            // Anything else is read as the player's level in another progression type
+            referencedTypes.add(name);
+            int index = ProgressionIds.intern(name);
+            return (level, data) -> data == null ? 0 : data.getProgressionLevel(index);
+        }
+
+        private Node parseFunction(String name) {
+            List<Node> args = new ArrayList<>();
+            skipWhitespace();
+            if (!consume(')')) {
+                do {
+                    args.add(parseExpression());
+                } while (consume(','));
+                expect(')');
+            }
+
+            return switch (name) {
+                case "min" -> { requireArgs(name, args, 2); yield binary(args.get(0), args.get(1), 'm'); }
+                case "max" -> { requireArgs(name, args, 2); yield binary(args.get(0), args.get(1), 'M'); }
+                case "pow" -> { requireArgs(name, args, 2); yield binary(args.get(0), args.get(1), '^'); }
+                case "floor" -> unary(name, args, Math::floor);
+                case "ceil" -> unary(name, args, Math::ceil);
+                case "round" -> unary(name, args, value -> (double) Math.round(value));
+                case "sqrt" -> unary(name, args, Math::sqrt);
+                case "abs" -> unary(name, args, Math::abs);
+                case "log" -> unary(name, args, Math::log);
+                case "exp" -> unary(name, args, Math::exp);
+                default -> throw error("Unknown function '" + name + "'");
+            };
+        }
+
+        private Node unary(String name, List<Node> args, java.util.function.DoubleUnaryOperator function) {
+            requireArgs(name, args, 1);
+            Node operand = args.get(0);
+            if (operand instanceof Constant constant) {
+                return new Constant(function.applyAsDouble(constant.value()));
+            }
+            return (level, data) -> function.applyAsDouble(operand.evaluate(level, data));
+        }
+
+        private Node binary(Node left, Node right, char operator) {
+            Node node = switch (operator) {
+                case '+' -> (level, data) -> left.evaluate(level, data) + right.evaluate(level, data);
+                case '-' -> (level, data) -> left.evaluate(level, data) - right.evaluate(level, data);
+                case '*' -> (level, data) -> left.evaluate(level, data) * right.evaluate(level, data);
+                case '/' -> (level, data) -> left.evaluate(level, data) / right.evaluate(level, data);
+                case '%' -> (level, data) -> left.evaluate(level, data) % right.evaluate(level, data);
+                case '^' -> (level, data) -> Math.pow(left.evaluate(level, data), right.evaluate(level, data));
+                case 'm' -> (level, data) -> Math.min(left.evaluate(level, data), right.evaluate(level, data));
+                case 'M' -> (level, data) -> Math.max(left.evaluate(level, data), right.evaluate(level, data));
+                default -> throw new IllegalStateException("Unknown operator " + operator);
+            };
+            // Fold constant sub-expressions at compile time
+            if (left instanceof Constant && right instanceof Constant) {
+                return new Constant(node.evaluate(0, null));
+            }
+            return node;
+        }
+
+        private void requireArgs(String name, List<Node> args, int expected) {
+            if (args.size() != expected) {
+                throw error("Function '" + name + "' expects " + expected + " argument(s) but got " + args.size());
+            }
+        }
+
+        private boolean consume(char expected) {
+            skipWhitespace();
+            if (pos < input.length() && input.charAt(pos) == expected) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char expected) {
+            if (!consume(expected)) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private static boolean isIdentifierStart(char c) {
+            return Character.isLetter(c) || c == '_';
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + (pos + 1) + " in formula: " + input);
+        }
+    }
+}
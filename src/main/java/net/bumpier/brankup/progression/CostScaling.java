@@ -0,0 +1,494 @@
+package net.bumpier.brankup.progression;
+
+import net.bumpier.brankup.data.PlayerRankData;
+import net.bumpier.brankup.data.ProgressionIds;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cost scaling driven by the levels of one or more other progression types.
+ * Each source adds {@code level * value} either to a multiplier (MULTIPLIER) or to a flat addition (ADDITIVE),
+ * so every configuration collapses to {@code cost * (1 + sum of multipliers) + sum of additions}
+ * and applying it is one multiply and one add however many sources are configured.
+ *
+ * <p>When all sources read the same type, its level identifies the factors directly. Otherwise the factors
+ * are computed once per player, memoized on {@link PlayerRankData} until one of its levels changes, and each
+ * distinct set of factors is given a small dense ID that stands in for the scaling level in cache keys.
+ * Once the IDs run out a new epoch starts from ID 1 again, so an ID only means something together with
+ * {@link Factors#getEpoch()} and caches keyed on it must be dropped when the epoch changes.</p>
+ */
+public class CostScaling {
+
+    // Cap on remembered factor sets for multi-type scaling, so the map is not kept for the server's lifetime
+    private static final int MAX_FACTOR_IDS = 4096;
+
+    private final List<Source> sources;
+    private final List<String> scalingTypes;
+    private final String singleScalingType;
+    private final int singleScalingIndex;
+    private final long maxFactorId;
+    private final AtomicReference<FactorIds> factorIds = new AtomicReference<>(new FactorIds(0));
+
+    private CostScaling(List<Source> sources, long maxFactorId) {
+        this.sources = List.copyOf(sources);
+        this.maxFactorId = Math.min(MAX_FACTOR_IDS, maxFactorId);
+        Set<String> types = new LinkedHashSet<>();
+        for (Source source : sources) {
+            types.add(source.scaleWith());
+        }
+        this.scalingTypes = List.copyOf(types);
+        this.singleScalingType = scalingTypes.size() == 1 ? scalingTypes.get(0) : null;
+        this.singleScalingIndex = singleScalingType != null ? sources.get(0).scaleWithIndex() : -1;
+    }
+
+    /**
+     * Read the scaling settings from a 'cost-scaling' section.
+     * Accepts either a 'sources' list or the single-source form with 'scale-with', 'mode' and 'value' keys.
+     * @param scalingConfig The section, may be null.
+     * @param maxFactorId The largest factor ID the caller's cache keys can hold, at least 1.
+     */
+    public static CostScaling fromConfig(ConfigurationSection scalingConfig, long maxFactorId) {
+        List<Source> sources = new ArrayList<>();
+        if (scalingConfig == null || !scalingConfig.getBoolean("enabled", false)) {
+            return new CostScaling(sources, maxFactorId);
+        }
+
+        if (scalingConfig.isList("sources")) {
+            for (Map<?, ?> entry : scalingConfig.getMapList("sources")) {
+                Object scaleWith = entry.get("scale-with");
+                Object mode = entry.get("mode");
+                Object value = entry.get("value");
+                double numericValue = value instanceof Number number ? number.doubleValue() : parseDouble(value);
+                addSource(sources, scaleWith != null ? scaleWith.toString() : null,
+                        mode != null ? mode.toString() : "MULTIPLIER", numericValue);
+            }
+        } else {
+            addSource(sources, scalingConfig.getString("scale-with"),
+                    scalingConfig.getString("mode", "MULTIPLIER"), scalingConfig.getDouble("value", 0.0));
+        }
+        return new CostScaling(sources, maxFactorId);
+    }
+
+    public boolean isEnabled() {
+        return !sources.isEmpty();
+    }
+
+    /**
+     * Get the distinct IDs of the progression types the cost scales with, empty when scaling is disabled.
+     */
+    public List<String> getScalingTypes() {
+        return scalingTypes;
+    }
+
+    /**
+     * Check if the factors depend on a single progression type, so its level can index a cost table row.
+     */
+    public boolean isSingleType() {
+        return singleScalingType != null;
+    }
+
+    /**
+     * Get the ID that identifies the player's scaling factors in cost cache keys and cost table rows.
+     * This is the scaling level for a single scaling type, and 0 when scaling is disabled or has no effect.
+     * For multi-type scaling the ID is only unique within the epoch of {@link #getFactors(PlayerRankData)}.
+     */
+    public long getScalingId(PlayerRankData playerData) {
+        if (singleScalingType != null) {
+            return playerData != null ? playerData.getProgressionLevel(singleScalingIndex) : 0;
+        }
+        return sources.isEmpty() ? 0 : getFactors(playerData).id;
+    }
+
+    /**
+     * Get the combined scaling factors for a player.
+     * @param playerData The player's data, null for no scaling.
+     */
+    public Factors getFactors(PlayerRankData playerData) {
+        if (sources.isEmpty() || playerData == null) {
+            return Factors.IDENTITY;
+        }
+        if (singleScalingType != null) {
+            return getFactorsForLevel(playerData.getProgressionLevel(singleScalingIndex));
+        }
+
+        // Only recalculated after one of the player's levels has changed, or after the IDs have been reused
+        long version = playerData.getLevelsVersion();
+        if (playerData.getDerivedValue(this) instanceof Factors cached && cached.version == version
+                && (cached.id == 0 || cached.epoch == factorIds.get().epoch)) {
+            return cached;
+        }
+        Factors factors = calculateFactors(playerData, version);
+        playerData.setDerivedValue(this, factors);
+        return factors;
+    }
+
+    /**
+     * Get the factors for a level of the scaling type. Only valid when {@link #isSingleType()} is true.
+     */
+    public Factors getFactorsForLevel(long scalingLevel) {
+        if (singleScalingType == null || scalingLevel <= 0) {
+            return Factors.IDENTITY;
+        }
+        BigDecimal multiplierSum = BigDecimal.ZERO;
+        BigDecimal additionSum = BigDecimal.ZERO;
+        long multiplierFixed = 0;
+        long additionFixed = 0;
+        BigDecimal level = BigDecimal.valueOf(scalingLevel);
+        for (Source source : sources) {
+            BigDecimal scaled = source.value().multiply(level);
+            long scaledFixed = multiplyFixed(source.valueFixed(), scalingLevel);
+            if (source.multiplier()) {
+                multiplierSum = multiplierSum.add(scaled);
+                multiplierFixed = addFixed(multiplierFixed, scaledFixed);
+            } else {
+                additionSum = additionSum.add(scaled);
+                additionFixed = addFixed(additionFixed, scaledFixed);
+            }
+        }
+        return Factors.of(scalingLevel, 0, multiplierSum, additionSum, multiplierFixed, additionFixed, 0);
+    }
+
+    private Factors calculateFactors(PlayerRankData playerData, long version) {
+        BigDecimal multiplierSum = BigDecimal.ZERO;
+        BigDecimal additionSum = BigDecimal.ZERO;
+        long multiplierFixed = 0;
+        long additionFixed = 0;
+        for (Source source : sources) {
+            long level = playerData.getProgressionLevel(source.scaleWithIndex());
+            if (level == 0) {
+                continue;
+            }
+            BigDecimal scaled = source.value().multiply(BigDecimal.valueOf(level));
+            long scaledFixed = multiplyFixed(source.valueFixed(), level);
+            if (source.multiplier()) {
+                multiplierSum = multiplierSum.add(scaled);
+                multiplierFixed = addFixed(multiplierFixed, scaledFixed);
+            } else {
+                additionSum = additionSum.add(scaled);
+                additionFixed = addFixed(additionFixed, scaledFixed);
+            }
+        }
+
+        // ID 0 always means no scaling, so it is valid in every epoch
+        long id = 0;
+        long epoch = 0;
+        if (multiplierSum.signum() != 0 || additionSum.signum() != 0) {
+            FactorKey key = new FactorKey(multiplierSum.stripTrailingZeros(), additionSum.stripTrailingZeros());
+            while (true) {
+                FactorIds current = factorIds.get();
+                id = current.ids.computeIfAbsent(key, k -> current.nextId.getAndIncrement());
+                if (id <= maxFactorId) {
+                    epoch = current.epoch;
+                    break;
+                }
+                // Out of IDs: start a new epoch from ID 1 instead of letting the IDs climb past the cache key bits
+                factorIds.compareAndSet(current, new FactorIds(current.epoch + 1));
+            }
+        }
+        return Factors.of(id, epoch, multiplierSum, additionSum, multiplierFixed, additionFixed, version);
+    }
+
+    private static void addSource(List<Source> sources, String scaleWith, String mode, double value) {
+        if (scaleWith == null || scaleWith.isBlank()) {
+            return;
+        }
+        String normalizedMode = mode.toUpperCase();
+        if (!"MULTIPLIER".equals(normalizedMode) && !"ADDITIVE".equals(normalizedMode)) {
+            return; // Unknown modes have never applied any scaling
+        }
+        BigDecimal decimalValue = BigDecimal.valueOf(value);
+        long valueFixed;
+        try {
+            valueFixed = decimalValue.movePointRight(6).longValueExact();
+        } catch (ArithmeticException e) {
+            valueFixed = ProgressionCostService.NOT_REPRESENTABLE;
+        }
+        sources.add(new Source(scaleWith, ProgressionIds.intern(scaleWith), "MULTIPLIER".equals(normalizedMode), decimalValue, valueFixed));
+    }
+
+    private static double parseDouble(Object value) {
+        if (value == null) {
+            return 0.0;
+        }
+        try {
+            return Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    private static long multiplyFixed(long valueFixed, long level) {
+        if (valueFixed == ProgressionCostService.NOT_REPRESENTABLE) {
+            return ProgressionCostService.NOT_REPRESENTABLE;
+        }
+        try {
+            return Math.multiplyExact(valueFixed, level);
+        } catch (ArithmeticException e) {
+            return ProgressionCostService.NOT_REPRESENTABLE;
+        }
+    }
+
+    private static long addFixed(long total, long value) {
+        if (total == ProgressionCostService.NOT_REPRESENTABLE || value == ProgressionCostService.NOT_REPRESENTABLE) {
+            return ProgressionCostService.NOT_REPRESENTABLE;
+        }
+        try {
+            return Math.addExact(total, value);
+        } catch (ArithmeticException e) {
+            return ProgressionCostService.NOT_REPRESENTABLE;
+        }
+    }
+
+    // Sum of floor((a * i + b) / m) for i in [0, n), with a, b >= 0 and m > 0, in O(log m) steps
+    private static BigInteger floorSum(BigInteger n, BigInteger m, BigInteger a, BigInteger b) {
+        BigInteger sum = BigInteger.ZERO;
+        while (true) {
+            if (a.compareTo(m) >= 0) {
+                BigInteger[] quotientAndRemainder = a.divideAndRemainder(m);
+                sum = sum.add(n.multiply(n.subtract(BigInteger.ONE)).shiftRight(1).multiply(quotientAndRemainder[0]));
+                a = quotientAndRemainder[1];
+            }
+            if (b.compareTo(m) >= 0) {
+                BigInteger[] quotientAndRemainder = b.divideAndRemainder(m);
+                sum = sum.add(n.multiply(quotientAndRemainder[0]));
+                b = quotientAndRemainder[1];
+            }
+            BigInteger yMax = a.multiply(n).add(b);
+            if (yMax.compareTo(m) < 0) {
+                return sum;
+            }
+            BigInteger[] quotientAndRemainder = yMax.divideAndRemainder(m);
+            n = quotientAndRemainder[0];
+            b = quotientAndRemainder[1];
+            BigInteger previousM = m;
+            m = a;
+            a = previousM;
+        }
+    }
+
+    // Long form of floorSum; throws ArithmeticException if an intermediate value overflows
+    private static long floorSumValue(long n, long m, long a, long b) {
+        long sum = 0;
+        while (true) {
+            if (a >= m) {
+                sum = Math.addExact(sum, Math.multiplyExact(triangular(n), a / m));
+                a %= m;
+            }
+            if (b >= m) {
+                sum = Math.addExact(sum, Math.multiplyExact(n, b / m));
+                b %= m;
+            }
+            long yMax = Math.addExact(Math.multiplyExact(a, n), b);
+            if (yMax < m) {
+                return sum;
+            }
+            n = yMax / m;
+            b = yMax % m;
+            long previousM = m;
+            m = a;
+            a = previousM;
+        }
+    }
+
+    // n * (n - 1) / 2 without overflowing before the division
+    private static long triangular(long n) {
+        return n % 2 == 0 ? Math.multiplyExact(n / 2, n - 1) : Math.multiplyExact(n, (n - 1) / 2);
+    }
+
+    private record Source(String scaleWith, int scaleWithIndex, boolean multiplier, BigDecimal value, long valueFixed) {}
+
+    private record FactorKey(BigDecimal multiplierSum, BigDecimal additionSum) {}
+
+    // The factor IDs handed out in one epoch; replaced as a whole when they run out
+    private static final class FactorIds {
+
+        private final long epoch;
+        private final Map<FactorKey, Long> ids = new ConcurrentHashMap<>();
+        private final AtomicLong nextId = new AtomicLong(1);
+
+        private FactorIds(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * The combined scaling of all sources for one player: {@code cost * multiplier + addition}.
+     */
+    public static final class Factors {
+
+        static final Factors IDENTITY = new Factors(0, 0, BigDecimal.ONE, BigDecimal.ZERO,
+                ProgressionCostService.FIXED_POINT_SCALE, 0, 0);
+
+        private final long id;
+        private final long epoch;
+        private final BigDecimal multiplier;
+        private final BigDecimal addition;
+        // Fixed-point forms with 6 decimal places, NOT_REPRESENTABLE when they do not fit in a long
+        private final long multiplierFixed;
+        private final long additionFixed;
+        private final long version;
+
+        private Factors(long id, long epoch, BigDecimal multiplier, BigDecimal addition,
+                        long multiplierFixed, long additionFixed, long version) {
+            this.id = id;
+            this.epoch = epoch;
+            this.multiplier = multiplier;
+            this.addition = addition;
+            this.multiplierFixed = multiplierFixed;
+            this.additionFixed = additionFixed;
+            this.version = version;
+        }
+
+        private static Factors of(long id, long epoch, BigDecimal multiplierSum, BigDecimal additionSum,
+                                  long multiplierFixedSum, long additionFixed, long version) {
+            if (multiplierSum.signum() == 0 && additionSum.signum() == 0 && version == 0) {
+                return IDENTITY;
+            }
+            long multiplierFixed = addFixed(ProgressionCostService.FIXED_POINT_SCALE, multiplierFixedSum);
+            return new Factors(id, epoch, BigDecimal.ONE.add(multiplierSum), additionSum, multiplierFixed, additionFixed, version);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Get the epoch the ID was handed out in. Always 0 for single-type scaling, whose IDs are levels.
+         */
+        public long getEpoch() {
+            return epoch;
+        }
+
+        public boolean isIdentity() {
+            return multiplier.compareTo(BigDecimal.ONE) == 0 && addition.signum() == 0;
+        }
+
+        /**
+         * Apply the scaling to the cost of a single level.
+         */
+        public BigDecimal apply(BigDecimal baseCost) {
+            if (isIdentity()) {
+                return baseCost;
+            }
+            // Formula: baseCost * (1 + sum(scalingLevel * value)) + sum(scalingLevel * value)
+            return baseCost.multiply(multiplier).add(addition).setScale(0, RoundingMode.HALF_UP);
+        }
+
+        /**
+         * Apply the scaling to every level of an arithmetic run of costs and add up the results.
+         * Each level is rounded on its own, exactly as {@link #apply(BigDecimal)} would, but a floor sum
+         * does it in O(log n) steps without visiting the levels.
+         * @param firstCost The unscaled cost of the first level.
+         * @param costStep The difference between the unscaled costs of consecutive levels.
+         * @param levels The number of levels, at least one.
+         * @return The combined scaled cost, or null if a level in the run would cost less than zero.
+         */
+        public BigDecimal applyToArithmeticRange(BigDecimal firstCost, BigDecimal costStep, long levels) {
+            BigDecimal lastCost = firstCost.add(costStep.multiply(BigDecimal.valueOf(levels - 1)));
+            if (isIdentity()) {
+                // Unscaled costs are not rounded, so the arithmetic series is exact
+                if (firstCost.signum() < 0 || lastCost.signum() < 0) {
+                    return null;
+                }
+                return firstCost.add(lastCost).multiply(BigDecimal.valueOf(levels)).divide(BigDecimal.valueOf(2));
+            }
+
+            BigDecimal first = firstCost.multiply(multiplier).add(addition);
+            BigDecimal last = lastCost.multiply(multiplier).add(addition);
+            if (first.signum() < 0 || last.signum() < 0) {
+                return null;
+            }
+            // Sum a falling run from its last level, so the step is never negative
+            BigDecimal step = costStep.multiply(multiplier);
+            if (step.signum() < 0) {
+                first = last;
+                step = step.negate();
+            }
+            // HALF_UP of a non-negative x is floor(x + 1/2); bring everything to a common integer denominator
+            int scale = Math.max(0, Math.max(first.scale(), step.scale()));
+            BigInteger denominator = BigInteger.TEN.pow(scale);
+            BigInteger a = step.movePointRight(scale).toBigIntegerExact().shiftLeft(1);
+            BigInteger b = first.movePointRight(scale).toBigIntegerExact().shiftLeft(1).add(denominator);
+            return new BigDecimal(floorSum(BigInteger.valueOf(levels), denominator.shiftLeft(1), a, b));
+        }
+
+        /**
+         * Fixed-point form of {@link #applyToArithmeticRange(BigDecimal, BigDecimal, long)}, rounding every level
+         * exactly as {@link #applyValue(long)} does.
+         * @param firstCost The unscaled cost of the first level.
+         * @param costStep The difference between the unscaled costs of consecutive levels.
+         * @param levels The number of levels, at least one.
+         * @return The combined scaled cost, or {@link ProgressionCostService#NOT_REPRESENTABLE} if a level would cost
+         *         less than zero or a value would overflow.
+         */
+        public long applyToArithmeticRangeValue(long firstCost, long costStep, long levels) {
+            long scale = ProgressionCostService.FIXED_POINT_SCALE;
+            try {
+                long lastCost = Math.addExact(firstCost, Math.multiplyExact(costStep, levels - 1));
+                if (firstCost < 0 || lastCost < 0) {
+                    return ProgressionCostService.NOT_REPRESENTABLE;
+                }
+                // Sum a falling run from its last level, so the step is never negative
+                long first = costStep < 0 ? lastCost : firstCost;
+                long step = Math.absExact(costStep);
+                if (isIdentity()) {
+                    return floorSumValue(levels, 1, step, first);
+                }
+                if (multiplierFixed == ProgressionCostService.NOT_REPRESENTABLE || additionFixed == ProgressionCostService.NOT_REPRESENTABLE
+                        || multiplierFixed < 0 || additionFixed < 0) {
+                    return ProgressionCostService.NOT_REPRESENTABLE;
+                }
+                // Level i costs floor(((first + step * i) * multiplierFixed + additionFixed + scale / 2) / scale).
+                // Split off the whole multiples of the scale, as applyValue does, so the floor sum stays below it.
+                long stepFraction = Math.multiplyExact(step % scale, multiplierFixed);
+                long stepWhole = Math.addExact(Math.multiplyExact(step / scale, multiplierFixed), stepFraction / scale);
+                long firstFraction = Math.addExact(Math.addExact(Math.multiplyExact(first % scale, multiplierFixed), additionFixed), scale / 2);
+                long firstWhole = Math.addExact(Math.multiplyExact(first / scale, multiplierFixed), firstFraction / scale);
+                long total = floorSumValue(levels, scale, stepFraction % scale, firstFraction % scale);
+                if (stepWhole > 0) {
+                    total = Math.addExact(total, Math.multiplyExact(triangular(levels), stepWhole));
+                }
+                if (firstWhole > 0) {
+                    total = Math.addExact(total, Math.multiplyExact(levels, firstWhole));
+                }
+                return total;
+            } catch (ArithmeticException e) {
+                return ProgressionCostService.NOT_REPRESENTABLE;
+            }
+        }
+
+        /**
+         * Apply the scaling with fixed-point arithmetic.
+         * @return The scaled cost, or {@link ProgressionCostService#NOT_REPRESENTABLE} if it would overflow.
+         */
+        public long applyValue(long baseCost) {
+            if (isIdentity()) {
+                return baseCost;
+            }
+            if (multiplierFixed == ProgressionCostService.NOT_REPRESENTABLE || additionFixed == ProgressionCostService.NOT_REPRESENTABLE
+                    || baseCost < 0 || multiplierFixed < 0 || additionFixed < 0) {
+                return ProgressionCostService.NOT_REPRESENTABLE;
+            }
+            long scale = ProgressionCostService.FIXED_POINT_SCALE;
+            try {
+                // Split so the product only overflows when the result does, then round the fraction HALF_UP once
+                long wholePart = Math.multiplyExact(baseCost / scale, multiplierFixed);
+                long fractionPart = Math.addExact(Math.multiplyExact(baseCost % scale, multiplierFixed), additionFixed);
+                return Math.addExact(wholePart, Math.addExact(fractionPart, scale / 2) / scale);
+            } catch (ArithmeticException e) {
+                return ProgressionCostService.NOT_REPRESENTABLE;
+            }
+        }
+    }
+}
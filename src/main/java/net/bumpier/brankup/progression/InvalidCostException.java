@@ -0,0 +1,11 @@
+package net.bumpier.brankup.progression;
+
+/**
+ * Thrown when a custom cost formula evaluates to a cost that cannot be charged: NaN, infinite or negative.
+ */
+public class InvalidCostException extends RuntimeException {
+
+    public InvalidCostException(String message) {
+        super(message);
+    }
+}
@@ -1,10 +1,12 @@
 package net.bumpier.brankup.progression;
 
 import net.bumpier.brankup.bRankup;
+import net.bumpier.brankup.data.PlayerRankData;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 
 /**
@@ -14,31 +16,27 @@ import java.util.logging.Level;
 public class ProgressionChainManager {
 
     private final bRankup plugin;
-    private final Map<String, ProgressionType> progressionTypes;
-    private final Map<String, List<String>> progressionChains;
-    private final List<String> progressionOrder;
 
     public ProgressionChainManager(bRankup plugin) {
         this.plugin = plugin;
-        this.progressionTypes = new HashMap<>();
-        this.progressionChains = new HashMap<>();
-        this.progressionOrder = new ArrayList<>();
     }
 
     /**
-     * Load all progression types from configuration
+     * Load all progression types from configuration into a new snapshot without services.
+     * Nothing is published here; the caller adds the services and swaps the snapshot in.
+     * @param version The version of the new snapshot.
      */
-    public void loadProgressionTypes() {
-        progressionTypes.clear();
-        progressionChains.clear();
-        progressionOrder.clear();
+    public ProgressionRuntime loadProgressionTypes(long version) {
+        Map<String, ProgressionType> progressionTypes = new LinkedHashMap<>();
+        Map<String, List<String>> progressionChains = new HashMap<>();
+        List<String> progressionOrder = new ArrayList<>();
 
         ConfigurationSection typesSection = plugin.getConfigManager().getMainConfig()
                 .getConfigurationSection("progression-types");
 
         if (typesSection == null) {
             plugin.getLogger().warning("No progression types defined in config.yml");
-            return;
+            return new ProgressionRuntime(version, progressionTypes, progressionChains, progressionOrder, Map.of(), Map.of(), Map.of());
         }
 
         // First pass: create all progression types
@@ -72,22 +70,23 @@ public class ProgressionChainManager {
         }
 
         // Second pass: build dependency chains and validate
-        buildProgressionChains();
-        validateProgressionChains();
+        buildProgressionChains(progressionTypes, progressionChains);
+        validateProgressionChains(progressionTypes, progressionChains);
 
         // Third pass: determine progression order
-        determineProgressionOrder();
+        determineProgressionOrder(progressionTypes, progressionOrder);
 
         plugin.getLogger().info("Loaded " + progressionTypes.size() + " progression types");
         if (!progressionOrder.isEmpty()) {
             plugin.getLogger().info("Progression order: " + String.join(" -> ", progressionOrder));
         }
+        return new ProgressionRuntime(version, progressionTypes, progressionChains, progressionOrder, Map.of(), Map.of(), Map.of());
     }
 
     /**
      * Build dependency chains for all progression types
      */
-    private void buildProgressionChains() {
+    private void buildProgressionChains(Map<String, ProgressionType> progressionTypes, Map<String, List<String>> progressionChains) {
         for (ProgressionType type : progressionTypes.values()) {
             List<String> chain = new ArrayList<>();
             String currentType = type.getId();
@@ -106,7 +105,7 @@ public class ProgressionChainManager {
     /**
      * Validate that all progression chains are valid
      */
-    private void validateProgressionChains() {
+    private void validateProgressionChains(Map<String, ProgressionType> progressionTypes, Map<String, List<String>> progressionChains) {
         for (ProgressionType type : progressionTypes.values()) {
             if (type.getFollows() != null && !progressionTypes.containsKey(type.getFollows())) {
                 plugin.getLogger().warning("Progression type " + type.getId() +
@@ -124,7 +123,7 @@ public class ProgressionChainManager {
     /**
      * Determine the order of progression types based on dependencies
      */
-    private void determineProgressionOrder() {
+    private void determineProgressionOrder(Map<String, ProgressionType> progressionTypes, List<String> progressionOrder) {
         // Use topological sort to determine order
         Map<String, Integer> inDegree = new HashMap<>();
         Map<String, List<String>> adjacencyList = new HashMap<>();
@@ -171,89 +170,83 @@ public class ProgressionChainManager {
         }
     }
 
+    /**
+     * Get the currently published snapshot. Callers that make several lookups should hold on to it.
+     */
+    private ProgressionRuntime runtime() {
+        return plugin.getRuntime();
+    }
+
     /**
      * Get a progression type by ID
      */
     public ProgressionType getProgressionType(String typeId) {
-        return progressionTypes.get(typeId);
+        return runtime().getProgressionType(typeId);
     }
 
     /**
      * Get all progression types
      */
     public Collection<ProgressionType> getAllProgressionTypes() {
-        return progressionTypes.values();
+        return runtime().getAllProgressionTypes();
     }
 
     /**
      * Get the progression chain for a specific type
      */
     public List<String> getProgressionChain(String typeId) {
-        return progressionChains.getOrDefault(typeId, new ArrayList<>());
+        return runtime().getProgressionChain(typeId);
     }
 
     /**
-     * Get the progression order (from base to highest)
+     * Get the progression order (from base to highest). The list is unmodifiable.
      */
     public List<String> getProgressionOrder() {
-        return new ArrayList<>(progressionOrder);
+        return runtime().getProgressionOrder();
     }
 
     /**
      * Check if a player can progress to a specific type
      */
     public boolean canProgress(String typeId, Map<String, Long> playerLevels) {
-        ProgressionType type = progressionTypes.get(typeId);
-        if (type == null || !type.isEnabled()) {
-            return false;
-        }
-
-        if (type.getFollows() == null) {
-            return true; // Base progression type
-        }
-
-        // Check if player has max level in the required progression type
-        Long requiredLevel = playerLevels.get(type.getFollows());
-        if (requiredLevel == null) {
-            return false;
-        }
-
-        ProgressionType requiredType = progressionTypes.get(type.getFollows());
-        if (requiredType == null) {
-            return false;
-        }
-
-        if (type.requiresMaxLevel() && requiredLevel < requiredType.getLimit()) {
-            return false;
-        }
+        return runtime().canProgress(typeId, playerLevels);
+    }
 
-        return true;
+    /**
+     * Check if a player can progress to a specific type
+     */
+    public boolean canProgress(String typeId, PlayerRankData data) {
+        return runtime().canProgress(typeId, data);
     }
 
     /**
      * Get the next progression type in the chain
      */
     public ProgressionType getNextProgressionType(String currentTypeId) {
+        ProgressionRuntime runtime = runtime();
+        List<String> progressionOrder = runtime.getProgressionOrder();
         int currentIndex = progressionOrder.indexOf(currentTypeId);
         if (currentIndex == -1 || currentIndex >= progressionOrder.size() - 1) {
             return null; // No next type
         }
 
         String nextTypeId = progressionOrder.get(currentIndex + 1);
-        return progressionTypes.get(nextTypeId);
+        return runtime.getProgressionType(nextTypeId);
     }
 
     /**
      * Get the previous progression type in the chain
      */
     public ProgressionType getPreviousProgressionType(String currentTypeId) {
+        ProgressionRuntime runtime = runtime();
+        List<String> progressionOrder = runtime.getProgressionOrder();
         int currentIndex = progressionOrder.indexOf(currentTypeId);
         if (currentIndex <= 0) {
             return null; // No previous type
         }
 
         String previousTypeId = progressionOrder.get(currentIndex - 1);
-        return progressionTypes.get(previousTypeId);
+        return runtime.getProgressionType(previousTypeId);
     }
 
     /**
@@ -261,7 +254,7 @@ public class ProgressionChainManager {
      */
     public List<ProgressionType> getFollowingProgressionTypes(String typeId) {
         List<ProgressionType> following = new ArrayList<>();
-        for (ProgressionType type : progressionTypes.values()) {
+        for (ProgressionType type : runtime().getAllProgressionTypes()) {
             if (typeId.equals(type.getFollows())) {
                 following.add(type);
             }
@@ -273,7 +266,7 @@ public class ProgressionChainManager {
      * Check if a progression type is the base type (has no dependencies)
      */
     public boolean isBaseProgressionType(String typeId) {
-        ProgressionType type = progressionTypes.get(typeId);
+        ProgressionType type = runtime().getProgressionType(typeId);
         return type != null && type.getFollows() == null;
     }
 
@@ -288,69 +281,66 @@ public class ProgressionChainManager {
      * Get the base progression type (first in the chain)
      */
     public ProgressionType getBaseProgressionType() {
+        ProgressionRuntime runtime = runtime();
+        List<String> progressionOrder = runtime.getProgressionOrder();
         if (progressionOrder.isEmpty()) {
             return null;
         }
-        return progressionTypes.get(progressionOrder.get(0));
+        return runtime.getProgressionType(progressionOrder.get(0));
     }
 
     /**
      * Get the highest progression type (last in the chain)
      */
     public ProgressionType getHighestProgressionType() {
+        ProgressionRuntime runtime = runtime();
+        List<String> progressionOrder = runtime.getProgressionOrder();
         if (progressionOrder.isEmpty()) {
             return null;
         }
-        return progressionTypes.get(progressionOrder.get(progressionOrder.size() - 1));
+        return runtime.getProgressionType(progressionOrder.get(progressionOrder.size() - 1));
     }
 
     /**
-     * Reload a specific progression type
+     * Reload a specific progression type.
+     * The type's config file is re-read and a new snapshot is built off-thread; the services of other
+     * types whose settings did not change are carried over.
+     * @return A future completed with true once the reloaded type is published, or false if it no longer loads.
      */
-    public boolean reloadProgressionType(String typeId) {
-        ProgressionType type = progressionTypes.get(typeId);
+    public CompletableFuture<Boolean> reloadProgressionType(String typeId) {
+        ProgressionType type = getProgressionType(typeId);
         if (type == null) {
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
 
         // Reload the configuration file
         plugin.getConfigManager().reloadConfig(type.getConfigFile());
-        FileConfiguration config = plugin.getConfigManager().getConfig(type.getConfigFile());
-
-        if (config == null) {
-            return false;
+        if (plugin.getConfigManager().getConfig(type.getConfigFile()) == null) {
+            return CompletableFuture.completedFuture(false);
         }
 
-        // Create new progression type with reloaded config
-        ProgressionType newType = new ProgressionType(type.getId(), type.getConfigFile(),
-                type.getFollows(), type.getDisplayName(), type.getCommand(), config);
-
-        // Update the type
-        progressionTypes.put(typeId, newType);
-
-        // Rebuild chains and order
-        buildProgressionChains();
-        validateProgressionChains();
-        determineProgressionOrder();
-
-        plugin.getLogger().info("Reloaded progression type: " + typeId);
-        return true;
+        return plugin.reloadProgressionRuntime().thenApply(runtime -> {
+            plugin.getLogger().info("Reloaded progression type: " + typeId);
+            return runtime.getProgressionType(typeId) != null;
+        });
     }
 
     /**
      * Get progression statistics
      */
     public Map<String, Object> getProgressionStats() {
+        ProgressionRuntime runtime = runtime();
         Map<String, Object> stats = new HashMap<>();
-        stats.put("total-types", progressionTypes.size());
-        stats.put("enabled-types", progressionTypes.values().stream()
+        stats.put("total-types", runtime.getAllProgressionTypes().size());
+        stats.put("enabled-types", runtime.getAllProgressionTypes().stream()
                 .filter(ProgressionType::isEnabled).count());
-        stats.put("progression-order", progressionOrder);
+        stats.put("progression-order", runtime.getProgressionOrder());
         stats.put("base-type", getBaseProgressionType() != null ?
                 getBaseProgressionType().getId() : "none");
         stats.put("highest-type", getHighestProgressionType() != null ?
                 getHighestProgressionType().getId() : "none");
+        stats.put("runtime-version", runtime.getVersion());
 
         return stats;
     }
-}
\ No newline at end of file
+}
@@ -2,74 +2,108 @@ package net.bumpier.brankup.progression;
 
 import net.bumpier.brankup.bRankup;
 import net.bumpier.brankup.data.PlayerRankData;
+import net.bumpier.brankup.data.ProgressionIds;
+import net.bumpier.brankup.util.PerformanceMonitor;
 import org.bukkit.configuration.ConfigurationSection;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
 
 public class ProgressionCostService {
 
+    /**
+     * Returned by {@link #getCostValue(long, PlayerRankData)} when the cost cannot be represented as a long,
+     * or fixed-point arithmetic is disabled. Callers must then use {@link #getCost(long, PlayerRankData)}.
+     */
+    public static final long NOT_REPRESENTABLE = Long.MIN_VALUE;
+
+    // Fixed-point scale for fractional settings (6 decimal places)
+    static final long FIXED_POINT_SCALE = 1_000_000L;
+
+    // Cache key used when the referenced levels cannot be packed into a long
+    private static final long UNCACHEABLE = -1L;
+
     private final String calculationMode;
     private final BigDecimal linearBaseCost;
     private final BigDecimal linearCostPerLevel;
     private final BigDecimal exponentialBaseCost;
     private final double exponentialMultiplier;
+    private final CostFormula formula;
+    private final List<String> formulaReferences;
+    private final int[] formulaReferenceIndices;
+    private final Logger logger;
+    // Set once an invalid formula result has been logged, so a bad formula cannot flood the console
+    private final AtomicBoolean invalidFormulaLogged = new AtomicBoolean();
 
-    // REFACTORED: Generic scaling settings
-    private final boolean scalingEnabled;
-    private final String scalingType;
-    private final String scalingMode;
-    private final double scalingValue;
+    // Scaling by the levels of other progression types, combined into one multiplier and addition
+    private final CostScaling scaling;
 
-    // Cache with bounded size and LRU eviction policy
-    private final Map<String, BigDecimal> costCache;
+    // Bounded lock-free cache keyed by (level << 32 | scalingId). Multi-type scaling reuses its IDs once
+    // they run out, so the cache belongs to one ID epoch and is replaced by an empty one when a newer epoch starts.
+    private final AtomicReference<EpochCostCache> costCache;
     private final int maxCacheSize;
-    private final BigDecimal scalingMultiplier;
+    private final PerformanceMonitor performanceMonitor;
+
+    // Fixed-point arithmetic settings, NOT_REPRESENTABLE when a setting has no exact long form
+    private final boolean fixedPointArithmetic;
+    private final long linearBaseCostValue;
+    private final long linearCostPerLevelValue;
+    private final double exponentialBaseCostValue;
 
-    // Cache metrics
-    private final AtomicLong cacheHits = new AtomicLong(0);
-    private final AtomicLong cacheMisses = new AtomicLong(0);
+    // Cumulative cost table, rebuilt whenever the progression services are set up
+    private volatile ProgressionCostTable costTable;
 
     // Pre-computed powers for common exponents (optimization for exponential calculation)
     private final Map<Integer, Double> powerCache = new ConcurrentHashMap<>();
 
-    public ProgressionCostService(ConfigurationSection currencySettings) {
+    public ProgressionCostService(ConfigurationSection currencySettings, Logger logger, PerformanceMonitor performanceMonitor, boolean fixedPointArithmetic) {
+        this.logger = logger;
         this.calculationMode = currencySettings.getString("calculation-mode", "EXPONENTIAL").toUpperCase();
         this.linearBaseCost = new BigDecimal(currencySettings.getString("linear.base-cost", "1000"));
         this.linearCostPerLevel = new BigDecimal(currencySettings.getString("linear.cost-per-level", "1000"));
         this.exponentialBaseCost = new BigDecimal(currencySettings.getString("exponential.base-cost", "1000"));
         this.exponentialMultiplier = currencySettings.getDouble("exponential.cost-multiplier", 1.15);
 
-        // REFACTORED: Read generic scaling config
-        ConfigurationSection scalingConfig = currencySettings.getConfigurationSection("cost-scaling");
-        if (scalingConfig != null) {
-            this.scalingEnabled = scalingConfig.getBoolean("enabled", false);
-            this.scalingType = scalingConfig.getString("scale-with");
-            this.scalingMode = scalingConfig.getString("mode", "MULTIPLIER").toUpperCase();
-            this.scalingValue = scalingConfig.getDouble("value", 0.0);
+        // Custom formulas are compiled once here, so a malformed expression fails the load instead of a purchase
+        if ("FORMULA".equals(calculationMode)) {
+            Map<String, Double> variables = new HashMap<>();
+            ConfigurationSection variablesSection = currencySettings.getConfigurationSection("formula.variables");
+            if (variablesSection != null) {
+                for (String key : variablesSection.getKeys(false)) {
+                    variables.put(key, variablesSection.getDouble(key));
+                }
+            }
+            this.formula = CostFormula.compile(currencySettings.getString("formula.expression"), variables);
+            this.formulaReferences = formula.getReferencedTypes();
         } else {
-            this.scalingEnabled = false;
-            this.scalingType = null;
-            this.scalingMode = "MULTIPLIER";
-            this.scalingValue = 0.0;
+            this.formula = null;
+            this.formulaReferences = List.of();
         }
 
-        this.scalingMultiplier = BigDecimal.valueOf(this.scalingValue);
+        this.formulaReferenceIndices = formulaReferences.stream().mapToInt(ProgressionIds::intern).toArray();
 
-        // Initialize cache with bounded size and LRU eviction policy
-        this.maxCacheSize = currencySettings.getInt("max-cache-size", 1000);
+        // Read the scaling sources, either a 'sources' list or a single 'scale-with' type.
+        // Factor IDs are capped at what getCacheKey can pack next to the referenced levels.
+        long maxFactorId = formulaReferences.isEmpty() ? 0xFFFFFFFFL : (1L << (32 / (formulaReferences.size() + 1))) - 1;
+        this.scaling = CostScaling.fromConfig(currencySettings.getConfigurationSection("cost-scaling"), Math.max(1, maxFactorId));
 
-        // Create a LinkedHashMap with access-order that automatically removes oldest entries when size exceeds maxCacheSize
-        this.costCache = Collections.synchronizedMap(new LinkedHashMap<String, BigDecimal>(16, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, BigDecimal> eldest) {
-                return size() > maxCacheSize;
-            }
-        });
+        // Pre-convert settings for the opt-in fixed-point mode
+        this.fixedPointArithmetic = fixedPointArithmetic;
+        this.linearBaseCostValue = toExactLong(linearBaseCost);
+        this.linearCostPerLevelValue = toExactLong(linearCostPerLevel);
+        this.exponentialBaseCostValue = exponentialBaseCost.doubleValue();
+
+        // Initialize cache with bounded size and CLOCK eviction policy
+        this.maxCacheSize = currencySettings.getInt("max-cache-size", 1000);
+        this.performanceMonitor = performanceMonitor;
+        this.costCache = new AtomicReference<>(new EpochCostCache(0, new CostCache(maxCacheSize, performanceMonitor)));
 
         // Pre-compute powers for common exponents (0-50)
         for (int i = 0; i <= 50; i++) {
@@ -84,46 +118,608 @@ public class ProgressionCostService {
      * @return The final calculated cost.
      */
     public BigDecimal getCost(long currentLevel, PlayerRankData playerData) {
-        // Cache key now needs to incorporate the scaling level to be accurate
-        long scalingLevel = (scalingEnabled && scalingType != null) ? playerData.getProgressionLevel(scalingType) : 0;
-        long cacheKey = (currentLevel << 32) | scalingLevel;
+        // Cache key now needs to incorporate the scaling factors to be accurate.
+        // Multi-type IDs are read from the memoized factors, so the ID and its epoch always belong together.
+        CostScaling.Factors factors = scaling.isSingleType() ? null : scaling.getFactors(playerData);
+        long scalingId = factors != null ? factors.getId() : scaling.getScalingId(playerData);
+
+        ProgressionCostTable table = costTable;
+        if (table != null && table.covers(scalingId, currentLevel)) {
+            return BigDecimal.valueOf(table.getCost(scalingId, currentLevel));
+        }
+
+        long cacheKey = getCacheKey(currentLevel, scalingId, playerData);
+        CostCache cache = cacheKey != UNCACHEABLE ? getCostCache(scalingId, factors != null ? factors.getEpoch() : 0) : null;
+        if (cache != null) {
+            BigDecimal cachedCost = cache.get(cacheKey);
+            if (cachedCost != null) {
+                return cachedCost;
+            }
+        }
+
+        BigDecimal finalCost = calculateCost(currentLevel, factors != null ? factors : scaling.getFactors(playerData), playerData);
+        if (cache != null) {
+            cache.put(cacheKey, finalCost);
+        }
+        return finalCost;
+    }
+
+    /**
+     * Calculates the cost for the next level with scaled long arithmetic, without allocating.
+     * Produces the same value as {@link #getCost(long, PlayerRankData)} whenever it is representable.
+     * @param currentLevel The current level of this progression type.
+     * @param playerData The full data object for the player, used to get scaling levels.
+     * @return The final calculated cost, or {@link #NOT_REPRESENTABLE} if fixed-point mode is disabled
+     *         or the calculation would overflow.
+     */
+    public long getCostValue(long currentLevel, PlayerRankData playerData) {
+        if (!fixedPointArithmetic) {
+            return NOT_REPRESENTABLE;
+        }
+
+        long scalingId = scaling.getScalingId(playerData);
+        ProgressionCostTable table = costTable;
+        if (table != null && table.covers(scalingId, currentLevel)) {
+            return table.getCost(scalingId, currentLevel);
+        }
+
+        long baseCost = calculateBaseCostValue(currentLevel, playerData);
+        if (baseCost != NOT_REPRESENTABLE && scaling.isEnabled()) {
+            return scaling.getFactors(playerData).applyValue(baseCost);
+        }
+        return baseCost;
+    }
+
+    /**
+     * Calculates the cost of every level in [fromLevel, toLevel) in one pass, for previews such as "next 10 ranks".
+     * The scaling factors are resolved once for the whole range, covered levels are copied straight from the
+     * cost table and the rest are calculated directly, without a cache probe per level.
+     * @param fromLevel The first level to price.
+     * @param toLevel The level after the last level to price.
+     * @param playerData The full data object for the player, used to get scaling levels.
+     * @param costs Receives the cost of fromLevel at index 0; must hold at least toLevel - fromLevel entries.
+     * @return The total cost of the range, or {@link #NOT_REPRESENTABLE} if a cost or the total does not fit
+     *         in a long, in which case the contents of the array are unspecified.
+     */
+    public long getCosts(long fromLevel, long toLevel, PlayerRankData playerData, long[] costs) {
+        long count = toLevel - fromLevel;
+        if (count <= 0) {
+            return 0;
+        }
+        if (fromLevel < 0 || costs.length < count) {
+            throw new IllegalArgumentException("Cannot fill " + count + " costs from level " + fromLevel + " into an array of " + costs.length);
+        }
+
+        long total = 0;
+        long level = fromLevel;
+        long scalingId = scaling.getScalingId(playerData);
+        ProgressionCostTable table = costTable;
+        if (table != null && table.covers(scalingId, fromLevel)) {
+            long coveredTo = Math.min(toLevel, table.getCoveredLevels(scalingId));
+            total = table.fillCosts(scalingId, fromLevel, coveredTo, costs, 0);
+            level = coveredTo;
+        }
+
+        CostScaling.Factors factors = level < toLevel ? scaling.getFactors(playerData) : null;
+        for (; level < toLevel; level++) {
+            long cost = calculateCostValue(level, factors, playerData);
+            if (cost == NOT_REPRESENTABLE || cost < 0 || total > Long.MAX_VALUE - cost) {
+                return NOT_REPRESENTABLE;
+            }
+            costs[(int) (level - fromLevel)] = cost;
+            total += cost;
+        }
+        return total;
+    }
+
+    /**
+     * Calculates how many consecutive levels a balance can buy, starting at the current level.
+     * Levels inside the precomputed cost table are resolved with a binary search over its prefix sums.
+     * Otherwise LINEAR totals come from the closed-form arithmetic series, with each level's scaled cost rounded
+     * exactly as {@link #getCost(long, PlayerRankData)} rounds it, so each probe is a short floor sum and the
+     * search is O(log n).
+     * EXPONENTIAL costs are rounded one level at a time, which no closed form reproduces, so they are summed once
+     * up to the first unaffordable level: O(log balance) levels for a multiplier above one. Either way the total
+     * is exactly the sum of the per-level costs.
+     * @param currentLevel The current level of this progression type.
+     * @param limit The maximum level of this progression type.
+     * @param balance The balance available to spend.
+     * @param playerData The full data object for the player, used to get scaling levels.
+     * @return The number of affordable levels and their combined cost.
+     */
+    public PurchaseResult calculateMaxPurchase(long currentLevel, long limit, BigDecimal balance, PlayerRankData playerData) {
+        long remaining = limit - currentLevel;
+        if (remaining <= 0) {
+            return new PurchaseResult(0, BigDecimal.ZERO);
+        }
+
+        long scalingId = scaling.getScalingId(playerData);
+        ProgressionCostTable table = costTable;
+        if (table != null && table.covers(scalingId, currentLevel)) {
+            long budget = toBudget(balance);
+            long reachedLevel = table.findMaxAffordableLevel(scalingId, currentLevel, budget, limit);
+            // Only trust the table when the search did not stop at the edge of the covered range
+            if (reachedLevel >= limit || reachedLevel < table.getCoveredLevels(scalingId)) {
+                return new PurchaseResult(reachedLevel - currentLevel,
+                        BigDecimal.valueOf(table.getRangeCost(scalingId, currentLevel, reachedLevel)));
+            }
+        }
+
+        if (formula != null) {
+            // Custom formulas have no closed form, so walk the levels through the cache
+            long levels = 0;
+            BigDecimal totalCost = BigDecimal.ZERO;
+            while (levels < remaining) {
+                BigDecimal nextTotal = totalCost.add(getCost(currentLevel + levels, playerData));
+                if (nextTotal.compareTo(balance) > 0) {
+                    break;
+                }
+                totalCost = nextTotal;
+                levels++;
+            }
+            return new PurchaseResult(levels, totalCost);
+        }
+
+        CostScaling.Factors factors = scaling.getFactors(playerData);
+        if ("EXPONENTIAL".equals(calculationMode)) {
+            return sumExponentialCosts(currentLevel, remaining, balance, factors);
+        }
+
+        long low = 0;
+        long high = remaining;
+        BigDecimal lowCost = BigDecimal.ZERO;
+
+        // The series total is monotonic in the level count, so binary search for the largest affordable count.
+        while (low < high) {
+            long mid = low + (high - low + 1) / 2;
+            BigDecimal rangeCost = calculateRangeCost(currentLevel, mid, factors);
+            if (rangeCost != null && rangeCost.compareTo(balance) <= 0) {
+                low = mid;
+                lowCost = rangeCost;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return new PurchaseResult(low, lowCost);
+    }
+
+    /**
+     * Calculates how many consecutive levels a budget can buy with scaled long arithmetic, without allocating.
+     * Levels inside the precomputed cost table use its prefix sums. Otherwise LINEAR counts are bracketed by
+     * doubling and then binary searched with exact floor sums, and EXPONENTIAL and FORMULA costs are added up
+     * once, up to the first unaffordable level. Produces the same result as
+     * {@link #calculateMaxPurchase(long, long, BigDecimal, PlayerRankData)} whenever it is representable.
+     * @param currentLevel The current level of this progression type.
+     * @param limit The maximum level of this progression type.
+     * @param budget The whole balance available to spend, saturated at {@link Long#MAX_VALUE} (see {@link #toBudget(BigDecimal)}).
+     * @param playerData The full data object for the player, used to get scaling levels.
+     * @return The number of affordable levels and their combined cost, or {@link PurchaseValue#NOT_REPRESENTABLE}
+     *         if fixed-point mode is disabled or a cost or the total would overflow before the budget runs out.
+     */
+    public PurchaseValue calculateMaxPurchase(long currentLevel, long limit, long budget, PlayerRankData playerData) {
+        if (!fixedPointArithmetic) {
+            return PurchaseValue.NOT_REPRESENTABLE;
+        }
+        long remaining = limit - currentLevel;
+        if (remaining <= 0 || budget < 0) {
+            return new PurchaseValue(0, 0);
+        }
+
+        long scalingId = scaling.getScalingId(playerData);
+        ProgressionCostTable table = costTable;
+        if (table != null && table.covers(scalingId, currentLevel)) {
+            long reachedLevel = table.findMaxAffordableLevel(scalingId, currentLevel, budget, limit);
+            // Only trust the table when the search did not stop at the edge of the covered range
+            if (reachedLevel >= limit || reachedLevel < table.getCoveredLevels(scalingId)) {
+                return new PurchaseValue(reachedLevel - currentLevel, table.getRangeCost(scalingId, currentLevel, reachedLevel));
+            }
+        }
+
+        CostScaling.Factors factors = scaling.getFactors(playerData);
+        if (formula != null || "EXPONENTIAL".equals(calculationMode)) {
+            return sumCostValues(currentLevel, remaining, budget, factors, playerData);
+        }
+        return solveArithmeticPurchaseValue(currentLevel, remaining, budget, factors);
+    }
+
+    /**
+     * Fixed-point form of the LINEAR max purchase. Doubling the count until it is unaffordable brackets the answer
+     * within a few times the budget, so the floor sums only overflow for budgets close to {@link Long#MAX_VALUE};
+     * a binary search then finds the largest affordable count.
+     */
+    private PurchaseValue solveArithmeticPurchaseValue(long currentLevel, long remaining, long budget, CostScaling.Factors factors) {
+        // Other modes have no per-level cost
+        boolean linear = "LINEAR".equals(calculationMode);
+        long firstCost = linear ? calculateLinearCostValue(currentLevel) : 0;
+        long costStep = linear ? linearCostPerLevelValue : 0;
+        if (firstCost == NOT_REPRESENTABLE || costStep == NOT_REPRESENTABLE) {
+            return PurchaseValue.NOT_REPRESENTABLE;
+        }
+        if (firstCost < 0) {
+            return new PurchaseValue(0, 0);
+        }
+
+        // A falling cost is only affordable while it is not negative
+        long high = remaining;
+        if (costStep < 0) {
+            long lastFreeOffset = -(firstCost / costStep);
+            high = lastFreeOffset >= remaining ? remaining : lastFreeOffset + 1;
+        }
+
+        long low = 0;
+        long lowCost = 0;
+        long count = 1;
+        while (low < high) {
+            count = Math.min(count, high);
+            long cost = factors.applyToArithmeticRangeValue(firstCost, costStep, count);
+            if (cost == NOT_REPRESENTABLE) {
+                return PurchaseValue.NOT_REPRESENTABLE;
+            }
+            if (cost > budget) {
+                high = count - 1;
+                break;
+            }
+            low = count;
+            lowCost = cost;
+            count = count > Long.MAX_VALUE / 2 ? Long.MAX_VALUE : count * 2;
+        }
+
+        while (low < high) {
+            long mid = low + (high - low + 1) / 2;
+            long cost = factors.applyToArithmeticRangeValue(firstCost, costStep, mid);
+            if (cost == NOT_REPRESENTABLE) {
+                return PurchaseValue.NOT_REPRESENTABLE;
+            }
+            if (cost <= budget) {
+                low = mid;
+                lowCost = cost;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return new PurchaseValue(low, lowCost);
+    }
+
+    /**
+     * Fixed-point form of {@link #sumExponentialCosts} and the FORMULA walk of the decimal max purchase.
+     * A cost or total beyond a long is unaffordable, unless the budget was saturated and the balance may cover it.
+     */
+    private PurchaseValue sumCostValues(long startLevel, long levels, long budget, CostScaling.Factors factors, PlayerRankData playerData) {
+        boolean exponential = formula == null;
+        long priced = 0;
+        long totalCost = 0;
+        while (priced < levels) {
+            long level = startLevel + priced;
+            long cost;
+            try {
+                cost = calculateCostValue(level, factors, playerData);
+            } catch (NumberFormatException e) {
+                cost = NOT_REPRESENTABLE; // The cost overflowed the double range
+            }
+            if (cost == NOT_REPRESENTABLE) {
+                return budget == Long.MAX_VALUE ? PurchaseValue.NOT_REPRESENTABLE : new PurchaseValue(priced, totalCost);
+            }
+            if (cost < 0) {
+                // The decimal walk stops before a negative EXPONENTIAL cost but adds up FORMULA ones
+                return exponential ? new PurchaseValue(priced, totalCost) : PurchaseValue.NOT_REPRESENTABLE;
+            }
+            if (cost > budget - totalCost) {
+                return budget == Long.MAX_VALUE ? PurchaseValue.NOT_REPRESENTABLE : new PurchaseValue(priced, totalCost);
+            }
+            if (exponential && isExponentialCostConstantFrom(level)) {
+                long rest = levels - priced;
+                if (cost > 0 && rest > (budget - totalCost) / cost) {
+                    if (budget == Long.MAX_VALUE) {
+                        return PurchaseValue.NOT_REPRESENTABLE;
+                    }
+                    rest = (budget - totalCost) / cost;
+                }
+                return new PurchaseValue(priced + rest, totalCost + cost * rest);
+            }
+            totalCost += cost;
+            priced++;
+        }
+        return new PurchaseValue(priced, totalCost);
+    }
+
+    /**
+     * Calculates the combined cost of buying a number of consecutive levels.
+     * @param currentLevel The level the purchase starts from.
+     * @param levels The number of levels to buy.
+     * @param playerData The full data object for the player, used to get scaling levels.
+     * @return The combined cost, or null if it is too large to represent.
+     */
+    public BigDecimal getTotalCost(long currentLevel, long levels, PlayerRankData playerData) {
+        if (levels <= 0) {
+            return BigDecimal.ZERO;
+        }
+        long scalingId = scaling.getScalingId(playerData);
+        ProgressionCostTable table = costTable;
+        if (table != null && table.covers(scalingId, currentLevel) && currentLevel + levels <= table.getCoveredLevels(scalingId)) {
+            return BigDecimal.valueOf(table.getRangeCost(scalingId, currentLevel, currentLevel + levels));
+        }
+        if (formula != null) {
+            BigDecimal totalCost = BigDecimal.ZERO;
+            for (long level = currentLevel; level < currentLevel + levels; level++) {
+                totalCost = totalCost.add(getCost(level, playerData));
+            }
+            return totalCost;
+        }
+        CostScaling.Factors factors = scaling.getFactors(playerData);
+        if ("EXPONENTIAL".equals(calculationMode)) {
+            PurchaseResult range = sumExponentialCosts(currentLevel, levels, null, factors);
+            return range.levels() == levels ? range.totalCost() : null;
+        }
+        return calculateRangeCost(currentLevel, levels, factors);
+    }
 
-        if (costCache.containsKey(cacheKey)) {
-            return costCache.get(cacheKey);
+    /**
+     * Precomputes the cumulative cost table for this progression type.
+     * The table covers every level up to the limit for every level of the 'scale-with' type,
+     * unless that would exceed the entry budget, in which case the lowest levels are kept.
+     * When the cost scales with several types only the unscaled row is stored.
+     * @param limit The maximum level of this progression type.
+     * @param scalingLimit The maximum level of the 'scale-with' type, ignored unless it is the only scaling type.
+     * @param maxEntries The maximum number of table entries to allocate.
+     */
+    public void buildCostTable(long limit, long scalingLimit, int maxEntries) {
+        // Formulas that read other progression levels depend on more than (level, scalingLevel)
+        if (limit <= 0 || maxEntries < 2 || !formulaReferences.isEmpty()) {
+            this.costTable = null;
+            return;
         }
 
+        long levelsCovered = Math.min(limit, maxEntries - 1L);
+        long scalingRows = scaling.isSingleType() ? Math.max(0, scalingLimit) + 1 : 1;
+        int rows = (int) Math.max(1, Math.min(scalingRows, maxEntries / (levelsCovered + 1)));
+
+        long[][] prefixSums = new long[rows][];
+        for (int scalingLevel = 0; scalingLevel < rows; scalingLevel++) {
+            CostScaling.Factors factors = scaling.getFactorsForLevel(scalingLevel);
+            long[] row = new long[(int) levelsCovered + 1];
+            int level = 0;
+            while (level < levelsCovered) {
+                long cost;
+                try {
+                    cost = calculateCost(level, factors, null).longValueExact();
+                } catch (ArithmeticException | NumberFormatException | InvalidCostException e) {
+                    break; // Cost no longer fits in a long, or the formula cannot price it
+                }
+                if (cost < 0 || row[level] > Long.MAX_VALUE - cost) {
+                    break;
+                }
+                row[level + 1] = row[level] + cost;
+                level++;
+            }
+            prefixSums[scalingLevel] = level < levelsCovered ? Arrays.copyOf(row, level + 1) : row;
+        }
+        this.costTable = new ProgressionCostTable(prefixSums);
+    }
+
+    /**
+     * Checks that the custom formula prices the first and the last purchasable level with a finite, non-negative
+     * cost, with every referenced progression level at zero. Does nothing for other modes.
+     * @param limit The maximum level of this progression type.
+     * @throws IllegalArgumentException if a sampled cost is invalid.
+     */
+    public void validateFormula(long limit) {
+        if (formula == null) {
+            return;
+        }
+        for (long level : new long[]{0, Math.max(0, limit - 1)}) {
+            double result = formula.evaluate(level, null);
+            if (!isValidFormulaResult(result)) {
+                throw new IllegalArgumentException("Formula '" + formula.getExpression() + "' gives " + result + " at level " + level);
+            }
+        }
+    }
+
+    public ProgressionCostTable getCostTable() {
+        return costTable;
+    }
+
+    /**
+     * Get the IDs of the progression types referenced by the custom formula, empty for other modes.
+     */
+    public List<String> getFormulaReferences() {
+        return formulaReferences;
+    }
+
+    /**
+     * Get the IDs of the progression types the cost scales with, empty when scaling is disabled.
+     */
+    public List<String> getScalingTypes() {
+        return scaling.getScalingTypes();
+    }
+
+    public void clearCache() {
+        costCache.get().cache().clear();
+    }
+
+    /**
+     * Get the cache for costs keyed with a scaling ID from the given epoch.
+     * @return The cache, or null if the ID is from an older epoch and may collide with a reused one.
+     */
+    private CostCache getCostCache(long scalingId, long epoch) {
+        while (true) {
+            EpochCostCache current = costCache.get();
+            // ID 0 means no scaling in every epoch
+            if (scalingId == 0 || current.epoch() == epoch) {
+                return current.cache();
+            }
+            if (current.epoch() > epoch) {
+                return null;
+            }
+            EpochCostCache next = new EpochCostCache(epoch, new CostCache(maxCacheSize, performanceMonitor));
+            if (costCache.compareAndSet(current, next)) {
+                return next.cache();
+            }
+        }
+    }
+
+    private long getCacheKey(long currentLevel, long scalingId, PlayerRankData playerData) {
+        if (formulaReferences.isEmpty()) {
+            return (scalingId < 0 || scalingId > 0xFFFFFFFFL) ? UNCACHEABLE : (currentLevel << 32) | scalingId;
+        }
+        // The scaling ID and every referenced level share the low 32 bits; skip the cache if any does not fit
+        int bits = 32 / (formulaReferences.size() + 1);
+        long maxValue = 1L << bits;
+        if (scalingId < 0 || scalingId >= maxValue) {
+            return UNCACHEABLE;
+        }
+        long packed = scalingId;
+        for (int referenceIndex : formulaReferenceIndices) {
+            long referenceLevel = playerData.getProgressionLevel(referenceIndex);
+            if (referenceLevel < 0 || referenceLevel >= maxValue) {
+                return UNCACHEABLE;
+            }
+            packed = (packed << bits) | referenceLevel;
+        }
+        return (currentLevel << 32) | packed;
+    }
+
+    private record EpochCostCache(long epoch, CostCache cache) {}
+
+    private BigDecimal calculateCost(long currentLevel, CostScaling.Factors factors, PlayerRankData playerData) {
         BigDecimal baseCost = switch (calculationMode) {
             case "LINEAR" -> calculateLinearCost(currentLevel);
             case "EXPONENTIAL" -> calculateExponentialCost(currentLevel);
+            case "FORMULA" -> calculateFormulaCost(currentLevel, playerData);
             default -> BigDecimal.ZERO;
         };
 
-        BigDecimal finalCost;
-        if (scalingEnabled && scalingType != null && scalingLevel > 0) {
-            finalCost = applyScaling(baseCost, scalingLevel);
-        } else {
-            finalCost = baseCost;
+        return factors.apply(baseCost);
+    }
+
+    /**
+     * Convert a balance to the whole amount that can be spent, saturated at {@link Long#MAX_VALUE}, or -1 if it is negative.
+     */
+    public static long toBudget(BigDecimal balance) {
+        BigDecimal whole = balance.setScale(0, RoundingMode.FLOOR);
+        if (whole.signum() < 0) {
+            return -1; // Nothing to spend
         }
+        return whole.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) >= 0 ? Long.MAX_VALUE : whole.longValue();
+    }
 
-        costCache.put(String.valueOf(cacheKey), finalCost);
-        return finalCost;
+    private BigDecimal calculateRangeCost(long startLevel, long levels, CostScaling.Factors factors) {
+        // LINEAR costs form an arithmetic run; other modes have no per-level cost
+        BigDecimal firstCost = "LINEAR".equals(calculationMode) ? calculateLinearCost(startLevel) : BigDecimal.ZERO;
+        BigDecimal costStep = "LINEAR".equals(calculationMode) ? linearCostPerLevel : BigDecimal.ZERO;
+        return factors.applyToArithmeticRange(firstCost, costStep, levels);
     }
 
-    public void clearCache() {
-        costCache.clear();
+    /**
+     * Adds up the exact EXPONENTIAL costs of consecutive levels, for as long as the balance allows.
+     * Every level's cost is rounded on its own, so no closed form reproduces what buying the levels one at a time
+     * would charge. With a multiplier above one the costs grow geometrically and the walk ends after O(log balance)
+     * levels; once every further level costs the same, the rest of the run is priced in one step.
+     * @param startLevel The first level to price.
+     * @param levels The most levels to price.
+     * @param balance The balance available to spend, or null to price every level.
+     * @param factors The player's scaling factors.
+     * @return The number of levels priced and their combined cost. Pricing also stops before a level whose cost
+     *         is negative or too large to represent.
+     */
+    private PurchaseResult sumExponentialCosts(long startLevel, long levels, BigDecimal balance, CostScaling.Factors factors) {
+        long priced = 0;
+        BigDecimal totalCost = BigDecimal.ZERO;
+        while (priced < levels) {
+            long level = startLevel + priced;
+            BigDecimal cost;
+            try {
+                cost = calculateCost(level, factors, null);
+            } catch (NumberFormatException e) {
+                break; // The cost overflowed the double range
+            }
+            BigDecimal nextTotal = totalCost.add(cost);
+            if (cost.signum() < 0 || (balance != null && nextTotal.compareTo(balance) > 0)) {
+                break;
+            }
+            if (isExponentialCostConstantFrom(level)) {
+                long rest = levels - priced;
+                if (balance != null && cost.signum() > 0) {
+                    BigDecimal affordable = balance.subtract(totalCost).divideToIntegralValue(cost);
+                    if (affordable.compareTo(BigDecimal.valueOf(rest)) < 0) {
+                        rest = affordable.longValue();
+                    }
+                }
+                return new PurchaseResult(priced + rest, totalCost.add(cost.multiply(BigDecimal.valueOf(rest))));
+            }
+            totalCost = nextTotal;
+            priced++;
+        }
+        return new PurchaseResult(priced, totalCost);
     }
 
-    private BigDecimal applyScaling(BigDecimal baseCost, long scalingLevel) {
-        if ("MULTIPLIER".equals(scalingMode)) {
-            // Formula: baseCost * (1 + (scalingLevel * value))
-            BigDecimal multiplier = BigDecimal.ONE.add(scalingMultiplier.multiply(BigDecimal.valueOf(scalingLevel)));
-            return baseCost.multiply(multiplier).setScale(0, RoundingMode.HALF_UP);
-        } else if ("ADDITIVE".equals(scalingMode)) {
-            // Formula: baseCost + (scalingLevel * value)
-            BigDecimal addition = scalingMultiplier.multiply(BigDecimal.valueOf(scalingLevel));
-            return baseCost.add(addition).setScale(0, RoundingMode.HALF_UP);
+    // Whether every level from this one on has the same rounded EXPONENTIAL base cost
+    private boolean isExponentialCostConstantFrom(long level) {
+        if (exponentialMultiplier == 1.0 || exponentialBaseCostValue == 0) {
+            return true;
+        }
+        // A shrinking cost that rounds to zero stays zero
+        return exponentialMultiplier >= 0 && exponentialMultiplier < 1
+                && exponentialBaseCostValue * Math.pow(exponentialMultiplier, level) < 0.5;
+    }
+
+    private long calculateBaseCostValue(long currentLevel, PlayerRankData playerData) {
+        return switch (calculationMode) {
+            case "LINEAR" -> calculateLinearCostValue(currentLevel);
+            case "EXPONENTIAL" -> calculateExponentialCostValue(currentLevel);
+            case "FORMULA" -> calculateFormulaCostValue(currentLevel, playerData);
+            default -> 0L;
+        };
+    }
+
+    private long calculateCostValue(long currentLevel, CostScaling.Factors factors, PlayerRankData playerData) {
+        long baseCost = calculateBaseCostValue(currentLevel, playerData);
+        long cost = baseCost == NOT_REPRESENTABLE ? NOT_REPRESENTABLE : factors.applyValue(baseCost);
+        if (cost != NOT_REPRESENTABLE) {
+            return cost;
+        }
+        // The fixed-point form does not fit, so take the exact decimal result if it is a whole long
+        try {
+            return calculateCost(currentLevel, factors, playerData).longValueExact();
+        } catch (ArithmeticException e) {
+            return NOT_REPRESENTABLE;
+        }
+    }
+
+    private long calculateLinearCostValue(long currentLevel) {
+        if (linearBaseCostValue == NOT_REPRESENTABLE || linearCostPerLevelValue == NOT_REPRESENTABLE) {
+            return NOT_REPRESENTABLE;
+        }
+        try {
+            return Math.addExact(linearBaseCostValue, Math.multiplyExact(linearCostPerLevelValue, currentLevel));
+        } catch (ArithmeticException e) {
+            return NOT_REPRESENTABLE;
+        }
+    }
+
+    private long calculateExponentialCostValue(long currentLevel) {
+        double result = exponentialBaseCostValue * Math.pow(exponentialMultiplier, currentLevel);
+        // Math.round is HALF_UP for non-negative values. Above 2^53 a double no longer holds every integer,
+        // and BigDecimal.valueOf would round its decimal form differently, so leave those to the fallback.
+        if (!(result >= 0 && result < 0x1p53)) {
+            return NOT_REPRESENTABLE;
+        }
+        return Math.round(result);
+    }
+
+    private long calculateFormulaCostValue(long currentLevel, PlayerRankData playerData) {
+        double result = evaluateFormula(currentLevel, playerData);
+        if (result >= 0x1p53) {
+            return NOT_REPRESENTABLE;
+        }
+        return Math.round(result);
+    }
+
+    private static long toExactLong(BigDecimal value) {
+        try {
+            return value.longValueExact();
+        } catch (ArithmeticException e) {
+            return NOT_REPRESENTABLE;
         }
-        return baseCost;
     }
 
     private BigDecimal calculateLinearCost(long currentLevel) {
@@ -135,4 +731,53 @@ public class ProgressionCostService {
         double result = exponentialBaseCost.doubleValue() * Math.pow(exponentialMultiplier, currentLevel);
         return BigDecimal.valueOf(result).setScale(0, RoundingMode.HALF_UP);
     }
+
+    private BigDecimal calculateFormulaCost(long currentLevel, PlayerRankData playerData) {
+        double result = evaluateFormula(currentLevel, playerData);
+        return BigDecimal.valueOf(result).setScale(0, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Evaluate the custom formula, refusing results that cannot be charged, such as a division by a zero level.
+     * @throws InvalidCostException if the result is NaN, infinite or negative.
+     */
+    private double evaluateFormula(long currentLevel, PlayerRankData playerData) {
+        double result = formula.evaluate(currentLevel, playerData);
+        if (!isValidFormulaResult(result)) {
+            String message = "Cost formula '" + formula.getExpression() + "' gave " + result + " at level " + currentLevel;
+            if (invalidFormulaLogged.compareAndSet(false, true)) {
+                logger.warning(message + ". Levels it cannot price cannot be bought; further invalid costs are not logged.");
+            }
+            throw new InvalidCostException(message);
+        }
+        return result;
+    }
+
+    private static boolean isValidFormulaResult(double result) {
+        return result >= 0 && result != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * The outcome of a max purchase calculation.
+     * @param levels The number of levels that can be bought.
+     * @param totalCost The combined cost of those levels.
+     */
+    public record PurchaseResult(long levels, BigDecimal totalCost) {}
+
+    /**
+     * The outcome of a max purchase calculation with fixed-point arithmetic.
+     * @param levels The number of levels that can be bought.
+     * @param totalCost The combined cost of those levels, or {@link ProgressionCostService#NOT_REPRESENTABLE}.
+     */
+    public record PurchaseValue(long levels, long totalCost) {
+
+        /**
+         * Returned when the purchase cannot be calculated in a long; callers fall back to the decimal calculation.
+         */
+        public static final PurchaseValue NOT_REPRESENTABLE = new PurchaseValue(0, ProgressionCostService.NOT_REPRESENTABLE);
+
+        public boolean isRepresentable() {
+            return totalCost != ProgressionCostService.NOT_REPRESENTABLE;
+        }
+    }
 }
@@ -0,0 +1,103 @@
+package net.bumpier.brankup.progression;
+
+/**
+ * Precomputed cumulative cost table for a single progression type.
+ * Each row holds the prefix sums of the per-level costs for one level of the 'scale-with' type,
+ * so range costs are a subtraction and affordability checks are a binary search.
+ * Rows stop early when the memory budget is reached or a prefix no longer fits in a long;
+ * callers must fall back to direct calculation outside of {@link #covers(long, long)}.
+ */
+public class ProgressionCostTable {
+
+    // prefixSums[scalingLevel][level] = total cost of levels [0, level)
+    private final long[][] prefixSums;
+
+    ProgressionCostTable(long[][] prefixSums) {
+        this.prefixSums = prefixSums;
+    }
+
+    /**
+     * Check if the table holds the cost of the given level for the given scaling level.
+     */
+    public boolean covers(long scalingLevel, long level) {
+        return level >= 0 && level < getCoveredLevels(scalingLevel);
+    }
+
+    /**
+     * Get the number of levels (starting at 0) whose cost is stored for a scaling level.
+     */
+    public long getCoveredLevels(long scalingLevel) {
+        if (scalingLevel < 0 || scalingLevel >= prefixSums.length) {
+            return 0;
+        }
+        return prefixSums[(int) scalingLevel].length - 1;
+    }
+
+    /**
+     * Get the cost of a single level. The caller must check {@link #covers(long, long)} first.
+     */
+    public long getCost(long scalingLevel, long level) {
+        long[] row = prefixSums[(int) scalingLevel];
+        return row[(int) level + 1] - row[(int) level];
+    }
+
+    /**
+     * Get the total cost of levels [fromLevel, toLevel). Both bounds must lie within the covered range.
+     */
+    public long getRangeCost(long scalingLevel, long fromLevel, long toLevel) {
+        long[] row = prefixSums[(int) scalingLevel];
+        return row[(int) toLevel] - row[(int) fromLevel];
+    }
+
+    /**
+     * Copy the cost of each level in [fromLevel, toLevel) into an array. Both bounds must lie within the covered range.
+     * @param costs The array to fill, starting at the given offset.
+     * @return The total cost of the copied levels.
+     */
+    public long fillCosts(long scalingLevel, long fromLevel, long toLevel, long[] costs, int offset) {
+        long[] row = prefixSums[(int) scalingLevel];
+        int from = (int) fromLevel;
+        int count = (int) (toLevel - fromLevel);
+        for (int i = 0; i < count; i++) {
+            costs[offset + i] = row[from + i + 1] - row[from + i];
+        }
+        return row[from + count] - row[from];
+    }
+
+    /**
+     * Find the highest level reachable from a starting level without the total cost exceeding the budget.
+     * The search is capped at the covered range and at the given limit.
+     * @return The level reached after buying every affordable level.
+     */
+    public long findMaxAffordableLevel(long scalingLevel, long fromLevel, long budget, long limit) {
+        long[] row = prefixSums[(int) scalingLevel];
+        int high = (int) Math.min(row.length - 1, limit);
+        int low = (int) fromLevel;
+        if (budget < 0 || low >= high) {
+            return low;
+        }
+
+        // Largest index whose prefix sum is within the budget, saturating instead of overflowing
+        long target = row[low] > Long.MAX_VALUE - budget ? Long.MAX_VALUE : row[low] + budget;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (row[mid] <= target) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Get the number of stored entries, used to report memory usage.
+     */
+    public long getEntryCount() {
+        long entries = 0;
+        for (long[] row : prefixSums) {
+            entries += row.length;
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,148 @@
+package net.bumpier.brankup.progression;
+
+import net.bumpier.brankup.data.PlayerRankData;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of everything loaded from the progression configs: the types, their chains and order,
+ * and the cost and reward services of each type.
+ * A reload builds a complete new snapshot and publishes it with a single volatile write, so a reader that
+ * grabs the snapshot once never sees a half-rebuilt state.
+ */
+public final class ProgressionRuntime {
+
+    public static final ProgressionRuntime EMPTY = new ProgressionRuntime(0, Map.of(), Map.of(), List.of(), Map.of(), Map.of(), Map.of());
+
+    private final long version;
+    private final Map<String, ProgressionType> progressionTypes;
+    private final Map<String, List<String>> progressionChains;
+    private final List<String> progressionOrder;
+    private final Map<String, ProgressionCostService> costServices;
+    private final Map<String, ProgressionRewardService> rewardServices;
+    // Fingerprint of the settings each cost service was built from, so unchanged services survive a reload
+    private final Map<String, String> costSettingsKeys;
+
+    public ProgressionRuntime(long version, Map<String, ProgressionType> progressionTypes, Map<String, List<String>> progressionChains,
+                              List<String> progressionOrder, Map<String, ProgressionCostService> costServices,
+                              Map<String, ProgressionRewardService> rewardServices, Map<String, String> costSettingsKeys) {
+        this.version = version;
+        this.progressionTypes = Collections.unmodifiableMap(new LinkedHashMap<>(progressionTypes));
+        Map<String, List<String>> chains = new HashMap<>();
+        progressionChains.forEach((typeId, chain) -> chains.put(typeId, List.copyOf(chain)));
+        this.progressionChains = Collections.unmodifiableMap(chains);
+        this.progressionOrder = List.copyOf(progressionOrder);
+        this.costServices = Map.copyOf(costServices);
+        this.rewardServices = Map.copyOf(rewardServices);
+        this.costSettingsKeys = Map.copyOf(costSettingsKeys);
+    }
+
+    /**
+     * Create a copy of this snapshot with the given services.
+     */
+    public ProgressionRuntime withServices(Map<String, ProgressionCostService> costServices,
+                                           Map<String, ProgressionRewardService> rewardServices,
+                                           Map<String, String> costSettingsKeys) {
+        return new ProgressionRuntime(version, progressionTypes, progressionChains, progressionOrder,
+                costServices, rewardServices, costSettingsKeys);
+    }
+
+    /**
+     * Get the version of this snapshot, incremented on every reload.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public ProgressionType getProgressionType(String typeId) {
+        return progressionTypes.get(typeId);
+    }
+
+    public Collection<ProgressionType> getAllProgressionTypes() {
+        return progressionTypes.values();
+    }
+
+    public List<String> getProgressionChain(String typeId) {
+        return progressionChains.getOrDefault(typeId, List.of());
+    }
+
+    /**
+     * Get the progression order (from base to highest). The list is unmodifiable.
+     */
+    public List<String> getProgressionOrder() {
+        return progressionOrder;
+    }
+
+    public ProgressionCostService getCostService(String typeId) {
+        return costServices.get(typeId);
+    }
+
+    public ProgressionRewardService getRewardService(String typeId) {
+        return rewardServices.get(typeId);
+    }
+
+    public Map<String, ProgressionCostService> getCostServices() {
+        return costServices;
+    }
+
+    public Map<String, ProgressionRewardService> getRewardServices() {
+        return rewardServices;
+    }
+
+    public String getCostSettingsKey(String typeId) {
+        return costSettingsKeys.get(typeId);
+    }
+
+    /**
+     * Check if a player can progress to a specific type
+     */
+    public boolean canProgress(String typeId, Map<String, Long> playerLevels) {
+        ProgressionType type = progressionTypes.get(typeId);
+        if (type == null || !type.isEnabled()) {
+            return false;
+        }
+
+        if (type.getFollows() == null) {
+            return true; // Base progression type
+        }
+
+        // Check if player has max level in the required progression type
+        Long requiredLevel = playerLevels.get(type.getFollows());
+        if (requiredLevel == null) {
+            return false;
+        }
+
+        ProgressionType requiredType = progressionTypes.get(type.getFollows());
+        if (requiredType == null) {
+            return false;
+        }
+
+        return !type.requiresMaxLevel() || requiredLevel >= requiredType.getLimit();
+    }
+
+    /**
+     * Check if a player can progress to a specific type, reading the levels straight from the player's data.
+     */
+    public boolean canProgress(String typeId, PlayerRankData data) {
+        ProgressionType type = progressionTypes.get(typeId);
+        if (type == null || !type.isEnabled()) {
+            return false;
+        }
+
+        if (type.getFollows() == null) {
+            return true; // Base progression type
+        }
+
+        ProgressionType requiredType = progressionTypes.get(type.getFollows());
+        if (requiredType == null || !data.hasProgressionLevel(requiredType.getIndex())) {
+            return false;
+        }
+
+        return !type.requiresMaxLevel() || data.getProgressionLevel(requiredType.getIndex()) >= requiredType.getLimit();
+    }
+}
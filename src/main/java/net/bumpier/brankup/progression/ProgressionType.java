@@ -1,5 +1,6 @@
 package net.bumpier.brankup.progression;
 
+import net.bumpier.brankup.data.ProgressionIds;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 
@@ -15,6 +16,8 @@ import java.util.ArrayList;
 public class ProgressionType {
     
     private final String id;
+    // Dense index of the ID, used for allocation-free access to player data
+    private final int index;
     private final String configFile;
     private final String follows;
     private final String displayName;
@@ -59,6 +62,7 @@ public class ProgressionType {
     public ProgressionType(String id, String configFile, String follows, String displayName, 
                           String command, FileConfiguration config) {
         this.id = id;
+        this.index = ProgressionIds.intern(id);
         this.configFile = configFile;
         this.follows = follows;
         this.displayName = displayName;
@@ -169,6 +173,7 @@ public class ProgressionType {
     
     // Getters
     public String getId() { return id; }
+    public int getIndex() { return index; }
     public String getConfigFile() { return configFile; }
     public String getFollows() { return follows; }
     public String getDisplayName() { return displayName; }
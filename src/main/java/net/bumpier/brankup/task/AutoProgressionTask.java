@@ -10,9 +10,12 @@ import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
@@ -21,6 +24,8 @@ public class AutoProgressionTask extends BukkitRunnable {
     private final bRankup plugin;
     private final Map<UUID, Map<String, Integer>> progressionCounts = new ConcurrentHashMap<>();
     private final Map<UUID, Long> nextSummaryTimes = new ConcurrentHashMap<>();
+    // Players whose last pass is still queued or running, so slow passes never pile up in their mutation queue
+    private final Set<UUID> queuedPasses = ConcurrentHashMap.newKeySet();
     private final boolean summaryEnabled;
     private final long summaryIntervalMillis;
     private final List<String> summaryMessage;
@@ -45,10 +50,15 @@ public class AutoProgressionTask extends BukkitRunnable {
     public void run() {
         long currentTime = System.currentTimeMillis();
         for (Player player : Bukkit.getOnlinePlayers()) {
-            plugin.getPlayerManagerService().getOrLoadData(player.getUniqueId()).thenAccept(data -> {
+            UUID uuid = player.getUniqueId();
+            if (!queuedPasses.add(uuid)) {
+                continue;
+            }
+            // Runs in the player's mutation queue, so it never overlaps a progression command for the same player
+            plugin.getPlayerManagerService().mutate(uuid, data -> {
                 if (data == null) {
                     if (debugEnabled) plugin.getLogger().warning("[DEBUG][AutoTask] Player data was null for " + player.getName());
-                    return;
+                    return CompletableFuture.completedFuture(null);
                 }
 
                 if (summaryEnabled && currentTime > nextSummaryTimes.getOrDefault(player.getUniqueId(), 0L)) {
@@ -56,87 +66,119 @@ public class AutoProgressionTask extends BukkitRunnable {
                     nextSummaryTimes.put(player.getUniqueId(), currentTime + summaryIntervalMillis);
                 }
 
-                for (String typeId : plugin.getProgressionChainManager().getProgressionOrder()) {
-                    ProgressionType type = plugin.getProgressionChainManager().getProgressionType(typeId);
-                    if (type == null) continue;
-
-                    if (data.isAutoProgressionEnabled(type.getId())) {
-                        tryAutoProgression(player, data, type);
-                    }
+                // Use one snapshot for the whole pass, so a concurrent reload cannot mix old and new services.
+                // The pass is a chain of economy futures rather than blocking joins, so a slow economy never ties
+                // up one of the mutation threads other players are waiting for.
+                ProgressionRuntime runtime = plugin.getRuntime();
+                return runPass(player, data, runtime, 0);
+            }).whenComplete((ignored, ex) -> {
+                queuedPasses.remove(uuid);
+                if (ex != null) {
+                    plugin.getLogger().log(Level.SEVERE, "An error occurred in AutoProgressionTask for " + player.getName(), ex);
                 }
-            }).exceptionally(ex -> {
-                plugin.getLogger().log(Level.SEVERE, "An error occurred in AutoProgressionTask for " + player.getName(), ex);
-                return null;
             });
         }
     }
 
-    private void tryAutoProgression(Player player, PlayerRankData data, ProgressionType type) {
-        if (!type.isAutoProgressionEnabled()) return;
+    // Runs auto-progression for each type in chain order, starting at the given position of the order
+    private CompletableFuture<Void> runPass(Player player, PlayerRankData data, ProgressionRuntime runtime, int position) {
+        List<String> order = runtime.getProgressionOrder();
+        for (int i = position; i < order.size(); i++) {
+            ProgressionType type = runtime.getProgressionType(order.get(i));
+            if (type == null) continue;
+
+            if (data.isAutoProgressionEnabled(type.getIndex())) {
+                int next = i + 1;
+                return tryAutoProgression(player, data, type, runtime)
+                        .thenComposeAsync(ignored -> runPass(player, data, runtime, next));
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<Void> tryAutoProgression(Player player, PlayerRankData data, ProgressionType type, ProgressionRuntime runtime) {
+        if (!type.isAutoProgressionEnabled()) return CompletableFuture.completedFuture(null);
 
         IEconomyService economyService = plugin.getEconomyService(type.getCurrencyType());
-        ProgressionCostService costService = plugin.getCostServices().get(type.getId());
+        ProgressionCostService costService = runtime.getCostService(type.getId());
 
         if (economyService == null || costService == null) {
             if (debugEnabled) plugin.getLogger().warning("[DEBUG][AutoTask] Economy or Cost service is null for type: " + type.getId());
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] Checking auto-progression for " + player.getName() + " for type '" + type.getId() + "'.");
 
-        while (true) {
-            if (!player.isOnline()) {
-                if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] Player " + player.getName() + " logged off. Aborting.");
-                return;
-            }
+        return progressOnce(player, data, type, runtime, economyService, costService);
+    }
 
-            if (!plugin.getProgressionChainManager().canProgress(type.getId(), data.getAllProgressionLevels())) {
-                if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] EXIT: Player " + player.getName() + " cannot progress in chain '" + type.getId() + "'.");
-                break;
-            }
+    // Buys one level, then calls itself again once the purchase has completed until the player cannot progress
+    private CompletableFuture<Void> progressOnce(Player player, PlayerRankData data, ProgressionType type, ProgressionRuntime runtime,
+                                                 IEconomyService economyService, ProgressionCostService costService) {
+        if (!player.isOnline()) {
+            if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] Player " + player.getName() + " logged off. Aborting.");
+            return CompletableFuture.completedFuture(null);
+        }
 
-            long currentLevel = data.getProgressionLevel(type.getId());
-            if (currentLevel >= type.getLimit()) {
-                if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] EXIT: Player " + player.getName() + " is at max level for '" + type.getId() + "'.");
-                break;
-            }
+        if (!runtime.canProgress(type.getId(), data)) {
+            if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] EXIT: Player " + player.getName() + " cannot progress in chain '" + type.getId() + "'.");
+            return CompletableFuture.completedFuture(null);
+        }
 
-            BigDecimal cost = costService.getCost(currentLevel, data);
+        long currentLevel = data.getProgressionLevel(type.getIndex());
+        if (currentLevel >= type.getLimit()) {
+            if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] EXIT: Player " + player.getName() + " is at max level for '" + type.getId() + "'.");
+            return CompletableFuture.completedFuture(null);
+        }
 
-            // This is a blocking call, but it's inside an async task, so it's safe.
-            // We use .join() to get the result immediately for the next check.
-            boolean hasFunds = economyService.has(player, cost).join();
+        // In fixed-point mode the cost stays a primitive long; the BigDecimal is only built as a fallback
+        long costValue;
+        BigDecimal cost;
+        try {
+            costValue = costService.getCostValue(currentLevel, data);
+            cost = costValue == ProgressionCostService.NOT_REPRESENTABLE ? costService.getCost(currentLevel, data) : null;
+        } catch (InvalidCostException e) {
+            return CompletableFuture.completedFuture(null); // Logged once by the cost service
+        }
 
+        CompletableFuture<Boolean> hasFundsFuture = cost == null ? economyService.has(player, costValue) : economyService.has(player, cost);
+        return hasFundsFuture.thenComposeAsync(hasFunds -> {
             if (debugEnabled) {
                 // To avoid calling getBalance again, we infer it from the 'hasFunds' check.
-                plugin.getLogger().info("[DEBUG][AutoTask] Player: " + player.getName() + ", Type: " + type.getId() + ", Level: " + currentLevel + ", Cost: " + cost.toPlainString() + ", Has Funds: " + hasFunds);
+                String costString = cost == null ? String.valueOf(costValue) : cost.toPlainString();
+                plugin.getLogger().info("[DEBUG][AutoTask] Player: " + player.getName() + ", Type: " + type.getId() + ", Level: " + currentLevel + ", Cost: " + costString + ", Has Funds: " + hasFunds);
             }
 
             if (!hasFunds) {
                 if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] EXIT: Player " + player.getName() + " cannot afford next level.");
-                break;
-            }
-
-            boolean withdrawSuccess = economyService.withdraw(player, cost).join();
-            if (!withdrawSuccess) {
-                if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] EXIT: Economy withdrawal failed for " + player.getName() + ".");
-                break;
+                return CompletableFuture.<Void>completedFuture(null);
             }
 
-            data.incrementProgressionLevel(type.getId());
-            handleResets(player, data, type);
-            progressionCounts.computeIfAbsent(player.getUniqueId(), k -> new ConcurrentHashMap<>()).merge(type.getId(), 1, Integer::sum);
-
-            long newLevel = data.getProgressionLevel(type.getId());
-            if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] SUCCESS: Processed level up for " + player.getName() + " to " + type.getDisplayName() + " " + newLevel + ". Looping again.");
-
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                ProgressionRewardService rewardService = plugin.getRewardServices().get(type.getId());
-                if (rewardService != null) {
-                    rewardService.dispatchRewards(player, newLevel);
+            CompletableFuture<Boolean> withdrawFuture = cost == null ? economyService.withdraw(player, costValue) : economyService.withdraw(player, cost);
+            return withdrawFuture.thenComposeAsync(withdrawSuccess -> {
+                if (!withdrawSuccess) {
+                    if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] EXIT: Economy withdrawal failed for " + player.getName() + ".");
+                    return CompletableFuture.<Void>completedFuture(null);
                 }
+
+                // The resets finish before the next level is checked, so it and the player's next mutation see their result
+                data.incrementProgressionLevel(type.getIndex());
+                return handleResets(player, data, type).thenComposeAsync(ignored -> {
+                    progressionCounts.computeIfAbsent(player.getUniqueId(), k -> new ConcurrentHashMap<>()).merge(type.getId(), 1, Integer::sum);
+
+                    long newLevel = data.getProgressionLevel(type.getIndex());
+                    if (debugEnabled) plugin.getLogger().info("[DEBUG][AutoTask] SUCCESS: Processed level up for " + player.getName() + " to " + type.getDisplayName() + " " + newLevel + ". Looping again.");
+
+                    plugin.getServer().getScheduler().runTask(plugin, () -> {
+                        ProgressionRewardService rewardService = runtime.getRewardService(type.getId());
+                        if (rewardService != null) {
+                            rewardService.dispatchRewards(player, newLevel);
+                        }
+                    });
+                    return progressOnce(player, data, type, runtime, economyService, costService);
+                });
             });
-        }
+        });
     }
 
     private void sendSummary(Player player) {
@@ -174,20 +216,22 @@ public class AutoProgressionTask extends BukkitRunnable {
         }
     }
 
-    private void handleResets(Player player, PlayerRankData data, ProgressionType type) {
+    private CompletableFuture<Void> handleResets(Player player, PlayerRankData data, ProgressionType type) {
         if (type.shouldResetPrevious()) {
             String previousTypeId = type.getFollows();
             if (previousTypeId != null) {
                 data.setProgressionLevel(previousTypeId, 0);
             }
         }
+        List<CompletableFuture<Void>> currencyResets = new ArrayList<>();
         for (Map.Entry<String, Boolean> entry : type.getResetCurrencies().entrySet()) {
             if (entry.getValue()) {
                 IEconomyService currencyToReset = plugin.getEconomyService(entry.getKey());
                 if (currencyToReset != null) {
-                    currencyToReset.set(player, BigDecimal.ZERO);
+                    currencyResets.add(currencyToReset.set(player, BigDecimal.ZERO));
                 }
             }
         }
+        return CompletableFuture.allOf(currencyResets.toArray(new CompletableFuture[0]));
     }
 }
\ No newline at end of file
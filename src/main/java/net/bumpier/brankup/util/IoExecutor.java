@@ -0,0 +1,190 @@
+package net.bumpier.brankup.util;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Executor for blocking I/O, such as JDBC and economy calls, with a fixed concurrency limit per resource.
+ * Tasks wait in a FIFO queue and are run by at most 'concurrency' workers; each worker holds a semaphore permit
+ * and drains the queue before exiting, so tasks start in submission order and a limit of 1 runs them one at a time.
+ * Workers are either virtual threads, so blocking costs no platform thread, or platform threads from a cached pool.
+ * Work should be submitted with {@link #supplyAsync(Supplier)} or {@link #runAsync(Runnable)}, whose futures are
+ * failed rather than left pending if the task is still queued when {@link #shutdown(long, TimeUnit, Logger)} gives up.
+ */
+public class IoExecutor implements Executor {
+
+    private final String name;
+    private final boolean virtualThreads;
+    private final int concurrency;
+    private final ExecutorService workers;
+    private final Semaphore permits;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private volatile boolean shutdown;
+
+    /**
+     * @param name The thread name, also used to attribute pinned virtual threads.
+     * @param concurrency The maximum number of tasks running at once, e.g. the connection pool size.
+     * @param virtualThreads Whether to run tasks on virtual threads instead of platform threads.
+     */
+    public IoExecutor(String name, int concurrency, boolean virtualThreads) {
+        this.name = name;
+        this.virtualThreads = virtualThreads;
+        this.concurrency = Math.max(1, concurrency);
+        this.permits = new Semaphore(this.concurrency);
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name(name).factory()
+                : r -> new Thread(r, name);
+        this.workers = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(threadFactory)
+                : Executors.newCachedThreadPool(threadFactory);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException(name + " has been shut down");
+        }
+        queue.add(task);
+        peakQueued.accumulateAndGet(queued.incrementAndGet(), Math::max);
+        startWorkers();
+    }
+
+    /**
+     * Run a task on this executor, like {@link CompletableFuture#supplyAsync(Supplier, java.util.concurrent.Executor)}.
+     * @return A future completed with the result, or failed with a RejectedExecutionException if the executor
+     * was shut down before the task started.
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        Task<T> task = new Task<>(supplier);
+        execute(task);
+        return task.future;
+    }
+
+    /**
+     * Run a task on this executor, like {@link CompletableFuture#runAsync(Runnable, java.util.concurrent.Executor)}.
+     * @see #supplyAsync(Supplier)
+     */
+    public CompletableFuture<Void> runAsync(Runnable runnable) {
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    private void startWorkers() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            try {
+                workers.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.increment();
+                }
+            }
+        } finally {
+            permits.release();
+        }
+        // A task queued after the last poll but before the release found no free permit
+        startWorkers();
+    }
+
+    /**
+     * Stop accepting tasks and wait for the queued ones to finish.
+     * Tasks still queued at the timeout are dropped; those from {@link #supplyAsync(Supplier)} and
+     * {@link #runAsync(Runnable)} fail with a RejectedExecutionException, so nothing waits on them forever.
+     * @param logger Where to report dropped tasks.
+     */
+    public void shutdown(long timeout, TimeUnit unit, Logger logger) {
+        shutdown = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            while ((queued.get() > 0 || active.get() > 0) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+
+        // Running tasks are left to finish; the ones that never started are failed here
+        int dropped = 0;
+        Runnable task;
+        while ((task = queue.poll()) != null) {
+            queued.decrementAndGet();
+            dropped++;
+            if (task instanceof Task<?> pending) {
+                pending.future.completeExceptionally(new RejectedExecutionException(name + " was shut down before the task started"));
+            }
+        }
+        if (dropped > 0) {
+            logger.warning("Dropped " + dropped + " queued tasks of " + name + " that did not start within "
+                    + unit.toMillis(timeout) + "ms of shutdown.");
+        }
+    }
+
+    // A queued task that completes its own future, so shutdown can fail it without running it
+    private static final class Task<T> implements Runnable {
+
+        private final Supplier<T> supplier;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Task(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable ex) {
+                // Wrapped like CompletableFuture.supplyAsync does, so callers see the same exceptions
+                future.completeExceptionally(ex instanceof CompletionException ? ex : new CompletionException(ex));
+            }
+        }
+    }
+
+    public String getName() { return name; }
+    public boolean isVirtualThreads() { return virtualThreads; }
+
+    public Stats getStats() {
+        return new Stats(name, virtualThreads, concurrency, active.get(), queued.get(), peakQueued.get(), completed.sum());
+    }
+
+    /**
+     * Point-in-time executor statistics.
+     * @param queued Tasks waiting for a free slot, i.e. the current queue depth.
+     */
+    public record Stats(String name, boolean virtualThreads, int concurrency, int active, int queued, int peakQueued,
+                        long completed) {}
+}
@@ -3,8 +3,10 @@ package net.bumpier.brankup.util;
 import net.bumpier.brankup.bRankup;
 import org.bukkit.scheduler.BukkitRunnable;
 
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
@@ -23,6 +25,7 @@ public class PerformanceMonitor {
     private final AtomicLong totalPrestiges = new AtomicLong(0);
     private final AtomicLong totalCostCalculations = new AtomicLong(0);
     private final AtomicLong totalDatabaseOperations = new AtomicLong(0);
+    private final AtomicLong totalPlayerDataLoads = new AtomicLong(0);
     
     // Timing metrics
     private final Map<String, Long> operationStartTimes = new ConcurrentHashMap<>();
@@ -31,7 +34,19 @@ public class PerformanceMonitor {
     // Cache performance
     private final AtomicLong cacheHits = new AtomicLong(0);
     private final AtomicLong cacheMisses = new AtomicLong(0);
+    private final AtomicLong costCacheHits = new AtomicLong(0);
+    private final AtomicLong costCacheMisses = new AtomicLong(0);
+    private final AtomicLong costCacheEvictions = new AtomicLong(0);
+
+    // Write-behind persistence
+    private final AtomicLong writeBehindFlushes = new AtomicLong(0);
+    private final AtomicLong writeBehindRows = new AtomicLong(0);
+    private final AtomicLong writeBehindFailures = new AtomicLong(0);
     
+    // Executors for blocking I/O, and pinned virtual threads when they run on virtual threads
+    private final List<IoExecutor> executors = new CopyOnWriteArrayList<>();
+    private volatile VirtualThreadPinningMonitor pinningMonitor;
+
     // Memory usage tracking
     private final AtomicLong peakMemoryUsage = new AtomicLong(0);
     
@@ -44,6 +59,7 @@ public class PerformanceMonitor {
         operationDurations.put("cost-calculation", new AtomicLong(0));
         operationDurations.put("database-operation", new AtomicLong(0));
         operationDurations.put("reward-dispatching", new AtomicLong(0));
+        operationDurations.put("player-data-load", new AtomicLong(0));
         
         // Start periodic performance reporting
         startPerformanceReporting();
@@ -105,6 +121,15 @@ public class PerformanceMonitor {
         totalDatabaseOperations.incrementAndGet();
     }
     
+    /**
+     * Record how long one caller waited for player data that was not cached.
+     * Timed per call rather than with start/endOperation, since many loads can run at once.
+     */
+    public void recordPlayerDataLoad(long durationNanos) {
+        totalPlayerDataLoads.incrementAndGet();
+        operationDurations.get("player-data-load").addAndGet(durationNanos);
+    }
+    
     /**
      * Record a cache hit
      */
@@ -119,6 +144,99 @@ public class PerformanceMonitor {
         cacheMisses.incrementAndGet();
     }
     
+    /**
+     * Record a cost cache hit
+     */
+    public void recordCostCacheHit() {
+        costCacheHits.incrementAndGet();
+    }
+    
+    /**
+     * Record a cost cache miss
+     */
+    public void recordCostCacheMiss() {
+        costCacheMisses.incrementAndGet();
+    }
+    
+    /**
+     * Record a cost cache eviction
+     */
+    public void recordCostCacheEviction() {
+        costCacheEvictions.incrementAndGet();
+    }
+    
+    /**
+     * Record a committed write-behind flush
+     * @param rows The number of changed rows written
+     */
+    public void recordWriteBehindFlush(int rows) {
+        writeBehindFlushes.incrementAndGet();
+        writeBehindRows.addAndGet(rows);
+    }
+
+    /**
+     * Record a write-behind flush that was rolled back and queued for retry
+     */
+    public void recordWriteBehindFailure() {
+        writeBehindFailures.incrementAndGet();
+    }
+
+    public long getWriteBehindFlushes() {
+        return writeBehindFlushes.get();
+    }
+
+    public long getWriteBehindRows() {
+        return writeBehindRows.get();
+    }
+
+    public long getWriteBehindFailures() {
+        return writeBehindFailures.get();
+    }
+    
+    /**
+     * Register an I/O executor so its queue depth is reported
+     */
+    public void registerExecutor(IoExecutor executor) {
+        executors.add(executor);
+    }
+
+    public List<IoExecutor.Stats> getExecutorStats() {
+        return executors.stream().map(IoExecutor::getStats).toList();
+    }
+
+    /**
+     * Start counting pinned virtual threads of the plugin's executors
+     */
+    public synchronized void monitorPinnedThreads() {
+        if (pinningMonitor == null) {
+            pinningMonitor = new VirtualThreadPinningMonitor(logger, "bRankup-");
+            pinningMonitor.start();
+        }
+    }
+
+    /**
+     * Get the number of pinned virtual thread events, or -1 if they are not monitored
+     */
+    public long getPinnedThreadEvents() {
+        VirtualThreadPinningMonitor monitor = pinningMonitor;
+        return monitor != null && monitor.isRunning() ? monitor.getPinnedEvents() : -1;
+    }
+
+    public double getAveragePinnedMillis() {
+        VirtualThreadPinningMonitor monitor = pinningMonitor;
+        return monitor != null ? monitor.getAveragePinnedMillis() : 0.0;
+    }
+
+    /**
+     * Stop background monitoring. Called when the plugin is disabled.
+     */
+    public void shutdown() {
+        VirtualThreadPinningMonitor monitor = pinningMonitor;
+        if (monitor != null) {
+            monitor.stop();
+        }
+    }
+
     /**
      * Update peak memory usage
      */
@@ -143,6 +261,24 @@ public class PerformanceMonitor {
         return total > 0 ? (double) hits / total : 0.0;
     }
     
+    /**
+     * Get cost cache hit ratio
+     */
+    public double getCostCacheHitRatio() {
+        long hits = costCacheHits.get();
+        long misses = costCacheMisses.get();
+        long total = hits + misses;
+        
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+    
+    /**
+     * Get the number of cost cache evictions
+     */
+    public long getCostCacheEvictions() {
+        return costCacheEvictions.get();
+    }
+    
     /**
      * Get average operation duration in milliseconds
      */
@@ -165,6 +301,7 @@ public class PerformanceMonitor {
             case "cost-calculation" -> totalCostCalculations.get();
             case "database-operation" -> totalDatabaseOperations.get();
             case "reward-dispatching" -> totalRankups.get() + totalPrestiges.get();
+            case "player-data-load" -> totalPlayerDataLoads.get();
             default -> 0;
         };
     }
@@ -197,6 +334,18 @@ public class PerformanceMonitor {
         report.append("Cost calculations: ").append(totalCostCalculations.get()).append("\n");
         report.append("Database operations: ").append(totalDatabaseOperations.get()).append("\n");
         report.append("Cache hit ratio: ").append(String.format("%.2f%%", getCacheHitRatio() * 100)).append("\n");
+        report.append("Cost cache hit ratio: ").append(String.format("%.2f%%", getCostCacheHitRatio() * 100))
+                .append(" (").append(costCacheEvictions.get()).append(" evictions)\n");
+        report.append("Write-behind: ").append(writeBehindRows.get()).append(" rows in ").append(writeBehindFlushes.get())
+                .append(" flushes (").append(writeBehindFailures.get()).append(" failed)\n");
+        for (IoExecutor.Stats stats : getExecutorStats()) {
+            report.append("Executor ").append(stats.name()).append(": ").append(stats.active()).append(" active, ")
+                    .append(stats.queued()).append(" queued (peak ").append(stats.peakQueued()).append(")\n");
+        }
+        long pinnedEvents = getPinnedThreadEvents();
+        if (pinnedEvents >= 0) {
+            report.append("Pinned virtual threads: ").append(pinnedEvents).append("\n");
+        }
         report.append("Peak memory usage: ").append(String.format("%.2f MB", peakMemoryUsage.get() / 1024.0 / 1024.0)).append("\n");
         
         // Operation timing
@@ -218,9 +367,20 @@ public class PerformanceMonitor {
         totalPrestiges.set(0);
         totalCostCalculations.set(0);
         totalDatabaseOperations.set(0);
+        totalPlayerDataLoads.set(0);
         cacheHits.set(0);
         cacheMisses.set(0);
+        costCacheHits.set(0);
+        costCacheMisses.set(0);
+        costCacheEvictions.set(0);
+        writeBehindFlushes.set(0);
+        writeBehindRows.set(0);
+        writeBehindFailures.set(0);
         peakMemoryUsage.set(0);
+        VirtualThreadPinningMonitor monitor = pinningMonitor;
+        if (monitor != null) {
+            monitor.reset();
+        }
         
         for (AtomicLong duration : operationDurations.values()) {
             duration.set(0);
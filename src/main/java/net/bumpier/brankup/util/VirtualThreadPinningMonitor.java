@@ -0,0 +1,84 @@
+package net.bumpier.brankup.util;
+
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Counts the plugin's virtual threads that were pinned to their carrier thread, e.g. while blocking inside a
+ * synchronized block of a JDBC driver. Pinned threads block a carrier, so a growing count means a resource
+ * should be moved back to platform threads. Uses the JDK Flight Recorder event stream.
+ */
+public class VirtualThreadPinningMonitor {
+
+    // Shorter pins are not worth reporting; this is also the JDK's default threshold for the event
+    private static final Duration PINNED_THRESHOLD = Duration.ofMillis(20);
+
+    private final Logger logger;
+    private final String threadNamePrefix;
+    private final LongAdder pinnedEvents = new LongAdder();
+    private final LongAdder pinnedNanos = new LongAdder();
+    private RecordingStream stream;
+
+    /**
+     * @param threadNamePrefix Only pins of virtual threads whose name starts with this prefix are counted.
+     */
+    public VirtualThreadPinningMonitor(Logger logger, String threadNamePrefix) {
+        this.logger = logger;
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    /**
+     * Start listening for pinned threads. Does nothing, apart from logging, if Flight Recorder is unavailable.
+     */
+    public synchronized void start() {
+        if (stream != null) {
+            return;
+        }
+        try {
+            RecordingStream recording = new RecordingStream();
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(PINNED_THRESHOLD);
+            recording.onEvent("jdk.VirtualThreadPinned", event -> {
+                RecordedThread thread = event.getThread();
+                String threadName = thread != null ? thread.getJavaName() : null;
+                if (threadName != null && threadName.startsWith(threadNamePrefix)) {
+                    pinnedEvents.increment();
+                    pinnedNanos.add(event.getDuration().toNanos());
+                }
+            });
+            recording.startAsync();
+            this.stream = recording;
+        } catch (Throwable e) {
+            logger.log(Level.WARNING, "Could not monitor pinned virtual threads; pinned thread metrics are unavailable.", e);
+        }
+    }
+
+    public synchronized void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return stream != null;
+    }
+
+    public long getPinnedEvents() {
+        return pinnedEvents.sum();
+    }
+
+    public double getAveragePinnedMillis() {
+        long events = pinnedEvents.sum();
+        return events > 0 ? pinnedNanos.sum() / 1_000_000.0 / events : 0.0;
+    }
+
+    public void reset() {
+        pinnedEvents.reset();
+        pinnedNanos.reset();
+    }
+}